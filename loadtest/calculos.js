@@ -0,0 +1,69 @@
+// Teste de carga com k6 (https://k6.io) para comparar platform threads e virtual threads.
+//
+// Uso:
+//   k6 run loadtest/calculos.js
+//   k6 run -e BASE_URL=http://localhost:8080 -e VUS=4000 -e DURACAO=2m loadtest/calculos.js
+//
+// Comparação (aplicação em JDK 21, iniciada sem e com o profile virtual-threads):
+//   k6 run -e MODO=plataforma --summary-export=resultado-plataforma.json loadtest/calculos.js
+//   k6 run -e MODO=virtual --summary-export=resultado-virtual.json loadtest/calculos.js
+//
+// O resumo final traz vazão (http_reqs) e latências p(95)/p(99) por endpoint (tag "endpoint").
+import http from 'k6/http';
+import { check } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const VUS = parseInt(__ENV.VUS || '2000');
+const DURACAO = __ENV.DURACAO || '1m';
+// Marca todas as métricas com o modo da aplicação, para comparar os resumos exportados
+const MODO = __ENV.MODO || 'plataforma';
+
+const CATEGORIAS = ['COMERCIAL', 'INDUSTRIAL', 'PARTICULAR', 'PUBLICO'];
+
+export const options = {
+  tags: { modo: MODO },
+  summaryTrendStats: ['avg', 'med', 'p(95)', 'p(99)', 'max'],
+  scenarios: {
+    calculos: {
+      executor: 'ramping-vus',
+      exec: 'calcular',
+      startVUs: 0,
+      stages: [
+        { duration: '20s', target: VUS },
+        { duration: DURACAO, target: VUS },
+        { duration: '10s', target: 0 },
+      ],
+    },
+    tabelas: {
+      executor: 'constant-vus',
+      exec: 'listarTabelas',
+      vus: Math.max(1, Math.floor(VUS / 10)),
+      duration: DURACAO,
+      startTime: '20s',
+    },
+  },
+  thresholds: {
+    'http_req_failed': ['rate<0.01'],
+    'http_req_duration{endpoint:calculos}': ['p(99)<500'],
+    'http_req_duration{endpoint:tabelas}': ['p(99)<1000'],
+  },
+};
+
+export function calcular() {
+  const corpo = JSON.stringify({
+    categoria: CATEGORIAS[Math.floor(Math.random() * CATEGORIAS.length)],
+    consumo: Math.random() < 0.95 ? Math.floor(Math.random() * 201) : Math.floor(Math.random() * 5001),
+  });
+  const res = http.post(`${BASE_URL}/api/calculos`, corpo, {
+    headers: { 'Content-Type': 'application/json' },
+    tags: { endpoint: 'calculos' },
+  });
+  check(res, { 'calculo 200': (r) => r.status === 200 });
+}
+
+export function listarTabelas() {
+  const res = http.get(`${BASE_URL}/api/tabelas-tarifarias?page=0&size=10`, {
+    tags: { endpoint: 'tabelas' },
+  });
+  check(res, { 'tabelas 200': (r) => r.status === 200 });
+}
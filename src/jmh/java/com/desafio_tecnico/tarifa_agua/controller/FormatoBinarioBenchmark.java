@@ -0,0 +1,110 @@
+package com.desafio_tecnico.tarifa_agua.controller;
+
+import com.desafio_tecnico.tarifa_agua.dto.CalculoResponse;
+import com.desafio_tecnico.tarifa_agua.dto.DetalhamentoResponse;
+import com.desafio_tecnico.tarifa_agua.dto.FaixaInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo de escrever um {@link CalculoResponse} detalhado com o conversor JSON do Spring e com
+ * {@link FormatoBinarioCalculo}, para 1, 5 e 50 faixas. A saída é descartada, para medir só a
+ * serialização. Rodar com {@code -prof gc} para comparar a alocação por resposta.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormatoBinarioBenchmark {
+
+    private static final MediaType TIPO = MediaType.parseMediaType(FormatoBinarioCalculo.TIPO);
+
+    @Param({"1", "5", "50"})
+    public int faixas;
+
+    private CalculoResponse resposta;
+    private MappingJackson2HttpMessageConverter json;
+    private FormatoBinarioCalculo.Conversor binario;
+    private Descarte saida;
+
+    @Setup
+    public void setUp() {
+        List<DetalhamentoResponse> detalhamento = new ArrayList<>(faixas);
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < faixas; i++) {
+            BigDecimal valorUnitario = new BigDecimal("5.00").add(BigDecimal.valueOf(i));
+            BigDecimal subtotal = valorUnitario.multiply(BigDecimal.TEN);
+            detalhamento.add(new DetalhamentoResponse(new FaixaInfo(i * 10, i == faixas - 1 ? null : i * 10 + 9),
+                    10, valorUnitario, subtotal));
+            total = total.add(subtotal);
+        }
+        resposta = new CalculoResponse("PARTICULAR", faixas * 10, total, detalhamento);
+        json = new MappingJackson2HttpMessageConverter(new ObjectMapper());
+        binario = new FormatoBinarioCalculo.Conversor();
+        saida = new Descarte();
+    }
+
+    @Benchmark
+    public long json() throws IOException {
+        json.write(resposta, CalculoResponse.class, MediaType.APPLICATION_JSON, saida.reiniciar());
+        return saida.bytes;
+    }
+
+    @Benchmark
+    public long binario() throws IOException {
+        binario.write(resposta, CalculoResponse.class, TIPO, saida.reiniciar());
+        return saida.bytes;
+    }
+
+    /** Mensagem de saída que só conta os bytes, como o buffer do servidor visto de fora. */
+    private static final class Descarte extends MockHttpOutputMessage {
+
+        private long bytes;
+
+        private final OutputStream corpo = new OutputStream() {
+            @Override
+            public void write(int b) {
+                bytes++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                bytes += len;
+            }
+        };
+
+        Descarte reiniciar() {
+            bytes = 0;
+            getHeaders().clear();
+            return this;
+        }
+
+        @Override
+        public OutputStream getBody() {
+            return corpo;
+        }
+    }
+}
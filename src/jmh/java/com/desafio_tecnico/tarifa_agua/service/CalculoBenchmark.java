@@ -0,0 +1,137 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.dto.CalculoRequest;
+import com.desafio_tecnico.tarifa_agua.dto.CalculoResponse;
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import com.desafio_tecnico.tarifa_agua.entity.FaixaConsumo;
+import com.desafio_tecnico.tarifa_agua.entity.TabelaTarifaria;
+import com.desafio_tecnico.tarifa_agua.entity.TarifaCategoria;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vazão e alocação de {@link CalculoService#calcular(CalculoRequest, boolean)} com a tabela já
+ * compilada em memória. Rodar com {@code -prof gc} para obter {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CalculoBenchmark {
+
+    /** Largura, em m³, de cada faixa com fim. */
+    static final int LARGURA_FAIXA = 10;
+
+    private static final int LEITURAS = 1 << 12;
+
+    public enum Distribuicao {
+        /** 95% das leituras entre 0 e 200 m³, o restante até 5.000 m³. */
+        RESIDENCIAL,
+        /** Leituras uniformes cobrindo todas as faixas da tabela. */
+        UNIFORME
+    }
+
+    @Param({"1", "5", "50", "500"})
+    public int faixas;
+
+    @Param({"RESIDENCIAL", "UNIFORME"})
+    public Distribuicao distribuicao;
+
+    @Param({"true", "false"})
+    public boolean detalhado;
+
+    /** -1 desliga o pré-cálculo; 200 cobre quase todas as leituras residenciais. */
+    @Param({"-1", "200"})
+    public int limitePrecalculo;
+
+    private CalculoService calculoService;
+    private CalculoRequest[] leituras;
+    private int proxima;
+
+    @Setup
+    public void setUp() {
+        TarifaAtivaHolder tarifaAtiva = new TarifaAtivaHolder(null, limitePrecalculo);
+        tarifaAtiva.publicarSnapshot(criarTabela(faixas));
+        calculoService = new CalculoService(tarifaAtiva, new TarifaHistoricaHolder(null, tarifaAtiva), new TarifaMetricas(new SimpleMeterRegistry()),
+                lancamentosDesligados(), histogramaDesligado());
+
+        Random random = new Random(42);
+        int consumoMaximoUniforme = faixas * LARGURA_FAIXA + LARGURA_FAIXA;
+        leituras = new CalculoRequest[LEITURAS];
+        for (int i = 0; i < LEITURAS; i++) {
+            int consumo = switch (distribuicao) {
+                case RESIDENCIAL -> random.nextInt(100) < 95 ? random.nextInt(201) : random.nextInt(5_001);
+                case UNIFORME -> random.nextInt(consumoMaximoUniforme);
+            };
+            leituras[i] = new CalculoRequest("PARTICULAR", consumo);
+        }
+    }
+
+    @Benchmark
+    public CalculoResponse calcular() {
+        CalculoRequest leitura = leituras[proxima];
+        proxima = (proxima + 1) & (LEITURAS - 1);
+        return calculoService.calcular(leitura, detalhado);
+    }
+
+    /** Registro de lançamentos desligado, para medir só o cálculo. */
+    static LancamentosCalculo lancamentosDesligados() {
+        return new LancamentosCalculo(null, new ObjectMapper(), new SimpleMeterRegistry(), false, false, 1, 1,
+                Duration.ZERO, LancamentosCalculo.PoliticaFilaCheia.DESCARTAR, false, Duration.ZERO);
+    }
+
+    /** Histograma de consumo desligado, para medir só o cálculo. */
+    static HistogramaConsumo histogramaDesligado() {
+        return new HistogramaConsumo(null, null, new SimpleMeterRegistry(), false, 1, 1);
+    }
+
+    /**
+     * Tabela com as quatro categorias, cada uma com {@code quantidade} faixas de
+     * {@link #LARGURA_FAIXA} m³ e a última sem fim.
+     */
+    static TabelaTarifaria criarTabela(int quantidade) {
+        TabelaTarifaria tabela = new TabelaTarifaria();
+        tabela.setId(1L);
+
+        Set<TarifaCategoria> categorias = new HashSet<>();
+        for (CategoriaConsumidor categoriaEnum : CategoriaConsumidor.values()) {
+            TarifaCategoria categoria = new TarifaCategoria();
+            categoria.setTabelaTarifaria(tabela);
+            categoria.setCategoria(categoriaEnum);
+
+            Set<FaixaConsumo> faixas = new HashSet<>();
+            for (int i = 0; i < quantidade; i++) {
+                FaixaConsumo faixa = new FaixaConsumo();
+                faixa.setTarifaCategoria(categoria);
+                faixa.setInicio(i * LARGURA_FAIXA);
+                faixa.setFim(i == quantidade - 1 ? null : (i + 1) * LARGURA_FAIXA);
+                faixa.setValorUnitario(BigDecimal.valueOf(150 + 25L * i, 2));
+                faixas.add(faixa);
+            }
+            categoria.setFaixas(faixas);
+            categorias.add(categoria);
+        }
+        tabela.setCategorias(categorias);
+        return tabela;
+    }
+}
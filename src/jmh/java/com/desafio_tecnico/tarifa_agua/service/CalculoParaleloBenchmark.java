@@ -0,0 +1,74 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteItemRequest;
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteParaleloResponse;
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tempo de {@link CalculoParaleloService#calcular} para um lote inteiro com 1, 2, 4 e 8 threads.
+ * Com a tabela compilada compartilhada e partições independentes, o tempo deve cair quase na
+ * proporção das threads até o número de núcleos físicos da máquina.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CalculoParaleloBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"1000000"})
+    public int leituras;
+
+    private CalculoParaleloService paraleloService;
+    private List<CalculoLoteItemRequest> itens;
+
+    @Setup
+    public void setUp() {
+        TarifaAtivaHolder tarifaAtiva = new TarifaAtivaHolder(null, 200);
+        tarifaAtiva.publicarSnapshot(CalculoBenchmark.criarTabela(5));
+        CalculoService calculoService = new CalculoService(tarifaAtiva, new TarifaHistoricaHolder(null, tarifaAtiva), new TarifaMetricas(new SimpleMeterRegistry()),
+                CalculoBenchmark.lancamentosDesligados(), CalculoBenchmark.histogramaDesligado());
+        paraleloService = new CalculoParaleloService(calculoService, new ObjectMapper(), threads, leituras);
+
+        CategoriaConsumidor[] categorias = CategoriaConsumidor.values();
+        Random random = new Random(42);
+        itens = new ArrayList<>(leituras);
+        for (int i = 0; i < leituras; i++) {
+            int consumo = random.nextInt(100) < 95 ? random.nextInt(201) : random.nextInt(5_001);
+            itens.add(new CalculoLoteItemRequest(null, categorias[random.nextInt(categorias.length)].name(), consumo));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        paraleloService.encerrar();
+    }
+
+    @Benchmark
+    public CalculoLoteParaleloResponse calcularLote() {
+        return paraleloService.calcular(itens, false);
+    }
+}
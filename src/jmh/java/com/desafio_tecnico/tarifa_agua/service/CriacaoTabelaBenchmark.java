@@ -0,0 +1,99 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.TarifaAguaApplication;
+import com.desafio_tecnico.tarifa_agua.dto.CategoriaDTO;
+import com.desafio_tecnico.tarifa_agua.dto.FaixaDTO;
+import com.desafio_tecnico.tarifa_agua.dto.TabelaTarifariaCriadaResponse;
+import com.desafio_tecnico.tarifa_agua.dto.TabelaTarifariaRequest;
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tempo de {@link TabelaTarifariaService#criarTabela} persistindo as quatro categorias no
+ * PostgreSQL configurado em {@code application.yaml}, com e sem inserts em lote. Precisa do banco
+ * rodando e sem tabela ativa; cada tabela criada é desativada logo após a medição.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CriacaoTabelaBenchmark {
+
+    /** Valor de {@code hibernate.jdbc.batch_size}; 1 equivale a um INSERT por linha. */
+    @Param({"1", "50"})
+    public int batchSize;
+
+    /** Faixas por categoria. */
+    @Param({"250", "1000"})
+    public int faixas;
+
+    private ConfigurableApplicationContext context;
+    private TabelaTarifariaService service;
+    private TabelaTarifariaRequest request;
+    private Long criada;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SpringApplication app = new SpringApplication(TarifaAguaApplication.class);
+        app.setWebApplicationType(WebApplicationType.NONE);
+        // Argumentos de linha de comando: propriedades padrão perderiam para o application.yaml
+        context = app.run(
+                "--spring.jpa.properties.hibernate.jdbc.batch_size=" + batchSize,
+                "--tarifa.sincronizacao.habilitada=false");
+        service = context.getBean(TabelaTarifariaService.class);
+
+        List<CategoriaDTO> categorias = new ArrayList<>();
+        for (CategoriaConsumidor categoria : CategoriaConsumidor.values()) {
+            List<FaixaDTO> lista = new ArrayList<>(faixas);
+            for (int i = 0; i < faixas; i++) {
+                int inicio = i * 10;
+                Integer fim = i == faixas - 1 ? null : inicio + 9;
+                lista.add(new FaixaDTO(inicio, fim, BigDecimal.valueOf(100 + i, 2)));
+            }
+            categorias.add(new CategoriaDTO(categoria.name(), lista));
+        }
+        request = new TabelaTarifariaRequest("Benchmark " + faixas + " faixas", categorias);
+    }
+
+    @TearDown(Level.Invocation)
+    public void desativar() {
+        if (criada != null) {
+            service.excluir(criada);
+            criada = null;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public TabelaTarifariaCriadaResponse criarTabela() {
+        TabelaTarifariaCriadaResponse response = service.criarTabela(request);
+        criada = response.id();
+        return response;
+    }
+}
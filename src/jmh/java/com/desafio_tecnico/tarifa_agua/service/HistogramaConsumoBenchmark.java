@@ -0,0 +1,48 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo de {@link HistogramaConsumo#registrar} com 4 threads contando o mesmo consumo, o pior caso
+ * de disputa: com uma única listra todas incrementam a mesma posição; com 8, cada thread tende a
+ * ficar com a sua. Só faz sentido em máquina com pelo menos 4 processadores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class HistogramaConsumoBenchmark {
+
+    @Param({"1", "8"})
+    public int listras;
+
+    private HistogramaConsumo histograma;
+
+    @Setup
+    public void setUp() {
+        histograma = new HistogramaConsumo(null, null, new SimpleMeterRegistry(), true, 1_000, listras);
+    }
+
+    @Benchmark
+    public void registrar() {
+        histograma.registrar(CategoriaConsumidor.PARTICULAR, 18);
+    }
+}
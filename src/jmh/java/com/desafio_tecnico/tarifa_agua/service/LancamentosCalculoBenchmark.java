@@ -0,0 +1,83 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.dto.CalculoRequest;
+import com.desafio_tecnico.tarifa_agua.dto.CalculoResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Custo do registro de lançamentos no caminho da requisição: {@link CalculoService#calcular} em modo
+ * resumo com o registro desligado e ligado. A gravação roda de verdade, em lotes, mas contra um
+ * {@link JdbcTemplate} que só conta as linhas, para isolar a fila do banco.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class LancamentosCalculoBenchmark {
+
+    @Param({"false", "true"})
+    public boolean habilitado;
+
+    private CalculoService calculoService;
+    private LancamentosCalculo lancamentos;
+    private final CalculoRequest leitura = new CalculoRequest("PARTICULAR", 18);
+
+    @Setup
+    public void setUp() {
+        TarifaAtivaHolder tarifaAtiva = new TarifaAtivaHolder(null, 200);
+        tarifaAtiva.publicarSnapshot(CalculoBenchmark.criarTabela(5));
+        lancamentos = new LancamentosCalculo(new JdbcTemplateContador(), new ObjectMapper(), new SimpleMeterRegistry(),
+                habilitado, false, 100_000, 1_000, Duration.ofMillis(200), LancamentosCalculo.PoliticaFilaCheia.BLOQUEAR,
+                false, Duration.ofSeconds(1));
+        lancamentos.start();
+        calculoService = new CalculoService(tarifaAtiva, new TarifaHistoricaHolder(null, tarifaAtiva),
+                new TarifaMetricas(new SimpleMeterRegistry()), lancamentos,
+                CalculoBenchmark.histogramaDesligado());
+    }
+
+    @TearDown
+    public void tearDown() {
+        lancamentos.stop();
+    }
+
+    @Benchmark
+    public CalculoResponse calcular() {
+        return calculoService.calcular(leitura, false);
+    }
+
+    private static final class JdbcTemplateContador extends JdbcTemplate {
+
+        private final LongAdder linhas = new LongAdder();
+
+        @Override
+        public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+                                       ParameterizedPreparedStatementSetter<T> pss) {
+            linhas.add(batchArgs.size());
+            return new int[0][];
+        }
+    }
+}
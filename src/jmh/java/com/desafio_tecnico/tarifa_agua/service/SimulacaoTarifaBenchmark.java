@@ -0,0 +1,87 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.dto.CategoriaDTO;
+import com.desafio_tecnico.tarifa_agua.dto.FaixaDTO;
+import com.desafio_tecnico.tarifa_agua.dto.LeiturasConsumoDTO;
+import com.desafio_tecnico.tarifa_agua.dto.SimulacaoTarifaRequest;
+import com.desafio_tecnico.tarifa_agua.dto.SimulacaoTarifaResponse;
+import com.desafio_tecnico.tarifa_agua.dto.TabelaTarifariaRequest;
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo de {@link SimulacaoTarifaService#simular} em função do tamanho do histograma, incluindo a
+ * validação e a compilação da tabela proposta. Cada faixa do histograma tem em média 1.000 leituras:
+ * com 100.000 faixas, o histograma representa cerca de 100 milhões de leituras.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimulacaoTarifaBenchmark {
+
+    private static final int FAIXAS_TABELA = 10;
+
+    @Param({"1000", "10000", "100000"})
+    public int faixasHistograma;
+
+    private SimulacaoTarifaService service;
+    private SimulacaoTarifaRequest request;
+
+    @Setup
+    public void setUp() {
+        TarifaAtivaHolder tarifaAtiva = new TarifaAtivaHolder(null, -1);
+        tarifaAtiva.publicarSnapshot(CalculoBenchmark.criarTabela(FAIXAS_TABELA));
+        service = new SimulacaoTarifaService(new TabelaTarifariaService(null, null, null), tarifaAtiva,
+                CalculoBenchmark.histogramaDesligado());
+
+        Random random = new Random(42);
+        CategoriaConsumidor[] categorias = CategoriaConsumidor.values();
+        List<LeiturasConsumoDTO> histograma = new ArrayList<>(faixasHistograma);
+        for (int i = 0; i < faixasHistograma; i++) {
+            histograma.add(new LeiturasConsumoDTO(
+                    categorias[i % categorias.length].name(),
+                    i / categorias.length,
+                    (long) random.nextInt(2_001)
+            ));
+        }
+        request = new SimulacaoTarifaRequest(proposta(), histograma, null, null);
+    }
+
+    @Benchmark
+    public SimulacaoTarifaResponse simular() {
+        return service.simular(request);
+    }
+
+    /** Quatro categorias com {@link #FAIXAS_TABELA} faixas de 10 m³, a última sem fim. */
+    private static TabelaTarifariaRequest proposta() {
+        List<FaixaDTO> faixas = new ArrayList<>(FAIXAS_TABELA);
+        for (int i = 0; i < FAIXAS_TABELA; i++) {
+            Integer fim = i == FAIXAS_TABELA - 1 ? null : i * 10 + 9;
+            faixas.add(new FaixaDTO(i * 10, fim, BigDecimal.valueOf(150 + 35 * i, 2)));
+        }
+        List<CategoriaDTO> categorias = new ArrayList<>();
+        for (CategoriaConsumidor categoria : CategoriaConsumidor.values()) {
+            categorias.add(new CategoriaDTO(categoria.name(), faixas));
+        }
+        return new TabelaTarifariaRequest("Proposta", categorias);
+    }
+}
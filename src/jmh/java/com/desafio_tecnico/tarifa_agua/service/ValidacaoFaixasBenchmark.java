@@ -0,0 +1,60 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.dto.FaixaDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo de {@code TabelaTarifariaService.validarFaixas} para listas grandes de faixas, recebidas
+ * fora de ordem como podem chegar no corpo da requisição.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidacaoFaixasBenchmark {
+
+    @Param({"5", "50", "500", "5000"})
+    public int faixas;
+
+    private TabelaTarifariaService service;
+    private List<FaixaDTO> lista;
+
+    @Setup
+    public void setUp() {
+        service = new TabelaTarifariaService(null, null, null);
+
+        List<FaixaDTO> geradas = new ArrayList<>(faixas);
+        for (int i = 0; i < faixas; i++) {
+            int inicio = i * 10;
+            Integer fim = i == faixas - 1 ? null : inicio + 9;
+            geradas.add(new FaixaDTO(inicio, fim, BigDecimal.valueOf(100 + i, 2)));
+        }
+        Collections.shuffle(geradas, new Random(42));
+        lista = List.copyOf(geradas);
+    }
+
+    @Benchmark
+    public List<FaixaDTO> validarFaixas() {
+        service.validarFaixas(lista);
+        return lista;
+    }
+}
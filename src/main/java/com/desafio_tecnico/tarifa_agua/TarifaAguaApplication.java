@@ -2,8 +2,10 @@ package com.desafio_tecnico.tarifa_agua;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class TarifaAguaApplication {
 
 	public static void main(String[] args) {
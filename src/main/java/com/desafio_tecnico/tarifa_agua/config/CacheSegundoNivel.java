@@ -0,0 +1,105 @@
+package com.desafio_tecnico.tarifa_agua.config;
+
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import com.desafio_tecnico.tarifa_agua.entity.FaixaConsumo;
+import com.desafio_tecnico.tarifa_agua.entity.TabelaTarifaria;
+import com.desafio_tecnico.tarifa_agua.entity.TarifaCategoria;
+import com.desafio_tecnico.tarifa_agua.service.SincronizacaoTabelaAtiva;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.CacheSettings;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Cache de segundo nível do Hibernate para tabelas, categorias e faixas, e cache da consulta da
+ * tabela ativa. As regiões ficam em um {@link CacheManager} Caffeine (via JCache) criado aqui,
+ * próprio desta instância e com tamanho limitado, e o Hibernate falha na inicialização se alguma
+ * entidade ou coleção anotada não tiver região declarada.
+ * <p>
+ * As regiões usam {@code READ_WRITE}: a desativação de uma tabela atualiza a entidade e a tabela
+ * {@code tabela_tarifaria} no cache de timestamps, o que invalida as consultas em cache. Trocas
+ * feitas por outras instâncias não passam pelo Hibernate daqui; a {@link SincronizacaoTabelaAtiva}
+ * esvazia o cache antes de recarregar.
+ * <p>
+ * Acertos, faltas, remoções por tamanho e tamanho de cada região saem como {@code cache_gets_total},
+ * {@code cache_evictions_total} e {@code cache_size}, com a tag {@code cache} igual ao nome da
+ * região sem o pacote das entidades ({@code TabelaTarifaria}, {@code TarifaCategoria.faixas}).
+ */
+@Configuration
+public class CacheSegundoNivel implements HibernatePropertiesCustomizer, MeterBinder, DisposableBean {
+
+    private final CacheManager cacheManager;
+    private final Map<String, Cache<Object, Object>> regioes = new LinkedHashMap<>();
+
+    /**
+     * @param maximoTabelas tabelas (e coleções de categorias) mantidas em cache
+     * @param maximoFaixas  faixas mantidas em cache, somando todas as tabelas
+     */
+    public CacheSegundoNivel(@Value("${tarifa.cache-entidades.maximo-tabelas:200}") long maximoTabelas,
+                             @Value("${tarifa.cache-entidades.maximo-faixas:100000}") long maximoFaixas) {
+        // URI própria: o provider devolve o mesmo CacheManager para a mesma URI na mesma JVM
+        cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("tarifa-agua-" + UUID.randomUUID()), getClass().getClassLoader());
+
+        long maximoCategorias = maximoTabelas * CategoriaConsumidor.values().length;
+        criarRegiao(TabelaTarifaria.class.getName(), maximoTabelas);
+        criarRegiao(TabelaTarifaria.class.getName() + ".categorias", maximoTabelas);
+        criarRegiao(TarifaCategoria.class.getName(), maximoCategorias);
+        criarRegiao(TarifaCategoria.class.getName() + ".faixas", maximoCategorias);
+        criarRegiao(FaixaConsumo.class.getName(), maximoFaixas);
+        // Uma entrada por combinação de consulta e parâmetros; hoje só a da tabela ativa
+        criarRegiao(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, 100);
+        // Uma entrada por tabela do banco; o Hibernate não admite remoção por tamanho aqui
+        criarRegiao(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, -1);
+    }
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(CacheSettings.USE_SECOND_LEVEL_CACHE, true);
+        hibernateProperties.put(CacheSettings.USE_QUERY_CACHE, true);
+        hibernateProperties.put(CacheSettings.CACHE_REGION_FACTORY, "jcache");
+        hibernateProperties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+        hibernateProperties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        String pacoteEntidades = TabelaTarifaria.class.getPackageName() + ".";
+        regioes.forEach((nome, regiao) -> CaffeineCacheMetrics.monitor(registry,
+                regiao.unwrap(com.github.benmanes.caffeine.cache.Cache.class), nome.replace(pacoteEntidades, "")));
+    }
+
+    @Override
+    public void destroy() {
+        cacheManager.close();
+    }
+
+    /**
+     * @param maximo entradas na região; negativo deixa sem limite
+     */
+    private void criarRegiao(String nome, long maximo) {
+        CaffeineConfiguration<Object, Object> configuracao = new CaffeineConfiguration<>();
+        configuracao.setMaximumSize(maximo < 0 ? OptionalLong.empty() : OptionalLong.of(maximo));
+        // O Hibernate já guarda cópias desmontadas das entidades; copiar de novo só custaria CPU
+        configuracao.setStoreByValue(false);
+        configuracao.setNativeStatisticsEnabled(true);
+        regioes.put(nome, cacheManager.createCache(nome, configuracao));
+    }
+}
@@ -0,0 +1,61 @@
+package com.desafio_tecnico.tarifa_agua.config;
+
+import com.desafio_tecnico.tarifa_agua.service.EstatisticasSql;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.cfg.JdbcSettings;
+import org.hibernate.cfg.StatisticsSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.Map;
+
+/**
+ * Registra as {@link EstatisticasSql} como fábrica de estatísticas do Hibernate e associa cada
+ * requisição ao seu endpoint.
+ */
+@Configuration
+@ConditionalOnProperty(name = "tarifa.sql.estatisticas.habilitada", havingValue = "true")
+@RequiredArgsConstructor
+public class EstatisticasSqlConfig implements HibernatePropertiesCustomizer, WebMvcConfigurer {
+
+    private final EstatisticasSql estatisticas;
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(StatisticsSettings.STATS_BUILDER, estatisticas);
+        hibernateProperties.put(JdbcSettings.LOG_SLOW_QUERY, estatisticas.getConsultaLenta().toMillis());
+        // O Hibernate aplica esta configuração depois de buildStatistics
+        hibernateProperties.put(StatisticsSettings.GENERATE_STATISTICS, estatisticas.isAtiva());
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new Interceptor());
+    }
+
+    /** Marca a thread da requisição com o método e o padrão da rota, e não com a URL, para não multiplicar chaves. */
+    private final class Interceptor implements HandlerInterceptor {
+
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+            if (estatisticas.isAtiva()) {
+                Object padrao = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                estatisticas.entrarEndpoint(request.getMethod() + " " + (padrao != null ? padrao : "(sem rota)"));
+            }
+            return true;
+        }
+
+        @Override
+        public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                    Exception ex) {
+            estatisticas.sairEndpoint();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.desafio_tecnico.tarifa_agua.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+import java.time.ZoneId;
+
+@Configuration
+public class RelogioConfig {
+
+    /** Fuso das datas de vigência e desativação das tabelas e dos meses do histograma de consumo. */
+    public static final ZoneId FUSO_HORARIO = ZoneId.of("America/Recife");
+
+    @Bean
+    public Clock relogio() {
+        return Clock.system(FUSO_HORARIO);
+    }
+}
@@ -1,28 +1,165 @@
 package com.desafio_tecnico.tarifa_agua.controller;
 
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteItemRequest;
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteItemResponse;
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteParaleloResponse;
 import com.desafio_tecnico.tarifa_agua.dto.CalculoRequest;
 import com.desafio_tecnico.tarifa_agua.dto.CalculoResponse;
+import com.desafio_tecnico.tarifa_agua.service.CalculoConsulta;
+import com.desafio_tecnico.tarifa_agua.service.CalculoParaleloService;
 import com.desafio_tecnico.tarifa_agua.service.CalculoService;
+import com.desafio_tecnico.tarifa_agua.service.CalculoStreamService;
+import com.desafio_tecnico.tarifa_agua.service.IdempotenciaCalculo;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/calculos")
-@RequiredArgsConstructor
 public class CalculoController {
 
     private final CalculoService calculoService;
+    private final CalculoStreamService calculoStreamService;
+    private final CalculoParaleloService calculoParaleloService;
+    private final IdempotenciaCalculo idempotencia;
+    private final ObjectMapper objectMapper;
+    private final CacheControl cacheControl;
+    private final int itensMaximosLote;
+
+    /**
+     * @param cacheMaxAge      por quanto tempo clientes e proxies podem reutilizar uma resposta do
+     *                         {@code GET} sem revalidar; com zero, toda reutilização passa pelo ETag
+     * @param itensMaximosLote maior lote do {@code POST /lote}, que monta a resposta inteira em memória
+     */
+    public CalculoController(CalculoService calculoService,
+                             CalculoStreamService calculoStreamService,
+                             CalculoParaleloService calculoParaleloService,
+                             IdempotenciaCalculo idempotencia,
+                             ObjectMapper objectMapper,
+                             @Value("${tarifa.calculo.cache.max-age:0s}") Duration cacheMaxAge,
+                             @Value("${tarifa.calculo.lote.itens-maximos:10000}") int itensMaximosLote) {
+        this.calculoService = calculoService;
+        this.calculoStreamService = calculoStreamService;
+        this.calculoParaleloService = calculoParaleloService;
+        this.idempotencia = idempotencia;
+        this.objectMapper = objectMapper;
+        this.cacheControl = CacheControl.maxAge(cacheMaxAge).cachePublic().mustRevalidate();
+        this.itensMaximosLote = itensMaximosLote;
+    }
+
+    @GetMapping
+    public ResponseEntity<CalculoResponse> consultar(
+            @RequestParam String categoria,
+            @RequestParam Integer consumo,
+            @RequestParam(defaultValue = "false") boolean resumo,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime dataReferencia,
+            WebRequest webRequest
+    ) {
+        CalculoConsulta consulta = calculoService.consultar(new CalculoRequest(categoria, consumo, dataReferencia), !resumo);
+        if (webRequest.checkNotModified(consulta.etag())) {
+            // checkNotModified já definiu o status 304 e o cabeçalho ETag
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(consulta.etag())
+                .cacheControl(cacheControl)
+                .body(consulta.calcular());
+    }
 
     @PostMapping
     public ResponseEntity<CalculoResponse> calcular(
-            @Valid @RequestBody CalculoRequest request
+            @Valid @RequestBody CalculoRequest request,
+            @RequestParam(defaultValue = "false") boolean resumo
     ) {
-        CalculoResponse response = calculoService.calcular(request);
+        CalculoResponse response = idempotencia.calcular(request, !resumo);
         return ResponseEntity.ok(response);
     }
+
+    @PostMapping(value = "/lote", consumes = {MediaType.APPLICATION_JSON_VALUE, FormatoBinarioCalculo.TIPO})
+    public ResponseEntity<List<CalculoLoteItemResponse>> calcularLote(
+            @RequestBody List<CalculoLoteItemRequest> itens,
+            @RequestParam(defaultValue = "false") boolean resumo
+    ) {
+        return ResponseEntity.ok(calculoService.calcularLote(itens, !resumo, itensMaximosLote));
+    }
+
+    @PostMapping(value = "/lote", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<List<CalculoLoteItemResponse>> calcularLoteNdjson(
+            InputStream corpo,
+            @RequestParam(defaultValue = "false") boolean resumo
+    ) throws IOException {
+        try (MappingIterator<CalculoLoteItemRequest> itens = objectMapper.readerFor(CalculoLoteItemRequest.class)
+                .readValues(corpo)) {
+            return ResponseEntity.ok(calculoService.calcularLote(itens, !resumo, itensMaximosLote));
+        }
+    }
+
+    @PostMapping(value = "/lote/paralelo", consumes = {MediaType.APPLICATION_JSON_VALUE, FormatoBinarioCalculo.TIPO})
+    public ResponseEntity<CalculoLoteParaleloResponse> calcularLoteParalelo(
+            @RequestBody List<CalculoLoteItemRequest> itens,
+            @RequestParam(defaultValue = "false") boolean resumo
+    ) {
+        return ResponseEntity.ok(calculoParaleloService.calcular(itens, !resumo));
+    }
+
+    @PostMapping(value = "/lote/paralelo", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public void calcularLoteParaleloNdjson(
+            InputStream corpo,
+            @RequestParam(defaultValue = "false") boolean resumo,
+            HttpServletResponse response
+    ) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        calculoParaleloService.processarNdjson(new InputStreamReader(corpo, StandardCharsets.UTF_8), abrirSaida(response), !resumo);
+    }
+
+    @PostMapping(value = "/lote/stream", consumes = "text/csv")
+    public void calcularLoteCsv(InputStream corpo, HttpServletResponse response) throws IOException {
+        response.setContentType("text/csv;charset=UTF-8");
+        calculoStreamService.processarCsv(new InputStreamReader(corpo, StandardCharsets.UTF_8), abrirSaida(response));
+    }
+
+    @PostMapping(value = "/lote/stream", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public void calcularLoteNdjsonStream(
+            InputStream corpo,
+            @RequestParam(defaultValue = "false") boolean resumo,
+            HttpServletResponse response
+    ) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        calculoStreamService.processarNdjson(new InputStreamReader(corpo, StandardCharsets.UTF_8), abrirSaida(response), !resumo);
+    }
+
+    /**
+     * A saída não é fechada aqui: se o processamento falhar antes da primeira linha, a resposta
+     * continua livre para o {@code GlobalExceptionHandler} devolver o erro.
+     */
+    private Writer abrirSaida(HttpServletResponse response) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+    }
 }
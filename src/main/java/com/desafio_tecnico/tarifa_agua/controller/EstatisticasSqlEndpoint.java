@@ -0,0 +1,44 @@
+package com.desafio_tecnico.tarifa_agua.controller;
+
+import com.desafio_tecnico.tarifa_agua.dto.EstatisticasSqlResponse;
+import com.desafio_tecnico.tarifa_agua.service.EstatisticasSql;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code GET /actuator/sqlstats} lê o relatório, {@code POST} com {@code {"ativa": true|false}} liga ou
+ * desliga a coleta e {@code DELETE} zera os contadores.
+ */
+@Component
+@ConditionalOnProperty(name = "tarifa.sql.estatisticas.habilitada", havingValue = "true")
+@Endpoint(id = "sqlstats")
+@RequiredArgsConstructor
+public class EstatisticasSqlEndpoint {
+
+    private final EstatisticasSql estatisticas;
+
+    @ReadOperation
+    public EstatisticasSqlResponse relatorio() {
+        return estatisticas.relatorio();
+    }
+
+    @WriteOperation
+    public EstatisticasSqlResponse alterar(boolean ativa) {
+        if (ativa) {
+            estatisticas.iniciar();
+        } else {
+            estatisticas.parar();
+        }
+        return estatisticas.relatorio();
+    }
+
+    @DeleteOperation
+    public void limpar() {
+        estatisticas.limpar();
+    }
+}
@@ -0,0 +1,420 @@
+package com.desafio_tecnico.tarifa_agua.controller;
+
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteItemRequest;
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteItemResponse;
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteParaleloResponse;
+import com.desafio_tecnico.tarifa_agua.dto.CalculoRequest;
+import com.desafio_tecnico.tarifa_agua.dto.CalculoResponse;
+import com.desafio_tecnico.tarifa_agua.dto.DetalhamentoResponse;
+import com.desafio_tecnico.tarifa_agua.dto.FaixaInfo;
+import com.desafio_tecnico.tarifa_agua.dto.TotalCategoriaResponse;
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import com.desafio_tecnico.tarifa_agua.exception.ErrorResponse;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Formato binário {@value #TIPO} para clientes internos de alto volume, escolhido por
+ * {@code Content-Type} e {@code Accept} no {@code POST /api/calculos}, no {@code POST /api/calculos/lote}
+ * e no {@code POST /api/calculos/lote/paralelo}. A leitura decodifica o corpo aos poucos, por um buffer
+ * de 8 KiB, direto nos records, sem copiar o corpo inteiro; a escrita grava os records em um único
+ * buffer do tamanho da mensagem (limitado a 8 KiB nos lotes) entregue de uma vez ao servidor, sem
+ * árvore intermediária, sem reflexão e com {@code Content-Length} conhecido para a resposta de um cálculo.
+ * <p>
+ * Layout (big-endian), com campos de tamanho fixo exceto textos:
+ * <ul>
+ *   <li>categoria: {@code byte} com a posição em {@link CategoriaConsumidor} (0 = COMERCIAL,
+ *       1 = INDUSTRIAL, 2 = PARTICULAR, 3 = PUBLICO), 255 para ausente</li>
+ *   <li>data: segundos e nanos da data local ({@code long}, {@code int}), {@code Long.MIN_VALUE} nos
+ *       segundos para ausente</li>
+ *   <li>valor: valor sem escala e escala ({@code long}, {@code byte})</li>
+ *   <li>texto: tamanho em bytes ({@code unsigned short}, 65535 para ausente) e UTF-8</li>
+ *   <li>requisição: categoria, consumo ({@code int}), data de referência, chave de idempotência</li>
+ *   <li>resposta: categoria, consumo total ({@code int}), valor total, quantidade de faixas
+ *       ({@code int}, -1 sem detalhamento) e cada faixa como início e fim ({@code int}, -1 para
+ *       sem fim), m³ cobrados ({@code int}), valor unitário e subtotal</li>
+ *   <li>lote: quantidade de itens ({@code int}); cada item da requisição como id (texto),
+ *       categoria, consumo ({@code int}, {@code Integer.MIN_VALUE} para ausente) e data de
+ *       referência; cada item da resposta como id e erro (textos) e, sem erro, a resposta</li>
+ *   <li>lote paralelo: os itens como na resposta do lote, quantidade de totais ({@code int}), cada total
+ *       como categoria, leituras e consumo total ({@code long}) e valor total, e a quantidade de
+ *       erros ({@code long})</li>
+ *   <li>erro: data, status ({@code int}) e mensagem (texto)</li>
+ * </ul>
+ * O conversor entra depois do Jackson: sem {@code Accept} ou com {@code *}{@code /*}, a resposta
+ * continua em JSON.
+ */
+@Component
+public class FormatoBinarioCalculo implements WebMvcConfigurer {
+
+    public static final String TIPO = "application/x-tarifa-calculo";
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new Conversor());
+    }
+
+    static final class Conversor extends AbstractGenericHttpMessageConverter<Object> {
+
+        private static final int SEM_CATEGORIA = 0xFF;
+        private static final int SEM_TEXTO = 0xFFFF;
+        private static final long SEM_DATA = Long.MIN_VALUE;
+        private static final int SEM_CONSUMO = Integer.MIN_VALUE;
+        private static final int SEM_FIM = -1;
+        private static final int SEM_DETALHAMENTO = -1;
+        private static final int MAXIMO_BUFFER = 8 * 1024;
+        /** Itens reservados de antemão; a lista só cresce além disso com itens de fato lidos. */
+        private static final int MAXIMO_ITENS_RESERVADOS = 1024;
+
+        /** Categoria, consumo total, valor total e quantidade de faixas. */
+        private static final int BYTES_RESPOSTA = 1 + 4 + 9 + 4;
+        /** Início, fim, m³ cobrados, valor unitário e subtotal. */
+        private static final int BYTES_FAIXA = 4 + 4 + 4 + 9 + 9;
+        /** Categoria, leituras, consumo total e valor total. */
+        private static final int BYTES_TOTAL = 1 + 8 + 8 + 9;
+        /** Data, status e tamanho da mensagem. */
+        private static final int BYTES_ERRO = 12 + 4 + 2;
+
+        private static final CategoriaConsumidor[] CATEGORIAS = CategoriaConsumidor.values();
+        private static final ResolvableType LOTE_REQUEST = ResolvableType.forClassWithGenerics(List.class, CalculoLoteItemRequest.class);
+        private static final ResolvableType LOTE_RESPONSE = ResolvableType.forClassWithGenerics(List.class, CalculoLoteItemResponse.class);
+
+        Conversor() {
+            super(MediaType.parseMediaType(TIPO));
+        }
+
+        @Override
+        protected boolean supports(Class<?> clazz) {
+            return clazz == CalculoRequest.class || clazz == CalculoResponse.class
+                    || clazz == CalculoLoteParaleloResponse.class || clazz == ErrorResponse.class;
+        }
+
+        /** Os lotes são listas; quem decide o tipo do elemento são {@code canRead} e {@code canWrite}. */
+        @Override
+        public List<MediaType> getSupportedMediaTypes(Class<?> clazz) {
+            return getSupportedMediaTypes();
+        }
+
+        @Override
+        public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+            return canRead(mediaType) && (type == CalculoRequest.class || LOTE_REQUEST.isAssignableFrom(ResolvableType.forType(type)));
+        }
+
+        @Override
+        public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+            return canWrite(mediaType) && (clazz == CalculoResponse.class || clazz == CalculoLoteParaleloResponse.class
+                    || clazz == ErrorResponse.class
+                    || (type != null && LOTE_RESPONSE.isAssignableFrom(ResolvableType.forType(type))));
+        }
+
+        @Override
+        protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+            return read(clazz, null, inputMessage);
+        }
+
+        @Override
+        public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+            DataInputStream entrada = new DataInputStream(new BufferedInputStream(inputMessage.getBody(), MAXIMO_BUFFER));
+            Object lido;
+            try {
+                lido = type == CalculoRequest.class ? lerRequest(entrada) : lerLote(entrada);
+            } catch (EOFException | RuntimeException e) {
+                throw new HttpMessageNotReadableException("Mensagem truncada ou com valores inválidos", e, inputMessage);
+            }
+            if (entrada.read() >= 0) {
+                throw new HttpMessageNotReadableException("Bytes sobrando após o fim da mensagem", inputMessage);
+            }
+            return lido;
+        }
+
+        @Override
+        protected Long getContentLength(Object valor, MediaType contentType) {
+            return valor instanceof CalculoResponse resposta ? (long) tamanho(resposta) : null;
+        }
+
+        @Override
+        protected void writeInternal(Object valor, Type type, HttpOutputMessage outputMessage) throws IOException {
+            if (valor instanceof CalculoResponse resposta) {
+                Saida saida = new Saida(outputMessage.getBody(), tamanho(resposta));
+                escreverResposta(saida, resposta);
+                saida.descarregar();
+            } else if (valor instanceof ErrorResponse erro) {
+                byte[] mensagem = utf8(erro.message());
+                Saida saida = new Saida(outputMessage.getBody(), BYTES_ERRO + mensagem.length);
+                escreverData(saida, erro.timestamp());
+                saida.buffer.putInt(erro.status());
+                saida.texto(mensagem);
+                saida.descarregar();
+            } else if (valor instanceof CalculoLoteParaleloResponse paralelo) {
+                escreverLoteParalelo(new Saida(outputMessage.getBody(), tamanhoEstimado(paralelo.itens())), paralelo);
+            } else {
+                @SuppressWarnings("unchecked")
+                List<CalculoLoteItemResponse> itens = (List<CalculoLoteItemResponse>) valor;
+                Saida saida = new Saida(outputMessage.getBody(), tamanhoEstimado(itens));
+                escreverItens(saida, itens);
+                saida.descarregar();
+            }
+        }
+
+        // ======================= leitura =======================
+
+        private static CalculoRequest lerRequest(DataInputStream entrada) throws IOException {
+            return new CalculoRequest(lerCategoria(entrada), entrada.readInt(), lerData(entrada), lerTexto(entrada));
+        }
+
+        /** Um corpo que anuncia mais itens do que traz termina em {@link EOFException}. */
+        private static List<CalculoLoteItemRequest> lerLote(DataInputStream entrada) throws IOException {
+            int quantidade = entrada.readInt();
+            if (quantidade < 0) {
+                throw new IllegalArgumentException("Quantidade de itens negativa: " + quantidade);
+            }
+            List<CalculoLoteItemRequest> itens = new ArrayList<>(Math.min(quantidade, MAXIMO_ITENS_RESERVADOS));
+            for (int i = 0; i < quantidade; i++) {
+                String id = lerTexto(entrada);
+                String categoria = lerCategoria(entrada);
+                int consumo = entrada.readInt();
+                itens.add(new CalculoLoteItemRequest(id, categoria, consumo == SEM_CONSUMO ? null : consumo, lerData(entrada)));
+            }
+            return itens;
+        }
+
+        private static String lerCategoria(DataInputStream entrada) throws IOException {
+            return categoria(entrada.readUnsignedByte());
+        }
+
+        private static String lerCategoria(ByteBuffer entrada) {
+            return categoria(Byte.toUnsignedInt(entrada.get()));
+        }
+
+        /**
+         * Posição desconhecida vira o próprio número, para que o cálculo a recuse como categoria
+         * inválida, como faria com um nome desconhecido em JSON.
+         */
+        private static String categoria(int posicao) {
+            if (posicao == SEM_CATEGORIA) {
+                return null;
+            }
+            return posicao < CATEGORIAS.length ? CATEGORIAS[posicao].name() : String.valueOf(posicao);
+        }
+
+        private static LocalDateTime lerData(DataInputStream entrada) throws IOException {
+            long segundos = entrada.readLong();
+            int nanos = entrada.readInt();
+            return segundos == SEM_DATA ? null : LocalDateTime.ofEpochSecond(segundos, nanos, ZoneOffset.UTC);
+        }
+
+        private static String lerTexto(DataInputStream entrada) throws IOException {
+            int tamanho = entrada.readUnsignedShort();
+            if (tamanho == SEM_TEXTO) {
+                return null;
+            }
+            byte[] bytes = new byte[tamanho];
+            entrada.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private static BigDecimal lerValor(ByteBuffer entrada) {
+            return BigDecimal.valueOf(entrada.getLong(), entrada.get());
+        }
+
+        /** Leitura de uma resposta, para clientes em Java e para os testes. */
+        static CalculoResponse lerResposta(ByteBuffer entrada) {
+            String categoria = lerCategoria(entrada);
+            int consumoTotal = entrada.getInt();
+            BigDecimal valorTotal = lerValor(entrada);
+            int quantidade = entrada.getInt();
+            if (quantidade == SEM_DETALHAMENTO) {
+                return new CalculoResponse(categoria, consumoTotal, valorTotal, null);
+            }
+            List<DetalhamentoResponse> detalhamento = new ArrayList<>(quantidade);
+            for (int i = 0; i < quantidade; i++) {
+                int inicio = entrada.getInt();
+                int fim = entrada.getInt();
+                detalhamento.add(new DetalhamentoResponse(new FaixaInfo(inicio, fim == SEM_FIM ? null : fim),
+                        entrada.getInt(), lerValor(entrada), lerValor(entrada)));
+            }
+            return new CalculoResponse(categoria, consumoTotal, valorTotal, detalhamento);
+        }
+
+        // ======================= escrita =======================
+
+        private static int tamanho(CalculoResponse resposta) {
+            return BYTES_RESPOSTA + (resposta.detalhamento() == null ? 0 : resposta.detalhamento().size() * BYTES_FAIXA);
+        }
+
+        /** Ids e erros contados em caracteres; o buffer esvazia sozinho se a estimativa ficar curta. */
+        private static int tamanhoEstimado(List<CalculoLoteItemResponse> itens) {
+            long tamanho = 4;
+            for (CalculoLoteItemResponse item : itens) {
+                tamanho += 4 + (item.id() == null ? 0 : item.id().length());
+                tamanho += item.erro() == null ? tamanho(item.resultado()) : item.erro().length();
+                if (tamanho >= MAXIMO_BUFFER) {
+                    return MAXIMO_BUFFER;
+                }
+            }
+            return (int) tamanho;
+        }
+
+        private static void escreverItens(Saida saida, List<CalculoLoteItemResponse> itens) throws IOException {
+            saida.garantir(4);
+            saida.buffer.putInt(itens.size());
+            for (CalculoLoteItemResponse item : itens) {
+                saida.texto(utf8(item.id()));
+                saida.texto(utf8(item.erro()));
+                if (item.erro() == null) {
+                    escreverResposta(saida, item.resultado());
+                }
+            }
+        }
+
+        private static void escreverLoteParalelo(Saida saida, CalculoLoteParaleloResponse paralelo) throws IOException {
+            escreverItens(saida, paralelo.itens());
+            saida.garantir(4);
+            saida.buffer.putInt(paralelo.totais().size());
+            for (TotalCategoriaResponse total : paralelo.totais()) {
+                saida.garantir(BYTES_TOTAL);
+                saida.buffer.put((byte) CategoriaConsumidor.valueOf(total.categoria()).ordinal());
+                saida.buffer.putLong(total.leituras());
+                saida.buffer.putLong(total.consumoTotal());
+                escreverValor(saida.buffer, total.valorTotal());
+            }
+            saida.garantir(8);
+            saida.buffer.putLong(paralelo.erros());
+            saida.descarregar();
+        }
+
+        /** Reserva espaço por registro: no lote, uma resposta pode ser maior que o buffer. */
+        private static void escreverResposta(Saida saida, CalculoResponse resposta) throws IOException {
+            ByteBuffer buffer = saida.buffer;
+            saida.garantir(BYTES_RESPOSTA);
+            buffer.put((byte) CategoriaConsumidor.valueOf(resposta.categoria()).ordinal());
+            buffer.putInt(resposta.consumoTotal());
+            escreverValor(buffer, resposta.valorTotal());
+            List<DetalhamentoResponse> detalhamento = resposta.detalhamento();
+            if (detalhamento == null) {
+                buffer.putInt(SEM_DETALHAMENTO);
+                return;
+            }
+            buffer.putInt(detalhamento.size());
+            for (DetalhamentoResponse faixa : detalhamento) {
+                saida.garantir(BYTES_FAIXA);
+                buffer.putInt(faixa.faixa().inicio());
+                buffer.putInt(faixa.faixa().fim() == null ? SEM_FIM : faixa.faixa().fim());
+                buffer.putInt(faixa.m3Cobrados());
+                escreverValor(buffer, faixa.valorUnitario());
+                escreverValor(buffer, faixa.subtotal());
+            }
+        }
+
+        /** {@code scaleByPowerOfTen} mantém o valor sem escala em um {@code long}, sem passar por BigInteger. */
+        private static void escreverValor(ByteBuffer buffer, BigDecimal valor) {
+            buffer.putLong(valor.scaleByPowerOfTen(valor.scale()).longValueExact());
+            buffer.put((byte) valor.scale());
+        }
+
+        private static void escreverData(Saida saida, LocalDateTime data) {
+            saida.buffer.putLong(data == null ? SEM_DATA : data.toEpochSecond(ZoneOffset.UTC));
+            saida.buffer.putInt(data == null ? 0 : data.getNano());
+        }
+
+        /** UTF-8 cortado no limite do campo (mensagens de erro longas); {@code null} continua ausente. */
+        private static byte[] utf8(String texto) {
+            if (texto == null) {
+                return null;
+            }
+            byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length < SEM_TEXTO) {
+                return bytes;
+            }
+            // Cortar os bytes poderia partir um caractere; o encoder para antes do que não cabe inteiro
+            ByteBuffer cortado = ByteBuffer.allocate(SEM_TEXTO - 1);
+            StandardCharsets.UTF_8.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                    .encode(CharBuffer.wrap(texto), cortado, true);
+            return Arrays.copyOf(cortado.array(), cortado.position());
+        }
+
+        /** Escrita de uma requisição, para clientes em Java e para os testes. */
+        static byte[] escreverRequest(CalculoRequest request) {
+            byte[] chave = utf8(request.chaveIdempotencia());
+            ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 12 + 2 + (chave == null ? 0 : chave.length));
+            buffer.put((byte) (request.categoria() == null ? SEM_CATEGORIA : CategoriaConsumidor.valueOf(request.categoria()).ordinal()));
+            buffer.putInt(request.consumo());
+            buffer.putLong(request.dataReferencia() == null ? SEM_DATA : request.dataReferencia().toEpochSecond(ZoneOffset.UTC));
+            buffer.putInt(request.dataReferencia() == null ? 0 : request.dataReferencia().getNano());
+            buffer.putShort((short) (chave == null ? SEM_TEXTO : chave.length));
+            if (chave != null) {
+                buffer.put(chave);
+            }
+            return buffer.array();
+        }
+
+        /**
+         * Buffer big-endian entregue ao corpo da resposta em blocos; na resposta de um cálculo, um
+         * bloco só, do tamanho exato da mensagem.
+         */
+        private static final class Saida {
+
+            private final OutputStream destino;
+            private final ByteBuffer buffer;
+
+            Saida(OutputStream destino, int tamanho) {
+                this.destino = destino;
+                this.buffer = ByteBuffer.allocate(Math.max(tamanho, 64));
+            }
+
+            void garantir(int bytes) throws IOException {
+                if (buffer.remaining() < bytes) {
+                    descarregar();
+                }
+            }
+
+            /** Textos maiores que o buffer vão direto para o destino. */
+            void texto(byte[] bytes) throws IOException {
+                garantir(2);
+                buffer.putShort((short) (bytes == null ? SEM_TEXTO : bytes.length));
+                if (bytes == null) {
+                    return;
+                }
+                if (buffer.remaining() < bytes.length) {
+                    descarregar();
+                    if (buffer.capacity() < bytes.length) {
+                        destino.write(bytes);
+                        return;
+                    }
+                }
+                buffer.put(bytes);
+            }
+
+            void descarregar() throws IOException {
+                destino.write(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.desafio_tecnico.tarifa_agua.controller;
+
+import com.desafio_tecnico.tarifa_agua.dto.HistogramaConsumoResponse;
+import com.desafio_tecnico.tarifa_agua.service.HistogramaConsumo;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.YearMonth;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/histogramas")
+@RequiredArgsConstructor
+public class HistogramaConsumoController {
+
+    private final HistogramaConsumo histograma;
+
+    /**
+     * @param limites início de cada faixa; sem eles, valem as faixas da categoria na tabela ativa
+     */
+    @GetMapping("/consumo")
+    public ResponseEntity<HistogramaConsumoResponse> consultar(
+            @RequestParam String categoria,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth inicio,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth fim,
+            @RequestParam(required = false) List<Integer> limites
+    ) {
+        return ResponseEntity.ok(histograma.consultar(categoria, inicio, fim, limites));
+    }
+}
@@ -1,15 +1,23 @@
 package com.desafio_tecnico.tarifa_agua.controller;
 
+import com.desafio_tecnico.tarifa_agua.dto.SimulacaoTarifaRequest;
+import com.desafio_tecnico.tarifa_agua.dto.SimulacaoTarifaResponse;
 import com.desafio_tecnico.tarifa_agua.dto.TabelaTarifariaCriadaResponse;
+import com.desafio_tecnico.tarifa_agua.dto.TabelaTarifariaCursorResponse;
 import com.desafio_tecnico.tarifa_agua.dto.TabelaTarifariaExclusaoResponse;
 import com.desafio_tecnico.tarifa_agua.dto.TabelaTarifariaRequest;
 import com.desafio_tecnico.tarifa_agua.dto.TabelaTarifariaResponse;
+import com.desafio_tecnico.tarifa_agua.service.SimulacaoTarifaService;
+import com.desafio_tecnico.tarifa_agua.service.SnapshotTarifaService;
 import com.desafio_tecnico.tarifa_agua.service.TabelaTarifariaService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -19,6 +27,8 @@ import org.springframework.web.bind.annotation.*;
 public class TabelaTarifariaController {
 
     private final TabelaTarifariaService service;
+    private final SnapshotTarifaService snapshotService;
+    private final SimulacaoTarifaService simulacaoService;
 
     @PostMapping
     public ResponseEntity<TabelaTarifariaCriadaResponse> criarTabela(
@@ -28,6 +38,11 @@ public class TabelaTarifariaController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    @PostMapping("/simulacao")
+    public ResponseEntity<SimulacaoTarifaResponse> simular(@Valid @RequestBody SimulacaoTarifaRequest request) {
+        return ResponseEntity.ok(simulacaoService.simular(request));
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<TabelaTarifariaExclusaoResponse> excluir(@PathVariable Long id) {
         TabelaTarifariaExclusaoResponse response = service.excluir(id);
@@ -38,4 +53,26 @@ public class TabelaTarifariaController {
         return ResponseEntity.ok(service.listar(pageable));
     }
 
+    @GetMapping("/historico")
+    public ResponseEntity<TabelaTarifariaCursorResponse> listarHistorico(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        return ResponseEntity.ok(service.listarHistorico(cursor, size));
+    }
+
+    @GetMapping(value = "/ativa/snapshot", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> exportarSnapshot() {
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("tabela-ativa.snapshot").build().toString())
+                .body(snapshotService.exportarAtiva());
+    }
+
+    @PostMapping(value = "/snapshot", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<TabelaTarifariaCriadaResponse> importarSnapshot(@RequestBody byte[] snapshot) {
+        TabelaTarifariaCriadaResponse response = snapshotService.importar(snapshot);
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,14 @@
+package com.desafio_tecnico.tarifa_agua.dto;
+
+import java.time.LocalDateTime;
+
+public record CalculoLoteItemRequest(
+        String id,
+        String categoria,
+        Integer consumo,
+        LocalDateTime dataReferencia
+) {
+    public CalculoLoteItemRequest(String id, String categoria, Integer consumo) {
+        this(id, categoria, consumo, null);
+    }
+}
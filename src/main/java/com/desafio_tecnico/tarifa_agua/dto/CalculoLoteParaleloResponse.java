@@ -0,0 +1,9 @@
+package com.desafio_tecnico.tarifa_agua.dto;
+
+import java.util.List;
+
+public record CalculoLoteParaleloResponse(
+        List<CalculoLoteItemResponse> itens,
+        List<TotalCategoriaResponse> totais,
+        long erros
+) {}
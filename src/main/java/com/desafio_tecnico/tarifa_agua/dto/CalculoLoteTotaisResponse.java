@@ -0,0 +1,8 @@
+package com.desafio_tecnico.tarifa_agua.dto;
+
+import java.util.List;
+
+public record CalculoLoteTotaisResponse(
+        List<TotalCategoriaResponse> totais,
+        long erros
+) {}
@@ -3,10 +3,30 @@ package com.desafio_tecnico.tarifa_agua.dto;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 
+import java.time.LocalDateTime;
+
+/**
+ * @param dataReferencia     data da leitura; quando informada, o cálculo usa a tabela vigente nessa
+ *                           data em vez da tabela ativa
+ * @param chaveIdempotencia  identifica a leitura no cliente; reenvios com a mesma chave recebem a
+ *                           resposta já calculada
+ */
 public record CalculoRequest(
         @NotBlank
         String categoria,
         @NotNull @Min(0)
-        Integer consumo
-) {}
+        Integer consumo,
+        LocalDateTime dataReferencia,
+        @Size(min = 1, max = 100)
+        String chaveIdempotencia
+) {
+    public CalculoRequest(String categoria, Integer consumo) {
+        this(categoria, consumo, null, null);
+    }
+
+    public CalculoRequest(String categoria, Integer consumo, LocalDateTime dataReferencia) {
+        this(categoria, consumo, dataReferencia, null);
+    }
+}
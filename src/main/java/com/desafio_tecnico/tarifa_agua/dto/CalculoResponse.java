@@ -1,5 +1,7 @@
 package com.desafio_tecnico.tarifa_agua.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.math.BigDecimal;
 import java.util.List;
 
@@ -7,5 +9,6 @@ public record CalculoResponse(
         String categoria,
         Integer consumoTotal,
         BigDecimal valorTotal,
+        @JsonInclude(JsonInclude.Include.NON_NULL)
         List<DetalhamentoResponse> detalhamento
 ) {}
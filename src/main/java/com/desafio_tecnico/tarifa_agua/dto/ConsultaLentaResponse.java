@@ -0,0 +1,7 @@
+package com.desafio_tecnico.tarifa_agua.dto;
+
+public record ConsultaLentaResponse(
+        String sql,
+        long execucoes,
+        long tempoMaximoMs
+) {}
@@ -0,0 +1,16 @@
+package com.desafio_tecnico.tarifa_agua.dto;
+
+import java.util.List;
+
+public record EstatisticasEndpointResponse(
+        String endpoint,
+        long requisicoes,
+        long statements,
+        double statementsPorRequisicao,
+        long consultas,
+        long entidadesCarregadas,
+        long entidadesBuscadas,
+        long colecoesCarregadas,
+        long colecoesBuscadas,
+        List<ConsultaLentaResponse> consultasLentas
+) {}
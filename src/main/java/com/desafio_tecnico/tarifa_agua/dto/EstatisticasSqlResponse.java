@@ -0,0 +1,10 @@
+package com.desafio_tecnico.tarifa_agua.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+public record EstatisticasSqlResponse(
+        boolean ativa,
+        Instant desde,
+        List<EstatisticasEndpointResponse> endpoints
+) {}
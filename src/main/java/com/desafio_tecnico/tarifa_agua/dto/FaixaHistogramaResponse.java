@@ -0,0 +1,12 @@
+package com.desafio_tecnico.tarifa_agua.dto;
+
+/**
+ * @param exata {@code false} quando a faixa passa do limite de consumo do histograma e tem fim: só
+ *              as leituras abaixo do limite foram contadas
+ */
+public record FaixaHistogramaResponse(
+        Integer inicio,
+        Integer fim,
+        long leituras,
+        boolean exata
+) {}
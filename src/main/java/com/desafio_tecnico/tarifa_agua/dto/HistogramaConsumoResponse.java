@@ -0,0 +1,18 @@
+package com.desafio_tecnico.tarifa_agua.dto;
+
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * @param limiteConsumo m³ a partir do qual as leituras são contadas juntas
+ * @param acimaDoLimite leituras com consumo a partir do limite
+ */
+public record HistogramaConsumoResponse(
+        String categoria,
+        YearMonth inicio,
+        YearMonth fim,
+        int limiteConsumo,
+        long leituras,
+        long acimaDoLimite,
+        List<FaixaHistogramaResponse> faixas
+) {}
@@ -0,0 +1,17 @@
+package com.desafio_tecnico.tarifa_agua.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * Faixa de um histograma de consumo: quantas leituras da categoria tiveram exatamente esse consumo.
+ */
+public record LeiturasConsumoDTO(
+        @NotBlank
+        String categoria,
+        @NotNull @Min(0)
+        Integer consumo,
+        @NotNull @Min(0)
+        Long leituras
+) {}
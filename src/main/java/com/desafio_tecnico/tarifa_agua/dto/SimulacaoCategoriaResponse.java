@@ -0,0 +1,18 @@
+package com.desafio_tecnico.tarifa_agua.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * @param acimaDoLimite      leituras a partir do limite de consumo do histograma, valoradas no limite
+ * @param variacaoPercentual diferença sobre a receita atual, em %; nula quando a receita atual é zero
+ */
+public record SimulacaoCategoriaResponse(
+        String categoria,
+        long leituras,
+        long acimaDoLimite,
+        long consumoTotal,
+        BigDecimal receitaAtual,
+        BigDecimal receitaProposta,
+        BigDecimal diferenca,
+        BigDecimal variacaoPercentual
+) {}
@@ -0,0 +1,25 @@
+package com.desafio_tecnico.tarifa_agua.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.time.YearMonth;
+import java.util.List;
+
+/**
+ * Informe o histograma ou o período, nunca os dois.
+ *
+ * @param tabela     tabela proposta, validada como na criação e nunca gravada
+ * @param histograma leituras agrupadas por categoria e consumo
+ * @param inicio     primeiro mês do histograma de consumo calculado usado na simulação
+ * @param fim        último mês, inclusive
+ */
+public record SimulacaoTarifaRequest(
+        @NotNull @Valid
+        TabelaTarifariaRequest tabela,
+        @Size(max = 100_000) @Valid
+        List<LeiturasConsumoDTO> histograma,
+        YearMonth inicio,
+        YearMonth fim
+) {}
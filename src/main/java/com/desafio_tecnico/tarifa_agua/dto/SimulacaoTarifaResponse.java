@@ -0,0 +1,19 @@
+package com.desafio_tecnico.tarifa_agua.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * @param acimaDoLimite leituras a partir do limite de consumo do histograma, valoradas no limite; só
+ *                      na simulação por período
+ */
+public record SimulacaoTarifaResponse(
+        Long tabelaAtualId,
+        long leituras,
+        long acimaDoLimite,
+        BigDecimal receitaAtual,
+        BigDecimal receitaProposta,
+        BigDecimal diferenca,
+        BigDecimal variacaoPercentual,
+        List<SimulacaoCategoriaResponse> categorias
+) {}
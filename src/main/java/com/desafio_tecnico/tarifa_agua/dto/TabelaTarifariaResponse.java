@@ -8,5 +8,6 @@ public record TabelaTarifariaResponse(
         String nome,
         LocalDateTime dataVigencia,
         boolean ativa,
+        LocalDateTime dataDesativacao,
         List<CategoriaResponse> categorias
 ) {}
@@ -0,0 +1,10 @@
+package com.desafio_tecnico.tarifa_agua.dto;
+
+import java.math.BigDecimal;
+
+public record TotalCategoriaResponse(
+        String categoria,
+        long leituras,
+        long consumoTotal,
+        BigDecimal valorTotal
+) {}
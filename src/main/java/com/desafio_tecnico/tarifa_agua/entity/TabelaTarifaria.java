@@ -1,12 +1,14 @@
 package com.desafio_tecnico.tarifa_agua.entity;
 
+import com.desafio_tecnico.tarifa_agua.config.RelogioConfig;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -15,10 +17,13 @@ import java.util.Set;
 @NoArgsConstructor
 @Entity
 @Table(name = "tabela_tarifaria")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class TabelaTarifaria {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tabela_tarifaria_seq")
+    @SequenceGenerator(name = "tabela_tarifaria_seq", sequenceName = "tabela_tarifaria_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -30,11 +35,15 @@ public class TabelaTarifaria {
     @Column(nullable = false)
     private boolean ativa = true;
 
+    /** Momento em que a tabela foi desativada; {@code null} enquanto está ativa. */
+    private LocalDateTime dataDesativacao;
+
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @OneToMany(mappedBy = "tabelaTarifaria", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<TarifaCategoria> categorias = new HashSet<>();
 
     @PrePersist
     public void prePersist() {
-        this.dataVigencia = LocalDateTime.now(ZoneId.of("America/Recife"));
+        this.dataVigencia = LocalDateTime.now(RelogioConfig.FUSO_HORARIO);
     }
 }
\ No newline at end of file
@@ -4,6 +4,8 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -12,13 +14,16 @@ import java.util.Set;
 @Table(name = "tarifa_categoria", uniqueConstraints = {
         @UniqueConstraint(columnNames = {"tabela_tarifaria_id", "categoria"})
 })
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Getter
 @Setter
 @NoArgsConstructor
 public class TarifaCategoria {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tarifa_categoria_seq")
+    @SequenceGenerator(name = "tarifa_categoria_seq", sequenceName = "tarifa_categoria_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
@@ -30,6 +35,7 @@ public class TarifaCategoria {
     private CategoriaConsumidor categoria;
 
 
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @OneToMany(mappedBy = "tarifaCategoria", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<FaixaConsumo> faixas = new HashSet<>();
 
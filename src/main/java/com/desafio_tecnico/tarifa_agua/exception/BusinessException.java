@@ -2,7 +2,14 @@ package com.desafio_tecnico.tarifa_agua.exception;
 
 public class BusinessException extends RuntimeException {
 
-    public BusinessException(String message) {
+    private final TipoErroNegocio tipo;
+
+    public BusinessException(TipoErroNegocio tipo, String message) {
         super(message);
+        this.tipo = tipo;
+    }
+
+    public TipoErroNegocio getTipo() {
+        return tipo;
     }
 }
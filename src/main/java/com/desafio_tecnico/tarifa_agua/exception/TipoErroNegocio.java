@@ -0,0 +1,24 @@
+package com.desafio_tecnico.tarifa_agua.exception;
+
+/**
+ * Tipo de um {@link BusinessException}, usado como tag das métricas de erro: a cardinalidade é fixa
+ * mesmo com mensagens que incluem o valor recebido.
+ */
+public enum TipoErroNegocio {
+    CATEGORIA_INVALIDA("categoria_invalida"),
+    CONSUMO_INVALIDO("consumo_invalido"),
+    SEM_TABELA_VIGENTE("sem_tabela_vigente"),
+    FAIXA_INVALIDA("faixa_invalida"),
+    TABELA("tabela"),
+    ENTRADA_INVALIDA("entrada_invalida");
+
+    private final String tag;
+
+    TipoErroNegocio(String tag) {
+        this.tag = tag;
+    }
+
+    public String tag() {
+        return tag;
+    }
+}
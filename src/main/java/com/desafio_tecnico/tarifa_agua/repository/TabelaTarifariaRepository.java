@@ -1,27 +1,76 @@
 package com.desafio_tecnico.tarifa_agua.repository;
 
 import com.desafio_tecnico.tarifa_agua.entity.TabelaTarifaria;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface TabelaTarifariaRepository extends JpaRepository<TabelaTarifaria, Long> {
+    /**
+     * Em cache de consulta: qualquer escrita em {@code tabela_tarifaria} pelo Hibernate invalida o
+     * resultado, e categorias e faixas vêm do cache de segundo nível.
+     */
     @Query("""
     SELECT t FROM TabelaTarifaria t
     LEFT JOIN FETCH t.categorias c
     LEFT JOIN FETCH c.faixas
     WHERE t.ativa = true
 """)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<TabelaTarifaria> findAtivaComRelacionamentos();
 
     Optional<TabelaTarifaria> findFirstByAtivaTrue();
 
-    @EntityGraph(attributePaths = {"categorias", "categorias.faixas"})
-    Page<TabelaTarifaria> findAll(Pageable pageable);
+    /** Sempre no banco, sem cache: é a conferência contra trocas feitas por outras instâncias. */
+    @Query("SELECT t.id FROM TabelaTarifaria t WHERE t.ativa = true")
+    Optional<Long> findIdAtiva();
+
+    @Query(value = "SELECT t.id FROM TabelaTarifaria t",
+            countQuery = "SELECT count(t) FROM TabelaTarifaria t")
+    Page<Long> findIds(Pageable pageable);
+
+    @Query("""
+    SELECT DISTINCT t FROM TabelaTarifaria t
+    LEFT JOIN FETCH t.categorias c
+    LEFT JOIN FETCH c.faixas
+    ORDER BY t.dataVigencia, t.id
+""")
+    List<TabelaTarifaria> findTodasComRelacionamentos();
+
+    @Query(value = """
+    SELECT id FROM tabela_tarifaria
+    ORDER BY data_vigencia, id
+    LIMIT :limite
+""", nativeQuery = true)
+    List<Long> findPrimeirosIdsPorVigencia(@Param("limite") int limite);
+
+    @Query(value = """
+    SELECT id FROM tabela_tarifaria
+    WHERE (data_vigencia, id) > (:dataVigencia, :id)
+    ORDER BY data_vigencia, id
+    LIMIT :limite
+""", nativeQuery = true)
+    List<Long> findIdsPorVigenciaApos(@Param("dataVigencia") LocalDateTime dataVigencia,
+                                      @Param("id") Long id,
+                                      @Param("limite") int limite);
+
+    @Query("""
+    SELECT DISTINCT t FROM TabelaTarifaria t
+    LEFT JOIN FETCH t.categorias c
+    LEFT JOIN FETCH c.faixas
+    WHERE t.id IN :ids
+""")
+    List<TabelaTarifaria> findComRelacionamentosByIdIn(@Param("ids") Collection<Long> ids);
 
 }
 
@@ -0,0 +1,92 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.dto.CalculoResponse;
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Cálculo já resolvido contra a tabela ativa, mas ainda não executado. O ETag é conhecido antes do
+ * cálculo, o que permite responder 304 sem calcular nem serializar, e o cálculo usa a mesma tabela
+ * que originou o ETag mesmo que a tabela ativa mude no meio da requisição.
+ */
+public final class CalculoConsulta {
+
+    private final Long tabelaId;
+    private final CategoriaCompilada categoria;
+    private final int consumo;
+    private final boolean detalhado;
+    private final String etag;
+    private final TarifaMetricas metricas;
+    private final LancamentosCalculo lancamentos;
+    private final HistogramaConsumo histograma;
+
+    CalculoConsulta(TarifaCompilada tarifa, CategoriaCompilada categoria, int consumo, boolean detalhado,
+                    TarifaMetricas metricas, LancamentosCalculo lancamentos, HistogramaConsumo histograma) {
+        this.tabelaId = tarifa.getTabelaId();
+        this.categoria = categoria;
+        this.metricas = metricas;
+        this.lancamentos = lancamentos;
+        this.histograma = histograma;
+        this.consumo = consumo;
+        this.detalhado = detalhado;
+        this.etag = "\"" + tarifa.getTabelaId()
+                + "-" + versao(tarifa.getDataVigencia())
+                + "-" + categoria.getCategoria().name()
+                + "-" + consumo
+                + (detalhado ? "-d" : "-r") + "\"";
+    }
+
+    /**
+     * Data de vigência inteira, em segundos e nanos desde 1970-01-01T00:00 da data local: um hash
+     * poderia repetir para datas diferentes e manter um ETag antigo válido.
+     */
+    private static String versao(LocalDateTime dataVigencia) {
+        if (dataVigencia == null) {
+            return "0";
+        }
+        return dataVigencia.toEpochSecond(ZoneOffset.UTC) + "." + dataVigencia.getNano();
+    }
+
+    /**
+     * ETag forte formado pelo id e pela data de vigência da tabela, pela categoria, pelo consumo e
+     * pelo modo da resposta.
+     */
+    public String etag() {
+        return etag;
+    }
+
+    public CalculoResponse calcular() {
+        return calcular(null);
+    }
+
+    /**
+     * @param chaveIdempotencia gravada no lançamento, para que reenvios encontrem o cálculo
+     */
+    CalculoResponse calcular(String chaveIdempotencia) {
+        long inicio = System.nanoTime();
+        CalculoResponse resposta = categoria.calcular(consumo, detalhado);
+        metricas.registrarCalculo(categoria, consumo, System.nanoTime() - inicio);
+        lancamentos.registrar(tabelaId, categoria, consumo, resposta.valorTotal(), chaveIdempotencia);
+        histograma.registrar(categoria.getCategoria(), consumo);
+        return resposta;
+    }
+
+    /** Id da tabela que resolveu a consulta. */
+    Long tabelaId() {
+        return tabelaId;
+    }
+
+    CategoriaConsumidor categoria() {
+        return categoria.getCategoria();
+    }
+
+    int consumo() {
+        return consumo;
+    }
+
+    boolean detalhado() {
+        return detalhado;
+    }
+}
@@ -0,0 +1,302 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteItemRequest;
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteItemResponse;
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteParaleloResponse;
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteTotaisResponse;
+import com.desafio_tecnico.tarifa_agua.dto.TotalCategoriaResponse;
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import com.desafio_tecnico.tarifa_agua.exception.BusinessException;
+import com.desafio_tecnico.tarifa_agua.exception.TipoErroNegocio;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Cálculo de lotes muito grandes (recálculo de fim de ciclo) usando todos os núcleos. O lote é
+ * dividido recursivamente em partições calculadas em um {@link ForkJoinPool} próprio, todas contra
+ * a mesma {@link TarifaCompilada}, que é imutável e pode ser lida por várias threads sem
+ * sincronização. Cada partição escreve seus resultados nas próprias posições do array de saída,
+ * então a ordem de entrada é mantida sem ordenar nada no final, e soma os totais por categoria,
+ * que são combinados à medida que as partições terminam.
+ * <p>
+ * Em NDJSON o lote não é carregado inteiro: a entrada é lida em blocos, cada bloco é calculado no
+ * pool enquanto o seguinte é lido, e os itens são escritos na ordem de entrada, bloco a bloco.
+ */
+@Service
+public class CalculoParaleloService {
+
+    /** Partições deste tamanho ou menores são calculadas sem nova divisão. */
+    static final int TAMANHO_MINIMO_PARTICAO = 4_096;
+
+    static final int LINHAS_POR_BLOCO = 16 * TAMANHO_MINIMO_PARTICAO;
+
+    /** Fecha o bloco antes de {@link #LINHAS_POR_BLOCO} linhas quando as linhas são longas. */
+    static final int CARACTERES_POR_BLOCO = 8 * 1024 * 1024;
+
+    /** Blocos entregues ao pool e ainda não escritos. */
+    static final int BLOCOS_EM_ANDAMENTO = 2;
+
+    private static final CategoriaConsumidor[] CATEGORIAS = CategoriaConsumidor.values();
+
+    private final CalculoService calculoService;
+    private final ObjectReader leitorItem;
+    private final ObjectWriter escritorItem;
+    private final ObjectWriter escritorTotais;
+    private final ForkJoinPool pool;
+    private final int itensMaximos;
+    private final int linhasPorBloco;
+
+    /**
+     * @param threads      paralelismo do pool; zero ou negativo usa a quantidade de processadores
+     * @param itensMaximos maior lote aceito como lista; lotes maiores devem vir em NDJSON
+     */
+    @Autowired
+    public CalculoParaleloService(CalculoService calculoService,
+                                  ObjectMapper objectMapper,
+                                  @Value("${tarifa.calculo.paralelo.threads:0}") int threads,
+                                  @Value("${tarifa.calculo.paralelo.itens-maximos:1000000}") int itensMaximos) {
+        this(calculoService, objectMapper, threads, itensMaximos, LINHAS_POR_BLOCO);
+    }
+
+    CalculoParaleloService(CalculoService calculoService, ObjectMapper objectMapper, int threads, int itensMaximos,
+                           int linhasPorBloco) {
+        this.calculoService = calculoService;
+        this.leitorItem = objectMapper.readerFor(CalculoLoteItemRequest.class);
+        this.escritorItem = objectMapper.writerFor(CalculoLoteItemResponse.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.escritorTotais = objectMapper.writerFor(CalculoLoteTotaisResponse.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        this.itensMaximos = itensMaximos;
+        this.linhasPorBloco = linhasPorBloco;
+    }
+
+    /**
+     * Mesmo resultado, item a item, de {@link CalculoService#calcularLote}, acrescido dos totais por
+     * categoria e da quantidade de itens com erro.
+     */
+    public CalculoLoteParaleloResponse calcular(List<CalculoLoteItemRequest> itens, boolean detalhado) {
+        if (itens.size() > itensMaximos) {
+            throw new BusinessException(TipoErroNegocio.ENTRADA_INVALIDA, "Lote paralelo com mais de "
+                    + itensMaximos + " itens; envie o lote em NDJSON para calculá-lo em streaming.");
+        }
+        List<CalculoLoteItemRequest> entrada = itens instanceof RandomAccess ? itens : new ArrayList<>(itens);
+        TarifaCompilada tarifa = calculoService.tarifaDoLote(entrada);
+        Supplier<TarifaCompilada> tarifaAtiva = () -> tarifa;
+
+        CalculoLoteItemResponse[] respostas = new CalculoLoteItemResponse[entrada.size()];
+        Totais totais = pool.invoke(new Particao(
+                (i, observador) -> calculoService.calcularItem(tarifaAtiva, entrada.get(i), detalhado, observador),
+                respostas, 0, respostas.length));
+
+        return new CalculoLoteParaleloResponse(Arrays.asList(respostas), totais.paraResposta(), totais.erros);
+    }
+
+    /**
+     * Lê um {@link CalculoLoteItemRequest} por linha e escreve um {@link CalculoLoteItemResponse} por
+     * linha, na mesma ordem; a última linha é um {@link CalculoLoteTotaisResponse}.
+     */
+    public void processarNdjson(Reader entrada, Writer saida, boolean detalhado) throws IOException {
+        LeitorCaracteres leitor = new LeitorCaracteres(entrada);
+        TarifaAtivaSobDemanda tarifa = new TarifaAtivaSobDemanda(calculoService);
+        StringBuilder linha = new StringBuilder();
+        Deque<Bloco> emAndamento = new ArrayDeque<>();
+        Totais totais = new Totais();
+        try {
+            String[] linhas;
+            while ((linhas = lerBloco(leitor, linha)).length > 0) {
+                emAndamento.add(calcularBloco(linhas, tarifa, detalhado));
+                if (emAndamento.size() >= BLOCOS_EM_ANDAMENTO) {
+                    escreverBloco(emAndamento.remove(), saida, totais);
+                }
+            }
+            while (!emAndamento.isEmpty()) {
+                escreverBloco(emAndamento.remove(), saida, totais);
+            }
+        } finally {
+            emAndamento.forEach(bloco -> bloco.totais().cancel(false));
+        }
+        escritorTotais.writeValue(saida, new CalculoLoteTotaisResponse(totais.paraResposta(), totais.erros));
+        saida.write('\n');
+        saida.flush();
+    }
+
+    public int paralelismo() {
+        return pool.getParallelism();
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        pool.shutdown();
+    }
+
+    /** Linhas não vazias do próximo bloco; {@code null} marca uma linha longa demais para ser lida. */
+    private String[] lerBloco(LeitorCaracteres leitor, StringBuilder linha) throws IOException {
+        List<String> linhas = new ArrayList<>();
+        long caracteres = 0;
+        long tamanho;
+        while (linhas.size() < linhasPorBloco && caracteres < CARACTERES_POR_BLOCO
+                && (tamanho = leitor.linha(linha, CalculoStreamService.CARACTERES_MAXIMOS_REGISTRO)) >= 0) {
+            if (tamanho > CalculoStreamService.CARACTERES_MAXIMOS_REGISTRO) {
+                linhas.add(null);
+            } else if (!LeitorCaracteres.emBranco(linha)) {
+                linhas.add(linha.toString());
+                caracteres += tamanho;
+            }
+        }
+        return linhas.toArray(String[]::new);
+    }
+
+    private Bloco calcularBloco(String[] linhas, Supplier<TarifaCompilada> tarifa, boolean detalhado) {
+        CalculoLoteItemResponse[] respostas = new CalculoLoteItemResponse[linhas.length];
+        Particao particao = new Particao((i, observador) -> {
+            if (linhas[i] == null) {
+                return new CalculoLoteItemResponse(null, null,
+                        "Linha com mais de " + CalculoStreamService.CARACTERES_MAXIMOS_REGISTRO + " caracteres.");
+            }
+            CalculoLoteItemRequest item;
+            try {
+                item = leitorItem.readValue(linhas[i]);
+            } catch (JsonProcessingException e) {
+                return new CalculoLoteItemResponse(null, null, "Linha JSON inválida.");
+            }
+            return calculoService.calcularItem(tarifa, item, detalhado, observador);
+        }, respostas, 0, respostas.length);
+        return new Bloco(respostas, pool.submit(particao));
+    }
+
+    private void escreverBloco(Bloco bloco, Writer saida, Totais totais) throws IOException {
+        totais.somar(bloco.totais().join());
+        for (CalculoLoteItemResponse resposta : bloco.respostas()) {
+            escritorItem.writeValue(saida, resposta);
+            saida.write('\n');
+        }
+        saida.flush();
+    }
+
+    private record Bloco(CalculoLoteItemResponse[] respostas, ForkJoinTask<Totais> totais) {
+    }
+
+    @FunctionalInterface
+    private interface CalculoIndexado {
+        CalculoLoteItemResponse calcular(int indice, CalculoService.ObservadorItem observador);
+    }
+
+    private static final class Particao extends RecursiveTask<Totais> {
+
+        private final CalculoIndexado calculo;
+        private final CalculoLoteItemResponse[] respostas;
+        private final int inicio;
+        private final int fim;
+
+        Particao(CalculoIndexado calculo, CalculoLoteItemResponse[] respostas, int inicio, int fim) {
+            this.calculo = calculo;
+            this.respostas = respostas;
+            this.inicio = inicio;
+            this.fim = fim;
+        }
+
+        @Override
+        protected Totais compute() {
+            if (fim - inicio <= TAMANHO_MINIMO_PARTICAO) {
+                return calcularSequencial();
+            }
+            int meio = (inicio + fim) >>> 1;
+            Particao esquerda = new Particao(calculo, respostas, inicio, meio);
+            Particao direita = new Particao(calculo, respostas, meio, fim);
+            esquerda.fork();
+            Totais totais = direita.compute();
+            return totais.somar(esquerda.join());
+        }
+
+        private Totais calcularSequencial() {
+            Totais totais = new Totais();
+            for (int i = inicio; i < fim; i++) {
+                CalculoLoteItemResponse resposta = calculo.calcular(i, totais);
+                respostas[i] = resposta;
+                if (resposta.resultado() == null) totais.erros++;
+            }
+            return totais;
+        }
+    }
+
+    /**
+     * Totais de uma partição, indexados pelo ordinal da categoria, com os valores em centavos. Um
+     * valor que não cabe em {@code long} vai para {@link #excedentes}, em {@link BigDecimal}.
+     */
+    private static final class Totais implements CalculoService.ObservadorItem {
+
+        private final long[] leituras = new long[CATEGORIAS.length];
+        private final long[] consumos = new long[CATEGORIAS.length];
+        private final long[] centavos = new long[CATEGORIAS.length];
+        private final BigDecimal[] excedentes = new BigDecimal[CATEGORIAS.length];
+        private long erros;
+
+        @Override
+        public void calculado(CategoriaCompilada categoria, int consumo, BigDecimal valorTotal) {
+            int i = categoria.getCategoria().ordinal();
+            leituras[i]++;
+            consumos[i] += consumo;
+            try {
+                centavos[i] = Math.addExact(centavos[i], categoria.valorTotalCentavos(consumo));
+            } catch (ArithmeticException e) {
+                somarExcedente(i, valorTotal);
+            }
+        }
+
+        Totais somar(Totais outros) {
+            for (int i = 0; i < CATEGORIAS.length; i++) {
+                leituras[i] += outros.leituras[i];
+                consumos[i] += outros.consumos[i];
+                try {
+                    centavos[i] = Math.addExact(centavos[i], outros.centavos[i]);
+                } catch (ArithmeticException e) {
+                    somarExcedente(i, BigDecimal.valueOf(outros.centavos[i], CategoriaCompilada.ESCALA_VALOR));
+                }
+                if (outros.excedentes[i] != null) {
+                    somarExcedente(i, outros.excedentes[i]);
+                }
+            }
+            erros += outros.erros;
+            return this;
+        }
+
+        private void somarExcedente(int i, BigDecimal valor) {
+            excedentes[i] = excedentes[i] == null ? valor : excedentes[i].add(valor);
+        }
+
+        List<TotalCategoriaResponse> paraResposta() {
+            List<TotalCategoriaResponse> resposta = new ArrayList<>(CATEGORIAS.length);
+            for (int i = 0; i < CATEGORIAS.length; i++) {
+                if (leituras[i] > 0) {
+                    BigDecimal valor = BigDecimal.valueOf(centavos[i], CategoriaCompilada.ESCALA_VALOR);
+                    if (excedentes[i] != null) valor = valor.add(excedentes[i]);
+                    resposta.add(new TotalCategoriaResponse(CATEGORIAS[i].name(), leituras[i], consumos[i], valor));
+                }
+            }
+            return resposta;
+        }
+    }
+}
@@ -1,92 +1,205 @@
 package com.desafio_tecnico.tarifa_agua.service;
 
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteItemRequest;
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteItemResponse;
 import com.desafio_tecnico.tarifa_agua.dto.CalculoRequest;
 import com.desafio_tecnico.tarifa_agua.dto.CalculoResponse;
 
-import com.desafio_tecnico.tarifa_agua.dto.DetalhamentoResponse;
-import com.desafio_tecnico.tarifa_agua.dto.FaixaInfo;
 import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
-import com.desafio_tecnico.tarifa_agua.entity.FaixaConsumo;
-import com.desafio_tecnico.tarifa_agua.entity.TabelaTarifaria;
-import com.desafio_tecnico.tarifa_agua.entity.TarifaCategoria;
 import com.desafio_tecnico.tarifa_agua.exception.BusinessException;
-import com.desafio_tecnico.tarifa_agua.repository.TabelaTarifariaRepository;
+import com.desafio_tecnico.tarifa_agua.exception.TipoErroNegocio;
+import com.fasterxml.jackson.databind.MappingIterator;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
 public class CalculoService {
 
-    private final TabelaTarifariaRepository tabelaRepo;
+    private final TarifaAtivaHolder tarifaAtiva;
+    private final TarifaHistoricaHolder tarifaHistorica;
+    private final TarifaMetricas metricas;
+    private final LancamentosCalculo lancamentos;
+    private final HistogramaConsumo histograma;
 
-    @Transactional(readOnly = true)
     public CalculoResponse calcular(CalculoRequest request) {
+        return calcular(request, true);
+    }
 
-        TabelaTarifaria tabela = tabelaRepo.findAtivaComRelacionamentos()
-                .orElseThrow(() -> new BusinessException("Não existe tabela ativa."));
+    /**
+     * @param detalhado quando {@code false}, a resposta traz apenas o valor total, sem detalhamento
+     */
+    public CalculoResponse calcular(CalculoRequest request, boolean detalhado) {
+        return calcular(resolver(request.dataReferencia()), request.categoria(), request.consumo(), detalhado, false, null);
+    }
 
-        CategoriaConsumidor categoriaEnum;
-        try {
-            categoriaEnum = CategoriaConsumidor.valueOf(request.categoria().toUpperCase());
-        } catch (IllegalArgumentException e) {
-            throw new BusinessException("Categoria inválida: " + request.categoria());
+    /**
+     * Resolve tabela e categoria sem calcular, para que o chamador possa validar o ETag antes.
+     */
+    public CalculoConsulta consultar(CalculoRequest request, boolean detalhado) {
+        if (request.consumo() < 0) {
+            throw new BusinessException(TipoErroNegocio.CONSUMO_INVALIDO, "Consumo não pode ser negativo.");
         }
+        TarifaCompilada tarifa = resolver(request.dataReferencia());
+        CategoriaCompilada categoria = tarifa.categoria(converterCategoria(request.categoria()));
+        return new CalculoConsulta(tarifa, categoria, request.consumo(), detalhado, metricas, lancamentos, histograma);
+    }
 
-        TarifaCategoria tarifaCategoria = tabela.getCategorias().stream()
-                .filter(c -> c.getCategoria() == categoriaEnum)
-                .findFirst()
-                .orElseThrow(() -> new BusinessException("Categoria não encontrada na tabela ativa."));
-
-        List<FaixaConsumo> faixasOrdenadas = tarifaCategoria.getFaixas().stream()
-                .sorted(Comparator.comparing(FaixaConsumo::getInicio))
-                .toList();
+    /**
+     * Calcula os itens sem data de referência contra a mesma tabela ativa, resolvida uma única vez
+     * para o lote; os demais usam a tabela vigente na data de cada item. Erros de negócio de um item
+     * são devolvidos no próprio item e não interrompem os demais.
+     */
+    public List<CalculoLoteItemResponse> calcularLote(List<CalculoLoteItemRequest> itens, boolean detalhado) {
+        TarifaCompilada tarifa = tarifaDoLote(itens);
+
+        List<CalculoLoteItemResponse> respostas = new ArrayList<>(itens.size());
+        for (CalculoLoteItemRequest item : itens) {
+            respostas.add(calcularItem(tarifa, item, detalhado));
+        }
+        return respostas;
+    }
 
-        int consumoRestante = request.consumo();
-        BigDecimal valorTotal = BigDecimal.ZERO;
+    /**
+     * @throws BusinessException com mais de {@code itensMaximos} itens
+     */
+    public List<CalculoLoteItemResponse> calcularLote(List<CalculoLoteItemRequest> itens, boolean detalhado,
+                                                      int itensMaximos) {
+        if (itens.size() > itensMaximos) {
+            throw loteAcimaDoLimite(itensMaximos);
+        }
+        return calcularLote(itens, detalhado);
+    }
 
-        List<DetalhamentoResponse> detalhamento = new ArrayList<>();
+    /**
+     * Calcula cada item assim que é lido, sem montar a lista de entrada; a tabela ativa é resolvida
+     * no primeiro item sem data de referência.
+     *
+     * @throws BusinessException ao ler o item seguinte a {@code itensMaximos}
+     */
+    public List<CalculoLoteItemResponse> calcularLote(MappingIterator<CalculoLoteItemRequest> itens, boolean detalhado,
+                                                      int itensMaximos) throws IOException {
+        TarifaAtivaSobDemanda tarifa = new TarifaAtivaSobDemanda(this);
+        List<CalculoLoteItemResponse> respostas = new ArrayList<>();
+        while (itens.hasNextValue()) {
+            if (respostas.size() == itensMaximos) {
+                throw loteAcimaDoLimite(itensMaximos);
+            }
+            respostas.add(calcularItem(tarifa, itens.nextValue(), detalhado));
+        }
+        return respostas;
+    }
 
-        for (FaixaConsumo faixa : faixasOrdenadas) {
+    private static BusinessException loteAcimaDoLimite(int itensMaximos) {
+        return new BusinessException(TipoErroNegocio.ENTRADA_INVALIDA, "Lote com mais de " + itensMaximos
+                + " itens; use POST /api/calculos/lote/stream para lotes maiores.");
+    }
 
-            if (consumoRestante <= 0) break;
+    /**
+     * Tabela ativa a ser usada por todos os itens sem data de referência; {@code null} quando todos
+     * os itens têm data, para que o lote não dependa de existir uma tabela ativa.
+     */
+    TarifaCompilada tarifaDoLote(List<CalculoLoteItemRequest> itens) {
+        boolean usaTabelaAtiva = itens.stream().anyMatch(item -> item == null || item.dataReferencia() == null);
+        return usaTabelaAtiva ? tarifaAtiva() : null;
+    }
 
-            int inicio = faixa.getInicio();
-            Integer fim = faixa.getFim();
-            int limiteFaixa = (fim != null) ? (fim - inicio ) : consumoRestante;
+    TarifaCompilada tarifaAtiva() {
+        return resolver(null);
+    }
 
-            int m3NaFaixa = Math.min(consumoRestante, limiteFaixa);
+    /**
+     * @param tarifa tabela ativa, usada pelos itens sem data de referência
+     */
+    CalculoLoteItemResponse calcularItem(TarifaCompilada tarifa, CalculoLoteItemRequest item, boolean detalhado) {
+        return calcularItem(() -> tarifa, item, detalhado);
+    }
 
-            BigDecimal subtotal = faixa.getValorUnitario()
-                    .multiply(BigDecimal.valueOf(m3NaFaixa));
+    /**
+     * @param tarifaAtiva chamado só para itens sem data de referência; a falta de tabela ativa vira
+     *                    erro do item
+     */
+    CalculoLoteItemResponse calcularItem(Supplier<TarifaCompilada> tarifaAtiva, CalculoLoteItemRequest item,
+                                         boolean detalhado) {
+        return calcularItem(tarifaAtiva, item, detalhado, null);
+    }
 
-            valorTotal = valorTotal.add(subtotal);
+    /**
+     * @param observador recebe cada item calculado com sucesso; pode ser {@code null}
+     */
+    CalculoLoteItemResponse calcularItem(Supplier<TarifaCompilada> tarifaAtiva, CalculoLoteItemRequest item,
+                                         boolean detalhado, ObservadorItem observador) {
+        if (item == null) {
+            return new CalculoLoteItemResponse(null, null, "Item do lote não pode ser nulo.");
+        }
+        try {
+            if (item.categoria() == null || item.categoria().isBlank()) {
+                throw new BusinessException(TipoErroNegocio.CATEGORIA_INVALIDA, "Categoria não informada.");
+            }
+            if (item.consumo() == null) {
+                throw new BusinessException(TipoErroNegocio.CONSUMO_INVALIDO, "Consumo não informado.");
+            }
+            if (item.consumo() < 0) {
+                throw new BusinessException(TipoErroNegocio.CONSUMO_INVALIDO, "Consumo não pode ser negativo.");
+            }
+            TarifaCompilada vigente = item.dataReferencia() == null ? tarifaAtiva.get() : resolver(item.dataReferencia());
+            CalculoResponse resultado = calcular(vigente, item.categoria(), item.consumo(), detalhado, true, observador);
+            return new CalculoLoteItemResponse(item.id(), resultado, null);
+        } catch (BusinessException e) {
+            metricas.registrarErroLote(e.getTipo());
+            return new CalculoLoteItemResponse(item.id(), null, e.getMessage());
+        }
+    }
 
-            detalhamento.add(
-                    new DetalhamentoResponse(
-                            new FaixaInfo(inicio, fim),
-                            m3NaFaixa,
-                            faixa.getValorUnitario(),
-                            subtotal
-                    )
-            );
+    /**
+     * Sem data de referência, a tabela ativa; com data, a tabela vigente nessa data, buscada no
+     * histórico em memória.
+     */
+    private TarifaCompilada resolver(LocalDateTime dataReferencia) {
+        long inicio = System.nanoTime();
+        TarifaCompilada tarifa = dataReferencia == null ? tarifaAtiva.obter() : tarifaHistorica.vigenteEm(dataReferencia);
+        metricas.registrarResolucao(dataReferencia != null, System.nanoTime() - inicio);
+        return tarifa;
+    }
 
-            consumoRestante -= m3NaFaixa;
+    /**
+     * @param itemLote o lançamento de itens de lote depende de {@code tarifa.lancamentos.registrar-lotes}
+     */
+    private CalculoResponse calcular(TarifaCompilada tarifa, String categoria, int consumo, boolean detalhado,
+                                     boolean itemLote, ObservadorItem observador) {
+        CategoriaCompilada compilada = tarifa.categoria(converterCategoria(categoria));
+        long inicio = System.nanoTime();
+        CalculoResponse resposta = compilada.calcular(consumo, detalhado);
+        metricas.registrarCalculo(compilada, consumo, System.nanoTime() - inicio);
+        if (itemLote) {
+            lancamentos.registrarItemLote(tarifa.getTabelaId(), compilada, consumo, resposta.valorTotal());
+        } else {
+            lancamentos.registrar(tarifa.getTabelaId(), compilada, consumo, resposta.valorTotal(), null);
+        }
+        histograma.registrar(compilada.getCategoria(), consumo);
+        if (observador != null) {
+            observador.calculado(compilada, consumo, resposta.valorTotal());
         }
+        return resposta;
+    }
 
-        return new CalculoResponse(
-                categoriaEnum.name(),
-                request.consumo(),
-                valorTotal,
-                detalhamento
-        );
+    private CategoriaConsumidor converterCategoria(String categoria) {
+        try {
+            return CategoriaConsumidor.valueOf(categoria.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException(TipoErroNegocio.CATEGORIA_INVALIDA, "Categoria inválida: " + categoria);
+        }
     }
 
+    /** Recebe a categoria já resolvida de cada item, para totalizar sem converter a resposta de volta. */
+    interface ObservadorItem {
+        void calculado(CategoriaCompilada categoria, int consumo, BigDecimal valorTotal);
+    }
 }
@@ -0,0 +1,306 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteItemRequest;
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteItemResponse;
+import com.desafio_tecnico.tarifa_agua.exception.BusinessException;
+import com.desafio_tecnico.tarifa_agua.exception.TipoErroNegocio;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Processa leituras linha a linha: cada linha lida é calculada e escrita na saída antes da próxima
+ * ser lida, de modo que a memória usada não depende do tamanho do arquivo. A escrita é bloqueante,
+ * então um cliente lento segura a leitura da entrada (backpressure pelo próprio TCP).
+ * <p>
+ * A tabela ativa é resolvida na primeira linha sem data de referência e reaproveitada nas seguintes,
+ * como em {@link CalculoService#tarifaDoLote}: um arquivo só com datas não depende de existir uma
+ * tabela ativa.
+ */
+@Service
+public class CalculoStreamService {
+
+    static final int LINHAS_POR_FLUSH = 1_000;
+
+    /** Maior registro CSV ou linha NDJSON guardado em memória. */
+    static final int CARACTERES_MAXIMOS_REGISTRO = 64 * 1024;
+
+    private static final String CABECALHO_SAIDA_CSV = "id,categoria,consumo,valorTotal,erro";
+
+    private final CalculoService calculoService;
+    private final ObjectReader leitorItem;
+    private final ObjectWriter escritorItem;
+
+    public CalculoStreamService(CalculoService calculoService, ObjectMapper objectMapper) {
+        this.calculoService = calculoService;
+        this.leitorItem = objectMapper.readerFor(CalculoLoteItemRequest.class);
+        this.escritorItem = objectMapper.writerFor(CalculoLoteItemResponse.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * Lê um CSV com cabeçalho contendo as colunas {@code categoria} e {@code consumo} (e,
+     * opcionalmente, {@code id} e {@code dataReferencia}) e escreve um CSV com {@code id,categoria,consumo,valorTotal,erro}.
+     * Entrada e saída seguem a RFC 4180: campos entre aspas podem conter vírgulas, aspas duplicadas e
+     * quebras de linha. O CSV de saída não tem detalhamento, então o cálculo é sempre feito em modo resumo.
+     */
+    public void processarCsv(Reader entrada, Writer saida) throws IOException {
+        LeitorCsv leitor = new LeitorCsv(entrada);
+        ColunasCsv colunas = ColunasCsv.de(leitor.proximo());
+        TarifaAtivaSobDemanda tarifa = new TarifaAtivaSobDemanda(calculoService);
+
+        saida.write(CABECALHO_SAIDA_CSV);
+        saida.write('\n');
+
+        RegistroCsv registro;
+        long processadas = 0;
+        while ((registro = leitor.proximo()) != null) {
+            String[] campos = registro.campos();
+            String id = colunas.id(campos);
+            CalculoLoteItemResponse resposta;
+            if (registro.erro() != null) {
+                resposta = new CalculoLoteItemResponse(id, null, registro.erro());
+            } else if (campos.length < colunas.quantidadeMinima()) {
+                resposta = new CalculoLoteItemResponse(id, null, "Linha com colunas faltando.");
+            } else {
+                resposta = calcularCsv(tarifa, id, campos[colunas.categoria()].trim(), campos[colunas.consumo()].trim(),
+                        colunas.dataReferencia(campos));
+            }
+            escreverCsv(saida, resposta);
+
+            if (++processadas % LINHAS_POR_FLUSH == 0) saida.flush();
+        }
+        saida.flush();
+    }
+
+    /**
+     * Lê um objeto {@code {id, categoria, consumo, dataReferencia}} por linha e escreve um
+     * {@link CalculoLoteItemResponse} por linha, na mesma ordem.
+     *
+     * @param detalhado quando {@code false}, cada resposta traz apenas o valor total
+     */
+    public void processarNdjson(Reader entrada, Writer saida, boolean detalhado) throws IOException {
+        LeitorCaracteres leitor = new LeitorCaracteres(entrada);
+        TarifaAtivaSobDemanda tarifa = new TarifaAtivaSobDemanda(calculoService);
+
+        StringBuilder linha = new StringBuilder();
+        long tamanho;
+        long processadas = 0;
+        while ((tamanho = leitor.linha(linha, CARACTERES_MAXIMOS_REGISTRO)) >= 0) {
+            CalculoLoteItemResponse resposta;
+            if (tamanho > CARACTERES_MAXIMOS_REGISTRO) {
+                resposta = new CalculoLoteItemResponse(null, null,
+                        "Linha com mais de " + CARACTERES_MAXIMOS_REGISTRO + " caracteres.");
+            } else if (LeitorCaracteres.emBranco(linha)) {
+                continue;
+            } else {
+                try {
+                    CalculoLoteItemRequest item = leitorItem.readValue(linha.toString());
+                    resposta = calculoService.calcularItem(tarifa, item, detalhado);
+                } catch (JsonProcessingException e) {
+                    resposta = new CalculoLoteItemResponse(null, null, "Linha JSON inválida.");
+                }
+            }
+            escritorItem.writeValue(saida, resposta);
+            saida.write('\n');
+
+            if (++processadas % LINHAS_POR_FLUSH == 0) saida.flush();
+        }
+        saida.flush();
+    }
+
+    private CalculoLoteItemResponse calcularCsv(Supplier<TarifaCompilada> tarifa, String id, String categoria,
+                                                String consumo, String dataReferencia) {
+        Integer consumoNumerico = null;
+        if (!consumo.isEmpty()) {
+            try {
+                consumoNumerico = Integer.valueOf(consumo);
+            } catch (NumberFormatException e) {
+                return new CalculoLoteItemResponse(id, null, "Consumo não numérico: " + consumo);
+            }
+        }
+        LocalDateTime data = null;
+        if (dataReferencia != null) {
+            try {
+                data = LocalDateTime.parse(dataReferencia);
+            } catch (DateTimeParseException e) {
+                return new CalculoLoteItemResponse(id, null, "Data de referência inválida: " + dataReferencia);
+            }
+        }
+        return calculoService.calcularItem(tarifa, new CalculoLoteItemRequest(id, categoria, consumoNumerico, data), false);
+    }
+
+    private static void escreverCsv(Writer saida, CalculoLoteItemResponse resposta) throws IOException {
+        escreverCampoCsv(saida, resposta.id());
+        saida.write(',');
+        if (resposta.resultado() != null) {
+            saida.write(resposta.resultado().categoria());
+            saida.write(',');
+            saida.write(Integer.toString(resposta.resultado().consumoTotal()));
+            saida.write(',');
+            saida.write(resposta.resultado().valorTotal().toPlainString());
+            saida.write(',');
+        } else {
+            saida.write(",,,");
+            escreverCampoCsv(saida, resposta.erro());
+        }
+        saida.write('\n');
+    }
+
+    private static void escreverCampoCsv(Writer saida, String valor) throws IOException {
+        if (valor == null) return;
+        if (valor.indexOf(',') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0
+                && valor.indexOf('\r') < 0) {
+            saida.write(valor);
+            return;
+        }
+        saida.write('"');
+        saida.write(valor.replace("\"", "\"\""));
+        saida.write('"');
+    }
+
+    private record ColunasCsv(int id, int categoria, int consumo, int dataReferencia) {
+
+        static ColunasCsv de(RegistroCsv cabecalho) {
+            if (cabecalho == null) {
+                throw new BusinessException(TipoErroNegocio.ENTRADA_INVALIDA, "Arquivo CSV vazio.");
+            }
+            if (cabecalho.erro() != null) {
+                throw new BusinessException(TipoErroNegocio.ENTRADA_INVALIDA,
+                        "Cabeçalho CSV inválido: " + cabecalho.erro());
+            }
+            String[] nomes = cabecalho.campos();
+            int id = -1;
+            int categoria = -1;
+            int consumo = -1;
+            int dataReferencia = -1;
+            for (int i = 0; i < nomes.length; i++) {
+                switch (nomes[i].trim().toLowerCase(Locale.ROOT)) {
+                    case "id" -> id = i;
+                    case "categoria" -> categoria = i;
+                    case "consumo" -> consumo = i;
+                    case "datareferencia" -> dataReferencia = i;
+                    default -> { }
+                }
+            }
+            if (categoria < 0 || consumo < 0) {
+                throw new BusinessException(TipoErroNegocio.ENTRADA_INVALIDA,
+                        "Cabeçalho CSV deve conter as colunas categoria e consumo.");
+            }
+            return new ColunasCsv(id, categoria, consumo, dataReferencia);
+        }
+
+        int quantidadeMinima() {
+            return Math.max(categoria, consumo) + 1;
+        }
+
+        String id(String[] campos) {
+            if (id < 0 || id >= campos.length || campos[id].isBlank()) return null;
+            return campos[id].trim();
+        }
+
+        String dataReferencia(String[] campos) {
+            if (dataReferencia < 0 || dataReferencia >= campos.length || campos[dataReferencia].isBlank()) return null;
+            return campos[dataReferencia].trim();
+        }
+    }
+
+    /** Campos de um registro CSV, ou o motivo pelo qual ele não pôde ser lido. */
+    private record RegistroCsv(String[] campos, String erro) {
+
+        private static final String[] SEM_CAMPOS = new String[0];
+
+        static RegistroCsv invalido(String erro) {
+            return new RegistroCsv(SEM_CAMPOS, erro);
+        }
+    }
+
+    /**
+     * Lê registros CSV conforme a RFC 4180. Um registro guarda no máximo {@link #CARACTERES_MAXIMOS_REGISTRO}
+     * caracteres: o excesso é descartado seguindo as aspas até o fim do registro, que volta como erro, e a
+     * leitura continua no registro seguinte. Aspas não fechadas consomem o resto do arquivo como um único
+     * registro com erro.
+     */
+    private static final class LeitorCsv {
+
+        private static final int FORA = 0;
+        private static final int ENTRE_ASPAS = 1;
+        private static final int ASPAS_ENTRE_ASPAS = 2;
+
+        private final LeitorCaracteres entrada;
+        private final List<String> campos = new ArrayList<>();
+        private final StringBuilder campo = new StringBuilder();
+
+        LeitorCsv(Reader entrada) {
+            this.entrada = new LeitorCaracteres(entrada);
+        }
+
+        /** Próximo registro, ignorando linhas em branco; {@code null} no fim da entrada. */
+        RegistroCsv proximo() throws IOException {
+            campos.clear();
+            campo.setLength(0);
+            int estado = FORA;
+            boolean comSeparador = false;
+            long caracteres = 0;
+            while (true) {
+                int c = entrada.proximo();
+                if (c == -1 || (c == '\n' && estado != ENTRE_ASPAS)) {
+                    if (caracteres > CARACTERES_MAXIMOS_REGISTRO) {
+                        return RegistroCsv.invalido("Registro com mais de " + CARACTERES_MAXIMOS_REGISTRO + " caracteres.");
+                    }
+                    if (estado == ENTRE_ASPAS) {
+                        return RegistroCsv.invalido("Aspas não fechadas no fim do arquivo.");
+                    }
+                    if (!comSeparador && LeitorCaracteres.emBranco(campo)) {
+                        if (c == -1) return null;
+                        campo.setLength(0);
+                        caracteres = 0;
+                        continue;
+                    }
+                    campos.add(campo.toString());
+                    return new RegistroCsv(campos.toArray(String[]::new), null);
+                }
+
+                boolean guardar = ++caracteres <= CARACTERES_MAXIMOS_REGISTRO;
+                if (estado == ASPAS_ENTRE_ASPAS) {
+                    if (c == '"') {
+                        if (guardar) campo.append('"');
+                        estado = ENTRE_ASPAS;
+                        continue;
+                    }
+                    estado = FORA;
+                }
+                if (estado == ENTRE_ASPAS) {
+                    if (c == '"') {
+                        estado = ASPAS_ENTRE_ASPAS;
+                    } else if (guardar) {
+                        campo.append((char) c);
+                    }
+                } else if (c == ',') {
+                    comSeparador = true;
+                    if (guardar) campos.add(campo.toString());
+                    campo.setLength(0);
+                } else if (c == '"' && LeitorCaracteres.emBranco(campo)) {
+                    comSeparador = true;
+                    campo.setLength(0);
+                    estado = ENTRE_ASPAS;
+                } else if (guardar) {
+                    campo.append((char) c);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Compila a tabela ativa antes de a aplicação ser marcada como pronta. O Spring Boot só publica
+ * {@code ReadinessState.ACCEPTING_TRAFFIC} depois dos {@link ApplicationRunner}s, então a primeira
+ * requisição nunca paga a carga da tabela e o probe de readiness só libera tráfego com a tarifa em
+ * memória.
+ * <p>
+ * Sem {@code tarifa.snapshot.arquivo}, a carga é feita pelo banco. Com o arquivo, o banco tem
+ * {@code tarifa.snapshot.espera-banco} para responder; passado esse tempo, a tabela do snapshot é
+ * publicada e a carga pelo banco continua em segundo plano, substituindo o snapshot quando terminar.
+ * <p>
+ * Este runner só roda depois que o contexto subiu, e o Hibernate ({@code ddl-auto}, metadados JDBC)
+ * e o {@code schema.sql} já usaram o banco a essa altura. O snapshot cobre um banco que aceita
+ * conexões, mas demora a responder à consulta da tabela ativa; com o banco fora do ar, a
+ * inicialização falha antes de chegar aqui.
+ */
+@Slf4j
+@Component
+public class CargaTarifaInicial implements ApplicationRunner {
+
+    private final TarifaAtivaHolder tarifaAtiva;
+    private final SnapshotTarifaService snapshot;
+    private final Duration esperaBanco;
+
+    /** Marcado antes de publicar o snapshot, para a carga pelo banco saber que precisa reler. */
+    private volatile boolean usouSnapshot;
+
+    /**
+     * @param esperaBanco quanto esperar pelo banco antes de usar o snapshot local
+     */
+    public CargaTarifaInicial(TarifaAtivaHolder tarifaAtiva,
+                              SnapshotTarifaService snapshot,
+                              @Value("${tarifa.snapshot.espera-banco:5s}") Duration esperaBanco) {
+        this.tarifaAtiva = tarifaAtiva;
+        this.snapshot = snapshot;
+        this.esperaBanco = esperaBanco;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        long inicio = System.nanoTime();
+        if (!snapshot.arquivoConfigurado()) {
+            tarifaAtiva.versaoAtual();
+            log.info("Tabela ativa carregada do banco em {} ms", (System.nanoTime() - inicio) / 1_000_000);
+            return;
+        }
+
+        FutureTask<Void> cargaBanco = new FutureTask<>(this::carregarDoBanco, null);
+        Thread carga = new Thread(cargaBanco, "tarifa-carga-inicial");
+        carga.setDaemon(true);
+        carga.start();
+        try {
+            try {
+                cargaBanco.get(esperaBanco.toMillis(), TimeUnit.MILLISECONDS);
+                log.info("Tabela ativa carregada do banco em {} ms", (System.nanoTime() - inicio) / 1_000_000);
+            } catch (TimeoutException e) {
+                usouSnapshot = true;
+                if (snapshot.lerArquivo().map(tarifaAtiva::publicarSnapshot).orElse(false)) {
+                    log.warn("Banco sem resposta em {}; tabela ativa carregada do snapshot em {} ms, "
+                            + "carga pelo banco segue em segundo plano", esperaBanco, (System.nanoTime() - inicio) / 1_000_000);
+                } else {
+                    log.warn("Banco sem resposta em {} e nenhum snapshot utilizável; aguardando o banco", esperaBanco);
+                    cargaBanco.get();
+                }
+            }
+        } catch (ExecutionException e) {
+            // Mesma falha que a carga síncrona lançaria: a aplicação não sobe sem tabela
+            throw e.getCause() instanceof RuntimeException runtime ? runtime : e;
+        }
+    }
+
+    /**
+     * Se o snapshot foi publicado enquanto o banco era lido, a carga é descartada por
+     * {@link TarifaAtivaHolder#versaoAtual()} e a tabela precisa ser relida. Se o banco não responder
+     * de vez, o snapshot continua em uso até a {@link SincronizacaoTabelaAtiva} reconectar e recarregar.
+     */
+    private void carregarDoBanco() {
+        try {
+            tarifaAtiva.versaoAtual();
+            if (usouSnapshot) {
+                tarifaAtiva.recarregar();
+            }
+            snapshot.atualizarArquivo();
+        } catch (RuntimeException e) {
+            log.error("Falha na carga da tabela ativa pelo banco", e);
+            throw e;
+        }
+    }
+}
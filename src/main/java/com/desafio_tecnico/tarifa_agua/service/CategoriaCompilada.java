@@ -0,0 +1,299 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.dto.CalculoResponse;
+import com.desafio_tecnico.tarifa_agua.dto.DetalhamentoResponse;
+import com.desafio_tecnico.tarifa_agua.dto.FaixaInfo;
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import com.desafio_tecnico.tarifa_agua.entity.FaixaConsumo;
+import com.desafio_tecnico.tarifa_agua.entity.TarifaCategoria;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Faixas de uma categoria já ordenadas e convertidas em arrays, prontas para o cálculo.
+ * Instâncias são imutáveis e podem ser compartilhadas entre threads.
+ *
+ * <p>Cada faixa cobra {@code fim - inicio} m³ (a última, sem fim, cobra o restante). Na compilação
+ * são guardados, para cada faixa, o consumo acumulado antes dela e o valor acumulado das faixas
+ * anteriores cobradas por inteiro. Assim o valor total sai de uma busca binária, uma multiplicação
+ * e uma soma, e o detalhamento reaproveita as linhas das faixas completas.
+ *
+ * <p>Como todo valor unitário tem escala 2, o cálculo é feito em centavos com {@code long} e o
+ * {@link BigDecimal} só é criado na resposta. Se algum valor não couber em {@code long} (tabelas
+ * ou consumos fora de qualquer cenário real), o cálculo cai para a versão em {@link BigDecimal},
+ * que dá exatamente o mesmo resultado.
+ *
+ * <p>Opcionalmente, os resultados de consumo 0 até um limite configurado são pré-calculados em um
+ * array denso, e o cálculo nessa faixa vira um acesso por índice.
+ */
+public final class CategoriaCompilada {
+
+    /** Escala de {@code faixa_consumo.valor_unitario} (numeric(10,2)). */
+    static final int ESCALA_VALOR = 2;
+
+    private static final long BYTES_BIG_DECIMAL = 40L;
+    private static final long BYTES_LINHA_DETALHAMENTO = 32L;
+
+    @Getter
+    private final CategoriaConsumidor categoria;
+    private final BigDecimal[] valoresUnitarios;
+    private final FaixaInfo[] faixas;
+
+    /** Valores unitários em centavos; nulo quando algum valor da categoria não cabe em {@code long}. */
+    private final long[] valoresCentavos;
+    /** Valor acumulado em centavos das faixas anteriores a cada faixa; nulo junto com {@link #valoresCentavos}. */
+    private final long[] acumuladosCentavos;
+
+    /** Consumo acumulado das faixas anteriores a cada faixa. */
+    private final long[] limites;
+    /** m³ cobrados por cada faixa; {@link Long#MAX_VALUE} para a faixa sem fim. */
+    private final long[] capacidades;
+    /** Valor acumulado das faixas anteriores a cada faixa, todas cobradas por inteiro. */
+    private final BigDecimal[] acumulados;
+    /** Linha do detalhamento de cada faixa cobrada por inteiro; nula para a última faixa. */
+    private final DetalhamentoResponse[] detalhamentosCompletos;
+
+    /** Valor total por consumo, de 0 até o limite de pré-cálculo; vazio quando desligado. */
+    private final BigDecimal[] valoresPrecalculados;
+    /** Detalhamento imutável por consumo, indexado como {@link #valoresPrecalculados}. */
+    private final List<List<DetalhamentoResponse>> detalhamentosPrecalculados;
+
+    private CategoriaCompilada(CategoriaConsumidor categoria, List<FaixaConsumo> ordenadas, int limitePrecalculo) {
+        int n = ordenadas.size();
+        this.categoria = categoria;
+        this.valoresUnitarios = new BigDecimal[n];
+        this.faixas = new FaixaInfo[n];
+        this.limites = new long[n];
+        this.capacidades = new long[n];
+        this.acumulados = new BigDecimal[n];
+        this.detalhamentosCompletos = new DetalhamentoResponse[n];
+
+        long limite = 0;
+        BigDecimal acumulado = BigDecimal.ZERO;
+        for (int i = 0; i < n; i++) {
+            FaixaConsumo faixa = ordenadas.get(i);
+            valoresUnitarios[i] = faixa.getValorUnitario().setScale(ESCALA_VALOR, RoundingMode.HALF_UP);
+            faixas[i] = new FaixaInfo(faixa.getInicio(), faixa.getFim());
+            limites[i] = limite;
+            acumulados[i] = acumulado;
+            capacidades[i] = Long.MAX_VALUE;
+
+            if (faixa.getFim() != null) {
+                int capacidade = faixa.getFim() - faixa.getInicio();
+                capacidades[i] = capacidade;
+                BigDecimal subtotal = valoresUnitarios[i].multiply(BigDecimal.valueOf(capacidade));
+                detalhamentosCompletos[i] = new DetalhamentoResponse(faixas[i], capacidade, valoresUnitarios[i], subtotal);
+                limite += capacidade;
+                acumulado = acumulado.add(subtotal);
+            }
+        }
+
+        long[] centavos = null;
+        long[] acumuladosEmCentavos = null;
+        try {
+            centavos = new long[n];
+            acumuladosEmCentavos = new long[n];
+            for (int i = 0; i < n; i++) {
+                centavos[i] = valoresUnitarios[i].unscaledValue().longValueExact();
+                acumuladosEmCentavos[i] = acumulados[i].setScale(ESCALA_VALOR).unscaledValue().longValueExact();
+            }
+        } catch (ArithmeticException e) {
+            centavos = null;
+            acumuladosEmCentavos = null;
+        }
+        this.valoresCentavos = centavos;
+        this.acumuladosCentavos = acumuladosEmCentavos;
+
+        int tamanhoPrecalculo = Math.max(limitePrecalculo + 1, 0);
+        this.valoresPrecalculados = new BigDecimal[tamanhoPrecalculo];
+        List<List<DetalhamentoResponse>> detalhamentos = new ArrayList<>(tamanhoPrecalculo);
+        for (int consumo = 0; consumo < tamanhoPrecalculo; consumo++) {
+            valoresPrecalculados[consumo] = valorTotal(consumo);
+            detalhamentos.add(List.copyOf(detalhar(consumo)));
+        }
+        this.detalhamentosPrecalculados = List.copyOf(detalhamentos);
+    }
+
+    static CategoriaCompilada compilar(TarifaCategoria tarifaCategoria) {
+        return compilar(tarifaCategoria, -1);
+    }
+
+    /**
+     * @param limitePrecalculo maior consumo com resultado pré-calculado; negativo desliga o pré-cálculo
+     */
+    static CategoriaCompilada compilar(TarifaCategoria tarifaCategoria, int limitePrecalculo) {
+        List<FaixaConsumo> ordenadas = tarifaCategoria.getFaixas().stream()
+                .sorted(Comparator.comparing(FaixaConsumo::getInicio))
+                .toList();
+        return new CategoriaCompilada(tarifaCategoria.getCategoria(), ordenadas, limitePrecalculo);
+    }
+
+    public int quantidadeFaixas() {
+        return faixas.length;
+    }
+
+    /** Faixas que o cálculo de {@code consumo} percorre; 0 para consumo zero ou negativo. */
+    public int faixasPercorridas(int consumo) {
+        return consumo <= 0 ? 0 : localizarFaixa(consumo) + 1;
+    }
+
+    /** Maior consumo com resultado pré-calculado, ou -1 quando o pré-cálculo está desligado. */
+    public int limitePrecalculo() {
+        return valoresPrecalculados.length - 1;
+    }
+
+    /**
+     * Estimativa, em bytes, da memória ocupada pelo pré-cálculo. Conta referências de 8 bytes e
+     * cabeçalhos de 16 bytes; as linhas de faixas completas são compartilhadas e não entram na conta.
+     */
+    public long bytesPrecalculados() {
+        long bytes = 16L + 8L * valoresPrecalculados.length;
+        for (int consumo = 0; consumo < valoresPrecalculados.length; consumo++) {
+            List<DetalhamentoResponse> detalhamento = detalhamentosPrecalculados.get(consumo);
+            bytes += BYTES_BIG_DECIMAL;
+            bytes += 8L + 16L + 16L + 8L * detalhamento.size();
+            if (!detalhamento.isEmpty() && !ehLinhaCompartilhada(detalhamento.get(detalhamento.size() - 1))) {
+                bytes += BYTES_LINHA_DETALHAMENTO + BYTES_BIG_DECIMAL;
+            }
+        }
+        return bytes;
+    }
+
+    private boolean ehLinhaCompartilhada(DetalhamentoResponse linha) {
+        for (DetalhamentoResponse completo : detalhamentosCompletos) {
+            if (completo == linha) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param detalhado quando {@code false}, devolve apenas o valor total e não monta o detalhamento
+     */
+    CalculoResponse calcular(int consumo, boolean detalhado) {
+        if (consumo >= 0 && consumo < valoresPrecalculados.length) {
+            return new CalculoResponse(
+                    categoria.name(),
+                    consumo,
+                    valoresPrecalculados[consumo],
+                    detalhado ? detalhamentosPrecalculados.get(consumo) : null
+            );
+        }
+        return new CalculoResponse(
+                categoria.name(),
+                consumo,
+                valorTotal(consumo),
+                detalhado ? detalhar(consumo) : null
+        );
+    }
+
+    /** Faixas da categoria, em ordem. */
+    List<FaixaInfo> faixas() {
+        return List.of(faixas);
+    }
+
+    BigDecimal valorTotal(int consumo) {
+        if (consumo <= 0) {
+            return BigDecimal.ZERO;
+        }
+        if (valoresCentavos != null) {
+            try {
+                return BigDecimal.valueOf(valorTotalCentavos(consumo), ESCALA_VALOR);
+            } catch (ArithmeticException e) {
+                // estouro de long: segue pelo cálculo em BigDecimal
+            }
+        }
+        return valorTotalDecimal(consumo);
+    }
+
+    /**
+     * Valor total em centavos, sem alocação.
+     *
+     * @throws ArithmeticException se o resultado não couber em {@code long} ou se a categoria não
+     *                             puder ser calculada em centavos
+     */
+    long valorTotalCentavos(int consumo) {
+        if (valoresCentavos == null) {
+            throw new ArithmeticException("Valores da categoria não cabem em centavos long.");
+        }
+        if (consumo <= 0) {
+            return 0L;
+        }
+        int faixa = localizarFaixa(consumo);
+        return Math.addExact(acumuladosCentavos[faixa],
+                Math.multiplyExact(valoresCentavos[faixa], (long) m3NaFaixa(consumo, faixa)));
+    }
+
+    /** Mesmo cálculo de {@link #valorTotal(int)} feito inteiramente em {@link BigDecimal}. */
+    BigDecimal valorTotalDecimal(int consumo) {
+        if (consumo <= 0) {
+            return BigDecimal.ZERO;
+        }
+        int faixa = localizarFaixa(consumo);
+        return acumulados[faixa].add(
+                valoresUnitarios[faixa].multiply(BigDecimal.valueOf(m3NaFaixa(consumo, faixa))));
+    }
+
+    List<DetalhamentoResponse> detalhar(int consumo) {
+        if (consumo <= 0) {
+            return List.of();
+        }
+        int ultima = localizarFaixa(consumo);
+
+        List<DetalhamentoResponse> detalhamento = new ArrayList<>(ultima + 1);
+        for (int i = 0; i < ultima; i++) {
+            detalhamento.add(detalhamentosCompletos[i]);
+        }
+
+        int m3NaFaixa = m3NaFaixa(consumo, ultima);
+        DetalhamentoResponse completo = detalhamentosCompletos[ultima];
+        if (completo != null && completo.m3Cobrados() == m3NaFaixa) {
+            detalhamento.add(completo);
+        } else {
+            BigDecimal subtotal = subtotal(ultima, m3NaFaixa);
+            detalhamento.add(new DetalhamentoResponse(faixas[ultima], m3NaFaixa, valoresUnitarios[ultima], subtotal));
+        }
+        return detalhamento;
+    }
+
+    private BigDecimal subtotal(int faixa, int m3) {
+        if (valoresCentavos != null) {
+            try {
+                return BigDecimal.valueOf(Math.multiplyExact(valoresCentavos[faixa], (long) m3), ESCALA_VALOR);
+            } catch (ArithmeticException e) {
+                // estouro de long: segue pelo cálculo em BigDecimal
+            }
+        }
+        return valoresUnitarios[faixa].multiply(BigDecimal.valueOf(m3));
+    }
+
+    /**
+     * m³ cobrados na faixa onde o consumo termina. Só fica abaixo de {@code consumo - limite} se a
+     * última faixa tiver fim, o que a validação de criação não permite.
+     */
+    private int m3NaFaixa(int consumo, int faixa) {
+        return (int) Math.min(consumo - limites[faixa], capacidades[faixa]);
+    }
+
+    /**
+     * Última faixa cujo consumo acumulado anterior é menor que {@code consumo}, ou seja, a faixa
+     * onde o consumo termina. Requer {@code consumo > 0}.
+     */
+    private int localizarFaixa(int consumo) {
+        int baixo = 0;
+        int alto = limites.length - 1;
+        while (baixo < alto) {
+            int meio = (baixo + alto + 1) >>> 1;
+            if (limites[meio] < consumo) {
+                baixo = meio;
+            } else {
+                alto = meio - 1;
+            }
+        }
+        return baixo;
+    }
+}
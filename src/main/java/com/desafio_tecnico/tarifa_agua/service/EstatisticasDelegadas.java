@@ -0,0 +1,510 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import org.hibernate.metamodel.model.domain.NavigableRole;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.CollectionStatistics;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.NaturalIdStatistics;
+import org.hibernate.stat.QueryStatistics;
+import org.hibernate.stat.spi.StatisticsImplementor;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Repassa todas as chamadas para as estatísticas padrão do Hibernate. Subclasses sobrescrevem só os
+ * eventos que querem observar, chamando {@code super}, sem depender da implementação interna.
+ */
+abstract class EstatisticasDelegadas implements StatisticsImplementor {
+
+    private final StatisticsImplementor delegado;
+
+    EstatisticasDelegadas(StatisticsImplementor delegado) {
+        this.delegado = delegado;
+    }
+
+    @Override
+    public boolean isStatisticsEnabled() {
+        return delegado.isStatisticsEnabled();
+    }
+
+    @Override
+    public void setStatisticsEnabled(boolean habilitada) {
+        delegado.setStatisticsEnabled(habilitada);
+    }
+
+    @Override
+    public void clear() {
+        delegado.clear();
+    }
+
+    @Override
+    public void logSummary() {
+        delegado.logSummary();
+    }
+
+    @Override
+    public EntityStatistics getEntityStatistics(String entidade) {
+        return delegado.getEntityStatistics(entidade);
+    }
+
+    @Override
+    public CollectionStatistics getCollectionStatistics(String papel) {
+        return delegado.getCollectionStatistics(papel);
+    }
+
+    @Override
+    public NaturalIdStatistics getNaturalIdStatistics(String entidade) {
+        return delegado.getNaturalIdStatistics(entidade);
+    }
+
+    @Override
+    public QueryStatistics getQueryStatistics(String hql) {
+        return delegado.getQueryStatistics(hql);
+    }
+
+    @Override
+    public CacheRegionStatistics getDomainDataRegionStatistics(String regiao) {
+        return delegado.getDomainDataRegionStatistics(regiao);
+    }
+
+    @Override
+    public CacheRegionStatistics getQueryRegionStatistics(String regiao) {
+        return delegado.getQueryRegionStatistics(regiao);
+    }
+
+    @Override
+    public CacheRegionStatistics getCacheRegionStatistics(String regiao) {
+        return delegado.getCacheRegionStatistics(regiao);
+    }
+
+    @Override
+    public long getEntityDeleteCount() {
+        return delegado.getEntityDeleteCount();
+    }
+
+    @Override
+    public long getEntityInsertCount() {
+        return delegado.getEntityInsertCount();
+    }
+
+    @Override
+    public long getEntityLoadCount() {
+        return delegado.getEntityLoadCount();
+    }
+
+    @Override
+    public long getEntityFetchCount() {
+        return delegado.getEntityFetchCount();
+    }
+
+    @Override
+    public long getEntityUpdateCount() {
+        return delegado.getEntityUpdateCount();
+    }
+
+    @Override
+    public long getQueryExecutionCount() {
+        return delegado.getQueryExecutionCount();
+    }
+
+    @Override
+    public long getQueryExecutionMaxTime() {
+        return delegado.getQueryExecutionMaxTime();
+    }
+
+    @Override
+    public String getQueryExecutionMaxTimeQueryString() {
+        return delegado.getQueryExecutionMaxTimeQueryString();
+    }
+
+    @Override
+    public long getQueryCacheHitCount() {
+        return delegado.getQueryCacheHitCount();
+    }
+
+    @Override
+    public long getQueryCacheMissCount() {
+        return delegado.getQueryCacheMissCount();
+    }
+
+    @Override
+    public long getQueryCachePutCount() {
+        return delegado.getQueryCachePutCount();
+    }
+
+    @Override
+    public long getNaturalIdQueryExecutionCount() {
+        return delegado.getNaturalIdQueryExecutionCount();
+    }
+
+    @Override
+    public long getNaturalIdQueryExecutionMaxTime() {
+        return delegado.getNaturalIdQueryExecutionMaxTime();
+    }
+
+    @Override
+    public String getNaturalIdQueryExecutionMaxTimeRegion() {
+        return delegado.getNaturalIdQueryExecutionMaxTimeRegion();
+    }
+
+    @Override
+    public String getNaturalIdQueryExecutionMaxTimeEntity() {
+        return delegado.getNaturalIdQueryExecutionMaxTimeEntity();
+    }
+
+    @Override
+    public long getNaturalIdCacheHitCount() {
+        return delegado.getNaturalIdCacheHitCount();
+    }
+
+    @Override
+    public long getNaturalIdCacheMissCount() {
+        return delegado.getNaturalIdCacheMissCount();
+    }
+
+    @Override
+    public long getNaturalIdCachePutCount() {
+        return delegado.getNaturalIdCachePutCount();
+    }
+
+    @Override
+    public long getUpdateTimestampsCacheHitCount() {
+        return delegado.getUpdateTimestampsCacheHitCount();
+    }
+
+    @Override
+    public long getUpdateTimestampsCacheMissCount() {
+        return delegado.getUpdateTimestampsCacheMissCount();
+    }
+
+    @Override
+    public long getUpdateTimestampsCachePutCount() {
+        return delegado.getUpdateTimestampsCachePutCount();
+    }
+
+    @Override
+    public long getFlushCount() {
+        return delegado.getFlushCount();
+    }
+
+    @Override
+    public long getConnectCount() {
+        return delegado.getConnectCount();
+    }
+
+    @Override
+    public long getSecondLevelCacheHitCount() {
+        return delegado.getSecondLevelCacheHitCount();
+    }
+
+    @Override
+    public long getSecondLevelCacheMissCount() {
+        return delegado.getSecondLevelCacheMissCount();
+    }
+
+    @Override
+    public long getSecondLevelCachePutCount() {
+        return delegado.getSecondLevelCachePutCount();
+    }
+
+    @Override
+    public long getSessionCloseCount() {
+        return delegado.getSessionCloseCount();
+    }
+
+    @Override
+    public long getSessionOpenCount() {
+        return delegado.getSessionOpenCount();
+    }
+
+    @Override
+    public long getCollectionLoadCount() {
+        return delegado.getCollectionLoadCount();
+    }
+
+    @Override
+    public long getCollectionFetchCount() {
+        return delegado.getCollectionFetchCount();
+    }
+
+    @Override
+    public long getCollectionUpdateCount() {
+        return delegado.getCollectionUpdateCount();
+    }
+
+    @Override
+    public long getCollectionRemoveCount() {
+        return delegado.getCollectionRemoveCount();
+    }
+
+    @Override
+    public long getCollectionRecreateCount() {
+        return delegado.getCollectionRecreateCount();
+    }
+
+    @Override
+    public Instant getStart() {
+        return delegado.getStart();
+    }
+
+    @Override
+    public long getStartTime() {
+        return delegado.getStartTime();
+    }
+
+    @Override
+    public String[] getQueries() {
+        return delegado.getQueries();
+    }
+
+    @Override
+    public Map<String, Long> getSlowQueries() {
+        return delegado.getSlowQueries();
+    }
+
+    @Override
+    public String[] getEntityNames() {
+        return delegado.getEntityNames();
+    }
+
+    @Override
+    public String[] getCollectionRoleNames() {
+        return delegado.getCollectionRoleNames();
+    }
+
+    @Override
+    public String[] getSecondLevelCacheRegionNames() {
+        return delegado.getSecondLevelCacheRegionNames();
+    }
+
+    @Override
+    public long getSuccessfulTransactionCount() {
+        return delegado.getSuccessfulTransactionCount();
+    }
+
+    @Override
+    public long getTransactionCount() {
+        return delegado.getTransactionCount();
+    }
+
+    @Override
+    public long getPrepareStatementCount() {
+        return delegado.getPrepareStatementCount();
+    }
+
+    @Override
+    public long getCloseStatementCount() {
+        return delegado.getCloseStatementCount();
+    }
+
+    @Override
+    public long getOptimisticFailureCount() {
+        return delegado.getOptimisticFailureCount();
+    }
+
+    @Override
+    public long getQueryPlanCacheHitCount() {
+        return delegado.getQueryPlanCacheHitCount();
+    }
+
+    @Override
+    public long getQueryPlanCacheMissCount() {
+        return delegado.getQueryPlanCacheMissCount();
+    }
+
+    @Override
+    public void openSession() {
+        delegado.openSession();
+    }
+
+    @Override
+    public void closeSession() {
+        delegado.closeSession();
+    }
+
+    @Override
+    public void flush() {
+        delegado.flush();
+    }
+
+    @Override
+    public void connect() {
+        delegado.connect();
+    }
+
+    @Override
+    public void prepareStatement() {
+        delegado.prepareStatement();
+    }
+
+    @Override
+    public void closeStatement() {
+        delegado.closeStatement();
+    }
+
+    @Override
+    public void endTransaction(boolean sucesso) {
+        delegado.endTransaction(sucesso);
+    }
+
+    @Override
+    public void loadEntity(String entidade) {
+        delegado.loadEntity(entidade);
+    }
+
+    @Override
+    public void fetchEntity(String entidade) {
+        delegado.fetchEntity(entidade);
+    }
+
+    @Override
+    public void updateEntity(String entidade) {
+        delegado.updateEntity(entidade);
+    }
+
+    @Override
+    public void insertEntity(String entidade) {
+        delegado.insertEntity(entidade);
+    }
+
+    @Override
+    public void deleteEntity(String entidade) {
+        delegado.deleteEntity(entidade);
+    }
+
+    @Override
+    public void optimisticFailure(String entidade) {
+        delegado.optimisticFailure(entidade);
+    }
+
+    @Override
+    public void loadCollection(String papel) {
+        delegado.loadCollection(papel);
+    }
+
+    @Override
+    public void fetchCollection(String papel) {
+        delegado.fetchCollection(papel);
+    }
+
+    @Override
+    public void updateCollection(String papel) {
+        delegado.updateCollection(papel);
+    }
+
+    @Override
+    public void recreateCollection(String papel) {
+        delegado.recreateCollection(papel);
+    }
+
+    @Override
+    public void removeCollection(String papel) {
+        delegado.removeCollection(papel);
+    }
+
+    @Override
+    public void entityCachePut(NavigableRole papel, String regiao) {
+        delegado.entityCachePut(papel, regiao);
+    }
+
+    @Override
+    public void entityCacheHit(NavigableRole papel, String regiao) {
+        delegado.entityCacheHit(papel, regiao);
+    }
+
+    @Override
+    public void entityCacheMiss(NavigableRole papel, String regiao) {
+        delegado.entityCacheMiss(papel, regiao);
+    }
+
+    @Override
+    public void collectionCachePut(NavigableRole papel, String regiao) {
+        delegado.collectionCachePut(papel, regiao);
+    }
+
+    @Override
+    public void collectionCacheHit(NavigableRole papel, String regiao) {
+        delegado.collectionCacheHit(papel, regiao);
+    }
+
+    @Override
+    public void collectionCacheMiss(NavigableRole papel, String regiao) {
+        delegado.collectionCacheMiss(papel, regiao);
+    }
+
+    @Override
+    public void naturalIdCachePut(NavigableRole papel, String regiao) {
+        delegado.naturalIdCachePut(papel, regiao);
+    }
+
+    @Override
+    public void naturalIdCacheHit(NavigableRole papel, String regiao) {
+        delegado.naturalIdCacheHit(papel, regiao);
+    }
+
+    @Override
+    public void naturalIdCacheMiss(NavigableRole papel, String regiao) {
+        delegado.naturalIdCacheMiss(papel, regiao);
+    }
+
+    @Override
+    public void naturalIdQueryExecuted(String regiao, long tempo) {
+        delegado.naturalIdQueryExecuted(regiao, tempo);
+    }
+
+    @Override
+    public void queryCachePut(String hql, String regiao) {
+        delegado.queryCachePut(hql, regiao);
+    }
+
+    @Override
+    public void queryCacheHit(String hql, String regiao) {
+        delegado.queryCacheHit(hql, regiao);
+    }
+
+    @Override
+    public void queryCacheMiss(String hql, String regiao) {
+        delegado.queryCacheMiss(hql, regiao);
+    }
+
+    @Override
+    public void queryExecuted(String hql, int linhas, long tempo) {
+        delegado.queryExecuted(hql, linhas, tempo);
+    }
+
+    @Override
+    public void updateTimestampsCacheHit() {
+        delegado.updateTimestampsCacheHit();
+    }
+
+    @Override
+    public void updateTimestampsCacheMiss() {
+        delegado.updateTimestampsCacheMiss();
+    }
+
+    @Override
+    public void updateTimestampsCachePut() {
+        delegado.updateTimestampsCachePut();
+    }
+
+    @Override
+    public void queryPlanCacheHit(String hql) {
+        delegado.queryPlanCacheHit(hql);
+    }
+
+    @Override
+    public void queryPlanCacheMiss(String hql) {
+        delegado.queryPlanCacheMiss(hql);
+    }
+
+    @Override
+    public void queryCompiled(String hql, long tempo) {
+        delegado.queryCompiled(hql, tempo);
+    }
+
+    @Override
+    public void slowQuery(String sql, long tempo) {
+        delegado.slowQuery(sql, tempo);
+    }
+}
@@ -0,0 +1,260 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.dto.ConsultaLentaResponse;
+import com.desafio_tecnico.tarifa_agua.dto.EstatisticasEndpointResponse;
+import com.desafio_tecnico.tarifa_agua.dto.EstatisticasSqlResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.internal.StatisticsImpl;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.hibernate.stat.spi.StatisticsImplementor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Estatísticas do Hibernate por endpoint, ligadas sob demanda em {@code /actuator/sqlstats}. Substitui
+ * o {@code show-sql} em produção: desligadas, o Hibernate nem chama os contadores (ele consulta
+ * {@link StatisticsImplementor#isStatisticsEnabled()} antes) e o interceptor só lê uma flag.
+ * <p>
+ * Ligadas, cada requisição fica associada ao padrão da rota ({@code GET /api/calculos}) e recebe os
+ * statements preparados, as consultas executadas, as entidades e coleções carregadas e as buscadas
+ * por fetch lazy (o sinal de N+1), além das consultas acima de {@code tarifa.sql.estatisticas.consulta-lenta}.
+ * Trabalho fora de requisições HTTP (agendamentos, escuta de notificações) entra em {@value #FORA_DE_REQUISICAO}.
+ * <p>
+ * Com {@code tarifa.sql.estatisticas.coletar-desde-inicio}, a coleta já começa ligada, para ambientes
+ * em que o endpoint só aceita leitura. O registro no Hibernate e o interceptor das requisições ficam
+ * em {@link com.desafio_tecnico.tarifa_agua.config.EstatisticasSqlConfig}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "tarifa.sql.estatisticas.habilitada", havingValue = "true")
+public class EstatisticasSql implements StatisticsFactory {
+
+    static final String FORA_DE_REQUISICAO = "(fora de requisição)";
+
+    /** Consultas lentas distintas guardadas por endpoint; as seguintes só entram nas contagens. */
+    static final int MAXIMO_CONSULTAS_LENTAS = 20;
+
+    private final Duration consultaLenta;
+    private final ThreadLocal<Endpoint> endpointAtual = new ThreadLocal<>();
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    private volatile StatisticsImplementor estatisticas;
+    private volatile boolean ativa;
+    private volatile Instant desde;
+
+    /**
+     * @param consultaLenta       tempo a partir do qual uma consulta é registrada como lenta
+     * @param coletarDesdeInicio  liga a coleta sem esperar por {@link #iniciar()}
+     */
+    public EstatisticasSql(@Value("${tarifa.sql.estatisticas.consulta-lenta:200ms}") Duration consultaLenta,
+                           @Value("${tarifa.sql.estatisticas.coletar-desde-inicio:false}") boolean coletarDesdeInicio) {
+        this.consultaLenta = consultaLenta;
+        if (coletarDesdeInicio) {
+            desde = Instant.now();
+            ativa = true;
+        }
+    }
+
+    @Override
+    public StatisticsImplementor buildStatistics(SessionFactoryImplementor sessionFactory) {
+        estatisticas = new Coletor(new StatisticsImpl(sessionFactory));
+        return estatisticas;
+    }
+
+    public Duration getConsultaLenta() {
+        return consultaLenta;
+    }
+
+    public boolean isAtiva() {
+        return ativa;
+    }
+
+    /** Descarta o que foi coletado e começa uma nova coleta. */
+    public synchronized void iniciar() {
+        endpoints.clear();
+        desde = Instant.now();
+        ativa = true;
+        if (estatisticas != null) {
+            estatisticas.clear();
+            estatisticas.setStatisticsEnabled(true);
+        }
+        log.info("Estatísticas de SQL por endpoint ligadas");
+    }
+
+    /** Para a coleta mantendo o que já foi coletado disponível para leitura. */
+    public synchronized void parar() {
+        ativa = false;
+        if (estatisticas != null) {
+            estatisticas.setStatisticsEnabled(false);
+        }
+        log.info("Estatísticas de SQL por endpoint desligadas");
+    }
+
+    public synchronized void limpar() {
+        endpoints.clear();
+        desde = ativa ? Instant.now() : null;
+    }
+
+    /** Endpoints em ordem decrescente de statements. */
+    public EstatisticasSqlResponse relatorio() {
+        List<EstatisticasEndpointResponse> porEndpoint = new ArrayList<>(endpoints.size());
+        for (Map.Entry<String, Endpoint> entrada : endpoints.entrySet()) {
+            porEndpoint.add(entrada.getValue().resumo(entrada.getKey()));
+        }
+        porEndpoint.sort(Comparator.comparingLong(EstatisticasEndpointResponse::statements).reversed());
+        return new EstatisticasSqlResponse(ativa, desde, porEndpoint);
+    }
+
+    /**
+     * Associa a thread atual ao endpoint até {@link #sairEndpoint()}. Não faz nada com a coleta
+     * desligada.
+     */
+    public void entrarEndpoint(String endpoint) {
+        if (ativa) {
+            Endpoint atual = endpoints.computeIfAbsent(endpoint, chave -> new Endpoint());
+            atual.requisicoes.increment();
+            endpointAtual.set(atual);
+        }
+    }
+
+    public void sairEndpoint() {
+        endpointAtual.remove();
+    }
+
+    void registrarStatement() {
+        endpoint().statements.increment();
+    }
+
+    void registrarConsulta() {
+        endpoint().consultas.increment();
+    }
+
+    void registrarEntidade(boolean fetch) {
+        Endpoint endpoint = endpoint();
+        (fetch ? endpoint.entidadesBuscadas : endpoint.entidadesCarregadas).increment();
+    }
+
+    void registrarColecao(boolean fetch) {
+        Endpoint endpoint = endpoint();
+        (fetch ? endpoint.colecoesBuscadas : endpoint.colecoesCarregadas).increment();
+    }
+
+    void registrarConsultaLenta(String sql, long tempoMs) {
+        Map<String, ConsultaLenta> lentas = endpoint().consultasLentas;
+        ConsultaLenta consulta = lentas.get(sql);
+        if (consulta == null && lentas.size() < MAXIMO_CONSULTAS_LENTAS) {
+            consulta = lentas.computeIfAbsent(sql, chave -> new ConsultaLenta());
+        }
+        if (consulta != null) {
+            consulta.execucoes.increment();
+            consulta.tempoMaximoMs.accumulate(tempoMs);
+        }
+    }
+
+    private Endpoint endpoint() {
+        Endpoint atual = endpointAtual.get();
+        return atual != null ? atual : endpoints.computeIfAbsent(FORA_DE_REQUISICAO, chave -> new Endpoint());
+    }
+
+    /** Contadores de um endpoint, atualizados por várias requisições ao mesmo tempo. */
+    private static final class Endpoint {
+        final LongAdder requisicoes = new LongAdder();
+        final LongAdder statements = new LongAdder();
+        final LongAdder consultas = new LongAdder();
+        final LongAdder entidadesCarregadas = new LongAdder();
+        final LongAdder entidadesBuscadas = new LongAdder();
+        final LongAdder colecoesCarregadas = new LongAdder();
+        final LongAdder colecoesBuscadas = new LongAdder();
+        final Map<String, ConsultaLenta> consultasLentas = new ConcurrentHashMap<>();
+
+        EstatisticasEndpointResponse resumo(String nome) {
+            long totalRequisicoes = requisicoes.sum();
+            long totalStatements = statements.sum();
+            List<ConsultaLentaResponse> lentas = new ArrayList<>(consultasLentas.size());
+            consultasLentas.forEach((sql, consulta) -> lentas.add(new ConsultaLentaResponse(
+                    sql, consulta.execucoes.sum(), consulta.tempoMaximoMs.get())));
+            lentas.sort(Comparator.comparingLong(ConsultaLentaResponse::tempoMaximoMs).reversed());
+            return new EstatisticasEndpointResponse(
+                    nome,
+                    totalRequisicoes,
+                    totalStatements,
+                    totalRequisicoes == 0 ? 0 : (double) totalStatements / totalRequisicoes,
+                    consultas.sum(),
+                    entidadesCarregadas.sum(),
+                    entidadesBuscadas.sum(),
+                    colecoesCarregadas.sum(),
+                    colecoesBuscadas.sum(),
+                    lentas);
+        }
+    }
+
+    private static final class ConsultaLenta {
+        final LongAdder execucoes = new LongAdder();
+        final LongAccumulator tempoMaximoMs = new LongAccumulator(Math::max, 0);
+    }
+
+    /**
+     * Estatísticas globais do Hibernate, acrescidas da contagem por endpoint. {@link #iniciar()} e
+     * {@link #parar()} as ligam e desligam sem reiniciar a aplicação.
+     */
+    private final class Coletor extends EstatisticasDelegadas {
+
+        Coletor(StatisticsImplementor padrao) {
+            super(padrao);
+        }
+
+        @Override
+        public void prepareStatement() {
+            super.prepareStatement();
+            registrarStatement();
+        }
+
+        @Override
+        public void queryExecuted(String hql, int rows, long time) {
+            super.queryExecuted(hql, rows, time);
+            registrarConsulta();
+        }
+
+        @Override
+        public void loadEntity(String entityName) {
+            super.loadEntity(entityName);
+            registrarEntidade(false);
+        }
+
+        @Override
+        public void fetchEntity(String entityName) {
+            super.fetchEntity(entityName);
+            registrarEntidade(true);
+        }
+
+        @Override
+        public void loadCollection(String role) {
+            super.loadCollection(role);
+            registrarColecao(false);
+        }
+
+        @Override
+        public void fetchCollection(String role) {
+            super.fetchCollection(role);
+            registrarColecao(true);
+        }
+
+        @Override
+        public void slowQuery(String sql, long executionTime) {
+            super.slowQuery(sql, executionTime);
+            registrarConsultaLenta(sql, executionTime);
+        }
+    }
+}
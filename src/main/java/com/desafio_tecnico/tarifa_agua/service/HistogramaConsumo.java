@@ -0,0 +1,374 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.config.RelogioConfig;
+import com.desafio_tecnico.tarifa_agua.dto.FaixaHistogramaResponse;
+import com.desafio_tecnico.tarifa_agua.dto.FaixaInfo;
+import com.desafio_tecnico.tarifa_agua.dto.HistogramaConsumoResponse;
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import com.desafio_tecnico.tarifa_agua.exception.BusinessException;
+import com.desafio_tecnico.tarifa_agua.exception.TipoErroNegocio;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Array;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma do consumo calculado, por categoria e mês: uma contagem por m³ de 0 até
+ * {@code tarifa.histograma.limite-consumo} - 1 e uma última posição para os consumos a partir do
+ * limite. Nenhuma leitura é guardada individualmente.
+ * <p>
+ * Conta cálculos, não contas faturadas: recalcular a mesma leitura sem chave de idempotência conta
+ * outra vez, enquanto reenvios respondidos pelo cache de idempotência e respostas {@code 304} não
+ * contam.
+ * <p>
+ * Cada cálculo incrementa uma posição de um {@link AtomicLongArray}. Para que requisições
+ * simultâneas não disputem a mesma linha de cache, cada categoria tem uma cópia do array por
+ * listra, escolhida pelo id da thread, e as listras só são somadas na gravação e na consulta.
+ * <p>
+ * A cada {@code tarifa.histograma.intervalo-gravacao} as contagens desta instância são gravadas em
+ * {@code histograma_consumo}, uma linha por categoria, mês e instância, sempre com o total desde a
+ * inicialização: regravar depois de uma falha não conta nada duas vezes. A consulta soma as linhas
+ * de todas as instâncias, usando as contagens em memória no lugar das linhas desta instância; as
+ * demais aparecem com até um intervalo de atraso. Contagens ainda não gravadas se perdem se a
+ * instância cair sem encerrar.
+ * <p>
+ * Os meses começam e terminam à meia-noite de {@code America/Recife}, o mesmo fuso das datas de
+ * vigência e desativação das tabelas.
+ */
+@Slf4j
+@Component
+public class HistogramaConsumo {
+
+    private static final String UPSERT = """
+            INSERT INTO histograma_consumo (categoria, periodo, instancia, contagens, atualizado_em)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (categoria, periodo, instancia)
+            DO UPDATE SET contagens = EXCLUDED.contagens, atualizado_em = EXCLUDED.atualizado_em
+            """;
+
+    private static final String SELECT = """
+            SELECT periodo, instancia, contagens
+            FROM histograma_consumo
+            WHERE categoria = ? AND periodo BETWEEN ? AND ?
+            """;
+
+    /** Maior intervalo aceito na consulta. */
+    static final int MESES_MAXIMOS_CONSULTA = 120;
+
+    /** {@code values()} copia o array a cada chamada. */
+    private static final CategoriaConsumidor[] CATEGORIAS = CategoriaConsumidor.values();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TarifaAtivaHolder tarifaAtiva;
+    private final boolean habilitado;
+    private final int limiteConsumo;
+    private final int mascaraListras;
+    private final String instancia = UUID.randomUUID().toString();
+    private final Clock relogio;
+
+    private final Map<YearMonth, Periodo> periodos = new ConcurrentHashMap<>();
+    /** Mês corrente, para que o cálculo não precise montar um {@link YearMonth} a cada chamada. */
+    private volatile Periodo atual;
+
+    private final Counter gravacoes;
+    private final Counter falhas;
+
+    /**
+     * @param habilitado    {@code false} desliga a contagem e a gravação; a consulta continua lendo
+     *                      o que já foi gravado
+     * @param limiteConsumo m³ contados individualmente; consumos a partir dele caem na última posição
+     * @param listras       cópias dos contadores de cada categoria, arredondadas para potência de 2;
+     *                      zero usa o número de processadores
+     */
+    @Autowired
+    public HistogramaConsumo(JdbcTemplate jdbcTemplate,
+                             TarifaAtivaHolder tarifaAtiva,
+                             MeterRegistry registry,
+                             @Value("${tarifa.histograma.habilitado:true}") boolean habilitado,
+                             @Value("${tarifa.histograma.limite-consumo:1000}") int limiteConsumo,
+                             @Value("${tarifa.histograma.listras:0}") int listras) {
+        this(jdbcTemplate, tarifaAtiva, registry, habilitado, limiteConsumo, listras,
+                Clock.system(RelogioConfig.FUSO_HORARIO));
+    }
+
+    /**
+     * @param relogio hora atual e fuso que delimita os meses
+     */
+    HistogramaConsumo(JdbcTemplate jdbcTemplate, TarifaAtivaHolder tarifaAtiva, MeterRegistry registry,
+                      boolean habilitado, int limiteConsumo, int listras, Clock relogio) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.relogio = relogio;
+        this.tarifaAtiva = tarifaAtiva;
+        this.habilitado = habilitado;
+        this.limiteConsumo = Math.max(limiteConsumo, 1);
+        // Potência de 2, para escolher a listra com uma máscara
+        int minimo = listras > 0 ? listras : Runtime.getRuntime().availableProcessors();
+        this.mascaraListras = minimo <= 1 ? 0 : Integer.highestOneBit((minimo - 1) << 1) - 1;
+
+        Gauge.builder("tarifa.histograma.periodos", periodos, Map::size)
+                .description("Meses do histograma de consumo mantidos em memória")
+                .register(registry);
+        gravacoes = Counter.builder("tarifa.histograma.gravacoes")
+                .description("Gravações do histograma de consumo no banco")
+                .register(registry);
+        falhas = Counter.builder("tarifa.histograma.falhas")
+                .description("Gravações do histograma de consumo que falharam e serão refeitas")
+                .register(registry);
+    }
+
+    /** Conta uma leitura no mês corrente. Sem alocação fora da virada do mês. */
+    void registrar(CategoriaConsumidor categoria, int consumo) {
+        if (!habilitado) {
+            return;
+        }
+        Periodo periodo = atual;
+        if (periodo == null || relogio.millis() >= periodo.fimMillis) {
+            periodo = periodo(YearMonth.now(relogio));
+            atual = periodo;
+        }
+        periodo.incrementar(categoria.ordinal(), consumo);
+    }
+
+    /**
+     * Grava as contagens em memória. Um mês encerrado sai da memória na segunda gravação depois do
+     * fim, quando nenhum cálculo iniciado antes da virada ainda pode incrementá-lo.
+     */
+    @Scheduled(fixedDelayString = "${tarifa.histograma.intervalo-gravacao:1m}",
+            initialDelayString = "${tarifa.histograma.intervalo-gravacao:1m}")
+    public void gravar() {
+        if (!habilitado || periodos.isEmpty()) {
+            return;
+        }
+        long agora = relogio.millis();
+        Timestamp atualizadoEm = new Timestamp(agora);
+        List<Object[]> linhas = new ArrayList<>();
+        List<Periodo> encerrados = new ArrayList<>();
+        for (Periodo periodo : periodos.values()) {
+            Date inicioMes = Date.valueOf(periodo.mes.atDay(1));
+            for (CategoriaConsumidor categoria : CATEGORIAS) {
+                long[] contagens = periodo.contagens(categoria.ordinal());
+                if (total(contagens) > 0) {
+                    linhas.add(new Object[]{categoria.name(), inicioMes, instancia, contagens, atualizadoEm});
+                }
+            }
+            if (periodo.fimMillis <= agora) {
+                encerrados.add(periodo);
+            }
+        }
+
+        try {
+            if (!linhas.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPSERT, linhas);
+            }
+            gravacoes.increment();
+        } catch (DataAccessException e) {
+            falhas.increment();
+            log.warn("Falha ao gravar o histograma de consumo; nova tentativa na próxima gravação", e);
+            return;
+        }
+
+        for (Periodo periodo : encerrados) {
+            if (periodo.gravadoEncerrado) {
+                periodos.remove(periodo.mes, periodo);
+            } else {
+                periodo.gravadoEncerrado = true;
+            }
+        }
+    }
+
+    /** Última gravação, depois que o servidor web parou de receber requisições. */
+    @PreDestroy
+    public void encerrar() {
+        gravar();
+    }
+
+    /**
+     * Leituras da categoria nos meses de {@code inicio} a {@code fim}, inclusive, em cada faixa. Sem
+     * {@code limites}, usa as faixas da categoria na tabela ativa.
+     * <p>
+     * Depois de somadas as linhas, as contagens viram um array acumulado e cada faixa é respondida
+     * com duas leituras nele. Faixas que passam do limite de consumo e terminam antes do infinito só
+     * contam as leituras abaixo do limite e saem com {@code exata = false}.
+     *
+     * @param limites início de cada faixa, em ordem crescente; a última não tem fim
+     */
+    public HistogramaConsumoResponse consultar(String categoria, YearMonth inicio, YearMonth fim, List<Integer> limites) {
+        CategoriaConsumidor categoriaConsumidor = converterCategoria(categoria);
+        if (inicio.isAfter(fim) || inicio.plusMonths(MESES_MAXIMOS_CONSULTA).isBefore(fim)) {
+            throw new BusinessException(TipoErroNegocio.ENTRADA_INVALIDA,
+                    "Período do histograma inválido: o início não pode ser posterior ao fim e o período tem até "
+                    + MESES_MAXIMOS_CONSULTA + " meses.");
+        }
+        List<FaixaInfo> faixas = limites == null || limites.isEmpty()
+                ? tarifaAtiva.obter().categoria(categoriaConsumidor).faixas()
+                : faixas(limites);
+
+        long[] contagens = contagens(categoriaConsumidor, inicio, fim);
+        long[] acumulado = new long[limiteConsumo + 1];
+        for (int consumo = 0; consumo < limiteConsumo; consumo++) {
+            acumulado[consumo + 1] = acumulado[consumo] + contagens[consumo];
+        }
+        long acimaDoLimite = contagens[limiteConsumo];
+
+        List<FaixaHistogramaResponse> respostas = new ArrayList<>(faixas.size());
+        for (FaixaInfo faixa : faixas) {
+            int de = Math.min(faixa.inicio(), limiteConsumo);
+            boolean semFim = faixa.fim() == null;
+            int ate = semFim ? limiteConsumo : (int) Math.min((long) faixa.fim() + 1, limiteConsumo);
+            long leituras = acumulado[ate] - acumulado[de] + (semFim ? acimaDoLimite : 0);
+            boolean exata = semFim || faixa.fim() < limiteConsumo;
+            respostas.add(new FaixaHistogramaResponse(faixa.inicio(), faixa.fim(), leituras, exata));
+        }
+
+        return new HistogramaConsumoResponse(
+                categoriaConsumidor.name(),
+                inicio,
+                fim,
+                limiteConsumo,
+                acumulado[limiteConsumo] + acimaDoLimite,
+                acimaDoLimite,
+                respostas
+        );
+    }
+
+    /**
+     * Contagens da categoria nos meses de {@code inicio} a {@code fim}, somando todas as instâncias;
+     * a posição {@code limiteConsumo} tem os consumos a partir do limite. Linhas gravadas com outro
+     * limite são ajustadas a este: o que passar do limite cai na última posição.
+     * <p>
+     * Os meses em memória são copiados antes da consulta, e a mesma cópia decide quais linhas desta
+     * instância são ignoradas e quais contagens em memória são somadas. Um mês que sai da memória
+     * durante a consulta ainda é somado da cópia. Um mês criado depois dela vem da linha gravada.
+     */
+    long[] contagens(CategoriaConsumidor categoria, YearMonth inicio, YearMonth fim) {
+        Map<YearMonth, Periodo> emMemoria = Map.copyOf(periodos);
+        long[] soma = new long[limiteConsumo + 1];
+        List<LinhaHistograma> linhas = jdbcTemplate.query(SELECT, (resultado, linha) -> new LinhaHistograma(
+                YearMonth.from(resultado.getDate("periodo").toLocalDate()),
+                resultado.getString("instancia"),
+                lerContagens(resultado.getArray("contagens"))
+        ), categoria.name(), Date.valueOf(inicio.atDay(1)), Date.valueOf(fim.atDay(1)));
+
+        for (LinhaHistograma linha : linhas) {
+            // As linhas desta instância estão mais atualizadas em memória
+            if (!linha.instancia().equals(instancia) || !emMemoria.containsKey(linha.mes())) {
+                somar(soma, linha.contagens());
+            }
+        }
+        for (Periodo periodo : emMemoria.values()) {
+            if (!periodo.mes.isBefore(inicio) && !periodo.mes.isAfter(fim)) {
+                somar(soma, periodo.contagens(categoria.ordinal()));
+            }
+        }
+        return soma;
+    }
+
+    private void somar(long[] soma, long[] contagens) {
+        int ultima = contagens.length - 1;
+        for (int i = 0; i < ultima; i++) {
+            soma[Math.min(i, limiteConsumo)] += contagens[i];
+        }
+        soma[limiteConsumo] += contagens[ultima];
+    }
+
+    private Periodo periodo(YearMonth mes) {
+        return periodos.computeIfAbsent(mes, Periodo::new);
+    }
+
+    private static long total(long[] contagens) {
+        long total = 0;
+        for (long contagem : contagens) {
+            total += contagem;
+        }
+        return total;
+    }
+
+    private static long[] lerContagens(Array array) throws SQLException {
+        Object[] valores = (Object[]) array.getArray();
+        long[] contagens = new long[valores.length];
+        for (int i = 0; i < valores.length; i++) {
+            contagens[i] = ((Number) valores[i]).longValue();
+        }
+        return contagens;
+    }
+
+    private static List<FaixaInfo> faixas(List<Integer> limites) {
+        List<FaixaInfo> faixas = new ArrayList<>(limites.size());
+        for (int i = 0; i < limites.size(); i++) {
+            Integer inicio = limites.get(i);
+            if (inicio == null || inicio < 0 || (i > 0 && inicio <= limites.get(i - 1))) {
+                throw new BusinessException(TipoErroNegocio.ENTRADA_INVALIDA,
+                        "Limites do histograma inválidos: devem ser crescentes e não negativos.");
+            }
+            Integer fim = i == limites.size() - 1 ? null : limites.get(i + 1) - 1;
+            faixas.add(new FaixaInfo(inicio, fim));
+        }
+        return faixas;
+    }
+
+    private static CategoriaConsumidor converterCategoria(String categoria) {
+        try {
+            return CategoriaConsumidor.valueOf(categoria.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException(TipoErroNegocio.CATEGORIA_INVALIDA, "Categoria inválida: " + categoria);
+        }
+    }
+
+    record LinhaHistograma(YearMonth mes, String instancia, long[] contagens) {}
+
+    /** Contagens de um mês, com uma cópia por listra para cada categoria. */
+    private final class Periodo {
+
+        private final YearMonth mes;
+        private final long fimMillis;
+        private final AtomicLongArray[][] listras;
+        /** Já gravado uma vez depois do fim do mês. */
+        private volatile boolean gravadoEncerrado;
+
+        Periodo(YearMonth mes) {
+            this.mes = mes;
+            this.fimMillis = mes.plusMonths(1).atDay(1).atStartOfDay(relogio.getZone()).toInstant().toEpochMilli();
+            this.listras = new AtomicLongArray[CATEGORIAS.length][mascaraListras + 1];
+            for (AtomicLongArray[] categoria : listras) {
+                for (int i = 0; i < categoria.length; i++) {
+                    categoria[i] = new AtomicLongArray(limiteConsumo + 1);
+                }
+            }
+        }
+
+        void incrementar(int categoria, int consumo) {
+            int listra = (int) Thread.currentThread().getId() & mascaraListras;
+            listras[categoria][listra].incrementAndGet(consumo <= 0 ? 0 : Math.min(consumo, limiteConsumo));
+        }
+
+        long[] contagens(int categoria) {
+            long[] contagens = new long[limiteConsumo + 1];
+            for (AtomicLongArray listra : listras[categoria]) {
+                for (int i = 0; i < contagens.length; i++) {
+                    contagens[i] += listra.get(i);
+                }
+            }
+            return contagens;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.exception.BusinessException;
+import com.desafio_tecnico.tarifa_agua.exception.TipoErroNegocio;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Períodos de vigência de todas as tabelas tarifárias, ordenados pelo início. Cada tabela vale de
+ * {@code dataVigencia} (inclusive) até {@code dataDesativacao} (exclusive); a tabela ativa não tem
+ * fim. Como só existe uma tabela ativa por vez, os períodos não se sobrepõem e a tabela de uma
+ * data é encontrada por busca binária, sem acesso ao banco.
+ */
+final class HistoricoTarifas {
+
+    private final LocalDateTime[] inicios;
+    /** {@code null} na posição da tabela ativa. */
+    private final LocalDateTime[] fins;
+    private final TarifaCompilada[] tarifas;
+
+    /**
+     * @param periodos períodos em ordem de início, sem sobreposição
+     */
+    HistoricoTarifas(List<Periodo> periodos) {
+        int n = periodos.size();
+        inicios = new LocalDateTime[n];
+        fins = new LocalDateTime[n];
+        tarifas = new TarifaCompilada[n];
+        for (int i = 0; i < n; i++) {
+            Periodo periodo = periodos.get(i);
+            inicios[i] = periodo.inicio();
+            fins[i] = periodo.fim();
+            tarifas[i] = periodo.tarifa();
+        }
+    }
+
+    /**
+     * Tabela vigente em {@code data}. Lança {@link BusinessException} quando a data é anterior à
+     * primeira tabela ou cai entre a desativação de uma tabela e a criação da seguinte.
+     */
+    TarifaCompilada vigenteEm(LocalDateTime data) {
+        int i = ultimoInicioAte(data);
+        if (i < 0 || (fins[i] != null && !data.isBefore(fins[i]))) {
+            throw new BusinessException(TipoErroNegocio.SEM_TABELA_VIGENTE,
+                    "Nenhuma tabela tarifária vigente em " + data + ".");
+        }
+        return tarifas[i];
+    }
+
+    int quantidadePeriodos() {
+        return inicios.length;
+    }
+
+    /** Posição do último período que começa em {@code data} ou antes; -1 se não houver. */
+    private int ultimoInicioAte(LocalDateTime data) {
+        int baixo = 0;
+        int alto = inicios.length - 1;
+        int encontrado = -1;
+        while (baixo <= alto) {
+            int meio = (baixo + alto) >>> 1;
+            if (inicios[meio].isAfter(data)) {
+                alto = meio - 1;
+            } else {
+                encontrado = meio;
+                baixo = meio + 1;
+            }
+        }
+        return encontrado;
+    }
+
+    /**
+     * @param fim {@code null} para a tabela ativa
+     */
+    record Periodo(LocalDateTime inicio, LocalDateTime fim, TarifaCompilada tarifa) {}
+}
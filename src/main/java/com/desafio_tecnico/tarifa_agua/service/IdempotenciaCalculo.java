@@ -0,0 +1,149 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.dto.CalculoRequest;
+import com.desafio_tecnico.tarifa_agua.dto.CalculoResponse;
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import com.desafio_tecnico.tarifa_agua.exception.BusinessException;
+import com.desafio_tecnico.tarifa_agua.exception.TipoErroNegocio;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Cálculo com chave de idempotência: reenvios da mesma leitura dentro de
+ * {@code tarifa.idempotencia.janela} recebem a resposta já calculada, sem novo cálculo nem novo
+ * lançamento. As respostas ficam em um cache em memória com tamanho limitado e expiração por tempo.
+ * <p>
+ * A entrada é separada pelo id da tabela que resolveu a requisição, e não só pela chave: tabelas
+ * nunca mudam depois de criadas, então uma troca de tarifa muda o id e a resposta antiga deixa de
+ * ser encontrada. A mesma chave com outra categoria, consumo ou modo de resposta é recusada.
+ * <p>
+ * O cache guarda futuros: a primeira requisição publica um futuro com {@code putIfAbsent} e faz a
+ * consulta aos lançamentos e o cálculo fora do cache, sem segurar o lock interno do mapa enquanto
+ * espera o banco ou a fila de lançamentos. Reenvios simultâneos esperam esse futuro.
+ * <p>
+ * Com {@code tarifa.idempotencia.consultar-lancamentos}, uma chave fora do cache é procurada em
+ * {@code lancamento_calculo}, o que cobre reenvios que chegam a outra instância ou depois de um
+ * reinício. Os lançamentos são gravados em lote, então um reenvio que chega antes da gravação é
+ * calculado de novo; o valor é o mesmo, mas fica um lançamento a mais.
+ */
+@Service
+public class IdempotenciaCalculo {
+
+    private final CalculoService calculoService;
+    private final LancamentosCalculo lancamentos;
+    private final Duration janela;
+    private final boolean consultarLancamentos;
+    private final AsyncCache<Chave, Entrada> respostas;
+    private final Counter recuperadas;
+
+    /**
+     * @param janela               por quanto tempo uma chave devolve a mesma resposta
+     * @param maximo               chaves mantidas em memória
+     * @param consultarLancamentos procura em {@code lancamento_calculo} as chaves fora do cache
+     */
+    public IdempotenciaCalculo(CalculoService calculoService,
+                               LancamentosCalculo lancamentos,
+                               MeterRegistry registry,
+                               @Value("${tarifa.idempotencia.janela:10m}") Duration janela,
+                               @Value("${tarifa.idempotencia.maximo:100000}") long maximo,
+                               @Value("${tarifa.idempotencia.consultar-lancamentos:false}") boolean consultarLancamentos) {
+        this.calculoService = calculoService;
+        this.lancamentos = lancamentos;
+        this.janela = janela;
+        this.consultarLancamentos = consultarLancamentos;
+        this.respostas = Caffeine.newBuilder()
+                .maximumSize(maximo)
+                .expireAfterWrite(janela)
+                .recordStats()
+                .buildAsync();
+
+        CaffeineCacheMetrics.monitor(registry, respostas, "idempotencia-calculo");
+        recuperadas = Counter.builder("tarifa.idempotencia.recuperadas")
+                .description("Respostas de reenvios encontradas em lancamento_calculo, fora do cache em memória")
+                .register(registry);
+    }
+
+    /**
+     * Sem chave, calcula normalmente. Com chave, devolve a resposta guardada para a chave na tabela
+     * que resolve a requisição, ou calcula e guarda. Reenvios simultâneos da mesma chave esperam um
+     * único cálculo.
+     */
+    public CalculoResponse calcular(CalculoRequest request, boolean detalhado) {
+        if (request.chaveIdempotencia() == null) {
+            return calculoService.calcular(request, detalhado);
+        }
+        CalculoConsulta consulta = calculoService.consultar(request, detalhado);
+        Chave chave = new Chave(consulta.tabelaId(), request.chaveIdempotencia());
+        CompletableFuture<Entrada> futura = respostas.getIfPresent(chave);
+        if (futura == null) {
+            CompletableFuture<Entrada> nova = new CompletableFuture<>();
+            futura = respostas.asMap().putIfAbsent(chave, nova);
+            if (futura == null) {
+                futura = nova;
+                resolver(nova, chave, consulta, detalhado);
+            }
+        }
+        Entrada entrada = aguardar(futura);
+        if (entrada.categoria() != consulta.categoria() || entrada.consumo() != consulta.consumo()
+                || entrada.detalhado() != detalhado) {
+            throw new BusinessException(TipoErroNegocio.ENTRADA_INVALIDA,
+                    "Chave de idempotência já usada em outra requisição: " + request.chaveIdempotencia());
+        }
+        return entrada.resposta();
+    }
+
+    /** Completa o futuro publicado; uma falha o remove do cache, e o próximo reenvio tenta de novo. */
+    private void resolver(CompletableFuture<Entrada> futura, Chave chave, CalculoConsulta consulta, boolean detalhado) {
+        try {
+            futura.complete(buscarLancamento(chave, detalhado)
+                    .orElseGet(() -> new Entrada(consulta.categoria(), consulta.consumo(), detalhado,
+                            consulta.calcular(chave.valor()))));
+        } catch (RuntimeException e) {
+            futura.completeExceptionally(e);
+        }
+    }
+
+    private static Entrada aguardar(CompletableFuture<Entrada> futura) {
+        try {
+            return futura.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+
+    private Optional<Entrada> buscarLancamento(Chave chave, boolean detalhado) {
+        if (!consultarLancamentos) {
+            return Optional.empty();
+        }
+        return lancamentos.buscarPorChave(chave.tabelaId(), chave.valor(), Instant.now().minus(janela))
+                .map(gravada -> {
+                    recuperadas.increment();
+                    CalculoResponse resposta = detalhado ? gravada : new CalculoResponse(
+                            gravada.categoria(), gravada.consumoTotal(), gravada.valorTotal(), null);
+                    return new Entrada(CategoriaConsumidor.valueOf(gravada.categoria()), gravada.consumoTotal(),
+                            detalhado, resposta);
+                });
+    }
+
+    /**
+     * @param tabelaId id da tabela que resolveu a requisição
+     */
+    private record Chave(Long tabelaId, String valor) {}
+
+    /** Resposta guardada e o que a requisição original pediu, para recusar a chave em outra leitura. */
+    private record Entrada(CategoriaConsumidor categoria, int consumo, boolean detalhado, CalculoResponse resposta) {}
+}
@@ -0,0 +1,381 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.dto.CalculoResponse;
+import com.desafio_tecnico.tarifa_agua.dto.DetalhamentoResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registro de cada cálculo em {@code lancamento_calculo}. A requisição só enfileira o lançamento; uma
+ * thread própria grava a fila em lotes JDBC. O detalhamento é refeito nessa thread a partir da
+ * {@link CategoriaCompilada}, que é imutável, para que o cálculo em modo resumo continue sem montá-lo.
+ * <p>
+ * Lotes que falham por erro transitório são tentados de novo sem perder linhas; com erro permanente,
+ * só as linhas recusadas pelo banco são descartadas.
+ */
+@Slf4j
+@Component
+public class LancamentosCalculo implements SmartLifecycle {
+
+    private static final String INSERT = """
+            INSERT INTO lancamento_calculo (registrado_em, tabela_id, categoria, consumo, valor_total, detalhamento,
+                                            chave_idempotencia)
+            VALUES (?, ?, ?, ?, ?, ?::jsonb, ?)
+            """;
+
+    private static final String SELECT_POR_CHAVE = """
+            SELECT categoria, consumo, valor_total, detalhamento
+            FROM lancamento_calculo
+            WHERE chave_idempotencia = ? AND tabela_id = ? AND registrado_em >= ?
+            ORDER BY id DESC
+            LIMIT 1
+            """;
+
+    private static final long ESPERA_NOVA_TENTATIVA_MS = 1_000;
+
+    public enum PoliticaFilaCheia {
+        /** Com o banco fora do ar, as requisições de cálculo também param. */
+        BLOQUEAR,
+        DESCARTAR
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectWriter escritorDetalhamento;
+    private final ObjectReader leitorDetalhamento;
+    private final boolean habilitado;
+    private final boolean registrarLotes;
+    private final BlockingQueue<Lancamento> fila;
+    private final int tamanhoLote;
+    private final Duration intervalo;
+    private final PoliticaFilaCheia politica;
+    private final boolean drenarAoEncerrar;
+    private final Duration esperaEncerramento;
+
+    private final Counter gravados;
+    private final Counter descartados;
+    private final Counter falhas;
+    private final Counter rejeitados;
+
+    private volatile boolean executando;
+    private Thread gravacao;
+
+    /**
+     * @param capacidade lançamentos aguardando gravação antes de aplicar a política
+     * @param intervalo  quanto a gravação espera para completar um lote
+     */
+    public LancamentosCalculo(JdbcTemplate jdbcTemplate,
+                              ObjectMapper objectMapper,
+                              MeterRegistry registry,
+                              @Value("${tarifa.lancamentos.habilitado:true}") boolean habilitado,
+                              @Value("${tarifa.lancamentos.registrar-lotes:true}") boolean registrarLotes,
+                              @Value("${tarifa.lancamentos.capacidade:100000}") int capacidade,
+                              @Value("${tarifa.lancamentos.tamanho-lote:1000}") int tamanhoLote,
+                              @Value("${tarifa.lancamentos.intervalo:200ms}") Duration intervalo,
+                              @Value("${tarifa.lancamentos.politica-fila-cheia:BLOQUEAR}") PoliticaFilaCheia politica,
+                              @Value("${tarifa.lancamentos.drenar-ao-encerrar:true}") boolean drenarAoEncerrar,
+                              @Value("${tarifa.lancamentos.espera-encerramento:30s}") Duration esperaEncerramento) {
+        this.jdbcTemplate = jdbcTemplate;
+        JavaType tipoDetalhamento = objectMapper.getTypeFactory().constructCollectionType(List.class, DetalhamentoResponse.class);
+        this.escritorDetalhamento = objectMapper.writerFor(tipoDetalhamento);
+        this.leitorDetalhamento = objectMapper.readerFor(tipoDetalhamento);
+        this.habilitado = habilitado;
+        this.registrarLotes = registrarLotes;
+        this.fila = new ArrayBlockingQueue<>(Math.max(capacidade, 1));
+        this.tamanhoLote = tamanhoLote;
+        this.intervalo = intervalo;
+        this.politica = politica;
+        this.drenarAoEncerrar = drenarAoEncerrar;
+        this.esperaEncerramento = esperaEncerramento;
+
+        Gauge.builder("tarifa.lancamentos.pendentes", fila, BlockingQueue::size)
+                .description("Lançamentos de cálculo aguardando gravação")
+                .register(registry);
+        gravados = Counter.builder("tarifa.lancamentos.gravados")
+                .description("Lançamentos de cálculo gravados no banco")
+                .register(registry);
+        descartados = Counter.builder("tarifa.lancamentos.descartados")
+                .description("Lançamentos de cálculo descartados com a fila cheia ou no encerramento")
+                .register(registry);
+        falhas = Counter.builder("tarifa.lancamentos.falhas")
+                .description("Lotes de lançamentos que falharam por erro transitório e serão tentados de novo")
+                .register(registry);
+        rejeitados = Counter.builder("tarifa.lancamentos.rejeitados")
+                .description("Lançamentos recusados pelo banco por erro permanente e descartados")
+                .register(registry);
+    }
+
+    /** A espera com a fila cheia passa por {@link ForkJoinPool#managedBlock}, que compensa o worker bloqueado. */
+    void registrar(Long tabelaId, CategoriaCompilada categoria, int consumo, BigDecimal valorTotal,
+                   String chaveIdempotencia) {
+        if (!habilitado) {
+            return;
+        }
+        Lancamento lancamento = new Lancamento(System.currentTimeMillis(), tabelaId, categoria, consumo, valorTotal,
+                chaveIdempotencia);
+        if (fila.offer(lancamento)) {
+            return;
+        }
+        if (politica == PoliticaFilaCheia.BLOQUEAR && executando) {
+            EsperaFila espera = new EsperaFila(lancamento);
+            try {
+                ForkJoinPool.managedBlock(espera);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (espera.enfileirado) {
+                return;
+            }
+        }
+        descartados.increment();
+    }
+
+    void registrarItemLote(Long tabelaId, CategoriaCompilada categoria, int consumo, BigDecimal valorTotal) {
+        if (registrarLotes) {
+            registrar(tabelaId, categoria, consumo, valorTotal, null);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!habilitado) {
+            return;
+        }
+        executando = true;
+        gravacao = new Thread(this::gravar, "lancamentos-calculo");
+        gravacao.setDaemon(true);
+        gravacao.start();
+    }
+
+    @Override
+    public void stop() {
+        if (gravacao == null) {
+            return;
+        }
+        executando = false;
+        if (!drenarAoEncerrar) {
+            gravacao.interrupt();
+        }
+        try {
+            gravacao.join(esperaEncerramento.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (gravacao.isAlive()) {
+            gravacao.interrupt();
+            try {
+                gravacao.join(ESPERA_NOVA_TENTATIVA_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        int restantes = fila.size();
+        if (restantes > 0) {
+            fila.clear();
+            descartados.increment(restantes);
+            log.warn("{} lançamentos de cálculo não gravados no encerramento", restantes);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return executando;
+    }
+
+    /** Para depois do servidor web, para gravar os cálculos das últimas requisições. */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    /** Lançamentos ainda na fila não aparecem. */
+    Optional<CalculoResponse> buscarPorChave(Long tabelaId, String chaveIdempotencia, Instant desde) {
+        return jdbcTemplate.query(SELECT_POR_CHAVE, (resultado, linha) -> new CalculoResponse(
+                resultado.getString("categoria"),
+                resultado.getInt("consumo"),
+                resultado.getBigDecimal("valor_total"),
+                lerDetalhamento(resultado.getString("detalhamento"))
+        ), chaveIdempotencia, tabelaId, Timestamp.from(desde)).stream().findFirst();
+    }
+
+    int pendentes() {
+        return fila.size();
+    }
+
+    private void gravar() {
+        List<Lancamento> lote = new ArrayList<>(tamanhoLote);
+        try {
+            while (executando || (drenarAoEncerrar && (!lote.isEmpty() || !fila.isEmpty()))) {
+                if (lote.isEmpty()) {
+                    preencher(lote);
+                }
+                if (!lote.isEmpty()) {
+                    gravarLote(lote);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!lote.isEmpty()) {
+            descartados.increment(lote.size());
+        }
+    }
+
+    /** Espera até {@code intervalo} para completar o lote: tráfego baixo não vira um INSERT por cálculo. */
+    private void preencher(List<Lancamento> lote) throws InterruptedException {
+        Lancamento primeiro = fila.poll(intervalo.toMillis(), TimeUnit.MILLISECONDS);
+        if (primeiro == null) {
+            return;
+        }
+        lote.add(primeiro);
+        long limite = System.nanoTime() + intervalo.toNanos();
+        while (lote.size() < tamanhoLote) {
+            fila.drainTo(lote, tamanhoLote - lote.size());
+            long restante = limite - System.nanoTime();
+            if (lote.size() >= tamanhoLote || restante <= 0 || !executando) {
+                return;
+            }
+            Lancamento proximo = fila.poll(restante, TimeUnit.NANOSECONDS);
+            if (proximo == null) {
+                return;
+            }
+            lote.add(proximo);
+        }
+    }
+
+    private void gravarLote(List<Lancamento> lote) throws InterruptedException {
+        try {
+            inserir(lote);
+            gravados.increment(lote.size());
+            lote.clear();
+        } catch (RuntimeException e) {
+            if (transitorio(e)) {
+                aguardarNovaTentativa(lote, e);
+            } else {
+                gravarLinhaALinha(lote);
+            }
+        }
+    }
+
+    /** Se o banco cair no meio, o restante fica no lote para a próxima tentativa. */
+    private void gravarLinhaALinha(List<Lancamento> lote) throws InterruptedException {
+        Iterator<Lancamento> iterador = lote.iterator();
+        while (iterador.hasNext()) {
+            Lancamento lancamento = iterador.next();
+            try {
+                inserir(List.of(lancamento));
+                gravados.increment();
+            } catch (RuntimeException e) {
+                if (transitorio(e)) {
+                    aguardarNovaTentativa(lote, e);
+                    return;
+                }
+                rejeitados.increment();
+                log.error("Lançamento de cálculo recusado pelo banco e descartado: tabela={}, categoria={}, "
+                                + "consumo={}, valorTotal={}, chave={}: {}",
+                        lancamento.tabelaId(), lancamento.categoria().getCategoria(), lancamento.consumo(),
+                        lancamento.valorTotal(), lancamento.chaveIdempotencia(), e.getMessage());
+            }
+            iterador.remove();
+        }
+    }
+
+    private void inserir(List<Lancamento> lote) {
+        jdbcTemplate.batchUpdate(INSERT, lote, lote.size(), (statement, lancamento) -> {
+            statement.setTimestamp(1, new Timestamp(lancamento.registradoEm()));
+            statement.setLong(2, lancamento.tabelaId());
+            statement.setString(3, lancamento.categoria().getCategoria().name());
+            statement.setInt(4, lancamento.consumo());
+            statement.setBigDecimal(5, lancamento.valorTotal());
+            statement.setString(6, detalhamento(lancamento));
+            statement.setString(7, lancamento.chaveIdempotencia());
+        });
+    }
+
+    private void aguardarNovaTentativa(List<Lancamento> lote, RuntimeException e) throws InterruptedException {
+        falhas.increment();
+        log.warn("Falha ao gravar {} lançamentos de cálculo; nova tentativa em {} ms: {}",
+                lote.size(), ESPERA_NOVA_TENTATIVA_MS, e.getMessage());
+        Thread.sleep(ESPERA_NOVA_TENTATIVA_MS);
+    }
+
+    /** Conexão perdida, timeout, deadlock: erros que podem passar sozinhos. */
+    private static boolean transitorio(RuntimeException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof RecoverableDataAccessException;
+    }
+
+    private String detalhamento(Lancamento lancamento) {
+        List<DetalhamentoResponse> detalhamento = lancamento.categoria().calcular(lancamento.consumo(), true).detalhamento();
+        try {
+            return escritorDetalhamento.writeValueAsString(detalhamento);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<DetalhamentoResponse> lerDetalhamento(String json) {
+        try {
+            return leitorDetalhamento.readValue(json);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Espera por espaço na fila; desiste quando a gravação para. */
+    private final class EsperaFila implements ForkJoinPool.ManagedBlocker {
+
+        private final Lancamento lancamento;
+        private boolean enfileirado;
+
+        EsperaFila(Lancamento lancamento) {
+            this.lancamento = lancamento;
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            while (!isReleasable()) {
+                enfileirado = fila.offer(lancamento, ESPERA_NOVA_TENTATIVA_MS, TimeUnit.MILLISECONDS);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            if (!enfileirado && executando) {
+                enfileirado = fila.offer(lancamento);
+            }
+            return enfileirado || !executando;
+        }
+    }
+
+    record Lancamento(long registradoEm, Long tabelaId, CategoriaCompilada categoria, int consumo,
+                      BigDecimal valorTotal, String chaveIdempotencia) {}
+}
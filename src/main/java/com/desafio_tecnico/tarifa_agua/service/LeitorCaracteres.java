@@ -0,0 +1,57 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/** Caracteres de uma entrada com {@code \r\n} e {@code \r} convertidos em {@code \n}. */
+final class LeitorCaracteres {
+
+    private final Reader entrada;
+    private final char[] buffer = new char[8 * 1024];
+    private int posicao;
+    private int lidos;
+    private boolean depoisDeCr;
+
+    LeitorCaracteres(Reader entrada) {
+        this.entrada = entrada;
+    }
+
+    /** Próximo caractere, ou -1 no fim da entrada. */
+    int proximo() throws IOException {
+        while (true) {
+            if (posicao == lidos) {
+                lidos = Math.max(entrada.read(buffer, 0, buffer.length), 0);
+                posicao = 0;
+                if (lidos == 0) return -1;
+            }
+            char c = buffer[posicao++];
+            if (c == '\n' && depoisDeCr) {
+                depoisDeCr = false;
+                continue;
+            }
+            depoisDeCr = c == '\r';
+            return depoisDeCr ? '\n' : c;
+        }
+    }
+
+    /**
+     * Lê até o próximo fim de linha guardando em {@code destino} no máximo {@code maximo} caracteres;
+     * o restante da linha é descartado. Devolve o tamanho da linha, ou -1 no fim da entrada.
+     */
+    long linha(StringBuilder destino, int maximo) throws IOException {
+        destino.setLength(0);
+        long tamanho = 0;
+        int c;
+        while ((c = proximo()) != -1 && c != '\n') {
+            if (++tamanho <= maximo) destino.append((char) c);
+        }
+        return c == -1 && tamanho == 0 ? -1 : tamanho;
+    }
+
+    static boolean emBranco(CharSequence texto) {
+        for (int i = 0; i < texto.length(); i++) {
+            if (!Character.isWhitespace(texto.charAt(i))) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,197 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.dto.LeiturasConsumoDTO;
+import com.desafio_tecnico.tarifa_agua.dto.SimulacaoCategoriaResponse;
+import com.desafio_tecnico.tarifa_agua.dto.SimulacaoTarifaRequest;
+import com.desafio_tecnico.tarifa_agua.dto.SimulacaoTarifaResponse;
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import com.desafio_tecnico.tarifa_agua.exception.BusinessException;
+import com.desafio_tecnico.tarifa_agua.exception.TipoErroNegocio;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Simula quanto uma tabela proposta faturaria, comparada com a tabela ativa, sobre um histograma de
+ * consumo. A tabela proposta passa pelas mesmas validações da criação, é compilada em memória e
+ * nunca é gravada.
+ * <p>
+ * O custo depende do número de faixas do histograma, não do número de leituras: cada combinação de
+ * categoria e consumo é calculada uma vez em cada tabela e multiplicada pela quantidade de leituras.
+ * O histograma vem na requisição ou do {@link HistogramaConsumo} dos meses de um período. O segundo
+ * conta cálculos, não contas faturadas: a mesma leitura calculada duas vezes, sem chave de
+ * idempotência, conta duas vezes. Leituras a partir de {@code tarifa.histograma.limite-consumo} estão
+ * agrupadas em uma só posição e são valoradas no limite, então a receita delas é um piso.
+ */
+@Service
+@RequiredArgsConstructor
+public class SimulacaoTarifaService {
+
+    private static final BigDecimal CEM = BigDecimal.valueOf(100);
+
+    private final TabelaTarifariaService tabelaService;
+    private final TarifaAtivaHolder tarifaAtiva;
+    private final HistogramaConsumo histogramaConsumo;
+
+    public SimulacaoTarifaResponse simular(SimulacaoTarifaRequest request) {
+        TarifaCompilada proposta = TarifaCompilada.compilar(tabelaService.montarTabela(request.tabela()));
+        validarFonte(request);
+        TarifaCompilada atual = tarifaAtiva.obter();
+
+        CategoriaConsumidor[] categorias = CategoriaConsumidor.values();
+        Acumulado[] acumulados = new Acumulado[categorias.length];
+        for (CategoriaConsumidor categoria : categorias) {
+            acumulados[categoria.ordinal()] = new Acumulado(atual.categoria(categoria), proposta.categoria(categoria));
+        }
+        if (request.histograma() != null) {
+            for (LeiturasConsumoDTO faixa : request.histograma()) {
+                acumulados[converterCategoria(faixa.categoria()).ordinal()].somar(faixa.consumo(), faixa.leituras());
+            }
+        } else {
+            somarPeriodo(acumulados, request.inicio(), request.fim());
+        }
+
+        List<SimulacaoCategoriaResponse> porCategoria = new ArrayList<>(categorias.length);
+        long leituras = 0;
+        long acimaDoLimite = 0;
+        BigDecimal receitaAtual = BigDecimal.ZERO;
+        BigDecimal receitaProposta = BigDecimal.ZERO;
+        for (CategoriaConsumidor categoria : categorias) {
+            Acumulado acumulado = acumulados[categoria.ordinal()];
+            BigDecimal atualCategoria = acumulado.atual.total();
+            BigDecimal propostaCategoria = acumulado.proposta.total();
+            porCategoria.add(new SimulacaoCategoriaResponse(
+                    categoria.name(),
+                    acumulado.leituras,
+                    acumulado.acimaDoLimite,
+                    acumulado.consumoTotal,
+                    atualCategoria,
+                    propostaCategoria,
+                    propostaCategoria.subtract(atualCategoria),
+                    variacaoPercentual(atualCategoria, propostaCategoria)
+            ));
+            leituras += acumulado.leituras;
+            acimaDoLimite += acumulado.acimaDoLimite;
+            receitaAtual = receitaAtual.add(atualCategoria);
+            receitaProposta = receitaProposta.add(propostaCategoria);
+        }
+
+        return new SimulacaoTarifaResponse(
+                atual.getTabelaId(),
+                leituras,
+                acimaDoLimite,
+                receitaAtual,
+                receitaProposta,
+                receitaProposta.subtract(receitaAtual),
+                variacaoPercentual(receitaAtual, receitaProposta),
+                porCategoria
+        );
+    }
+
+    private static void validarFonte(SimulacaoTarifaRequest request) {
+        boolean temPeriodo = request.inicio() != null || request.fim() != null;
+        if (request.histograma() != null && temPeriodo) {
+            throw new BusinessException(TipoErroNegocio.ENTRADA_INVALIDA,
+                    "Simulação aceita o histograma de consumo ou o período do histograma de consumo, não os dois.");
+        }
+        if (request.histograma() == null && !temPeriodo) {
+            throw new BusinessException(TipoErroNegocio.ENTRADA_INVALIDA,
+                    "Simulação exige o histograma de consumo ou o período do histograma de consumo.");
+        }
+        if (request.histograma() != null) {
+            return;
+        }
+        if (request.inicio() == null || request.fim() == null || request.inicio().isAfter(request.fim())
+                || request.inicio().plusMonths(HistogramaConsumo.MESES_MAXIMOS_CONSULTA).isBefore(request.fim())) {
+            throw new BusinessException(TipoErroNegocio.ENTRADA_INVALIDA,
+                    "Simulação exige início e fim do período, com o início até o fim e até "
+                    + HistogramaConsumo.MESES_MAXIMOS_CONSULTA + " meses.");
+        }
+    }
+
+    /**
+     * Soma as contagens de cada m³ nos meses de {@code inicio} a {@code fim}. A última posição tem as
+     * leituras a partir do limite de consumo, que entram com o consumo igual ao limite.
+     */
+    private void somarPeriodo(Acumulado[] acumulados, YearMonth inicio, YearMonth fim) {
+        for (CategoriaConsumidor categoria : CategoriaConsumidor.values()) {
+            Acumulado acumulado = acumulados[categoria.ordinal()];
+            long[] contagens = histogramaConsumo.contagens(categoria, inicio, fim);
+            for (int consumo = 0; consumo < contagens.length; consumo++) {
+                if (contagens[consumo] > 0) {
+                    acumulado.somar(consumo, contagens[consumo]);
+                }
+            }
+            acumulado.acimaDoLimite = contagens[contagens.length - 1];
+        }
+    }
+
+    private static BigDecimal variacaoPercentual(BigDecimal atual, BigDecimal proposta) {
+        if (atual.signum() == 0) {
+            return null;
+        }
+        return proposta.subtract(atual).multiply(CEM).divide(atual, 2, RoundingMode.HALF_UP);
+    }
+
+    private static CategoriaConsumidor converterCategoria(String categoria) {
+        try {
+            return CategoriaConsumidor.valueOf(categoria.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new BusinessException(TipoErroNegocio.CATEGORIA_INVALIDA, "Categoria inválida: " + categoria);
+        }
+    }
+
+    /** Leituras e receita de uma categoria nas duas tabelas. */
+    private static final class Acumulado {
+
+        private final Receita atual;
+        private final Receita proposta;
+        private long leituras;
+        private long acimaDoLimite;
+        private long consumoTotal;
+
+        Acumulado(CategoriaCompilada atual, CategoriaCompilada proposta) {
+            this.atual = new Receita(atual);
+            this.proposta = new Receita(proposta);
+        }
+
+        void somar(int consumo, long quantidade) {
+            leituras = Math.addExact(leituras, quantidade);
+            consumoTotal = Math.addExact(consumoTotal, Math.multiplyExact((long) consumo, quantidade));
+            atual.somar(consumo, quantidade);
+            proposta.somar(consumo, quantidade);
+        }
+    }
+
+    /**
+     * Soma em centavos {@code long}, sem alocação; parcelas que não cabem em {@code long} (ou
+     * categorias que não são calculadas em centavos) vão para um {@link BigDecimal} à parte.
+     */
+    private static final class Receita {
+
+        private final CategoriaCompilada categoria;
+        private long centavos;
+        private BigDecimal excedente = BigDecimal.ZERO;
+
+        Receita(CategoriaCompilada categoria) {
+            this.categoria = categoria;
+        }
+
+        void somar(int consumo, long quantidade) {
+            try {
+                centavos = Math.addExact(centavos, Math.multiplyExact(categoria.valorTotalCentavos(consumo), quantidade));
+            } catch (ArithmeticException e) {
+                excedente = excedente.add(categoria.valorTotal(consumo).multiply(BigDecimal.valueOf(quantidade)));
+            }
+        }
+
+        BigDecimal total() {
+            return BigDecimal.valueOf(centavos, CategoriaCompilada.ESCALA_VALOR).add(excedente);
+        }
+    }
+}
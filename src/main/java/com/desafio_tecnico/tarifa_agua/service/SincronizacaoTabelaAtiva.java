@@ -0,0 +1,217 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.repository.TabelaTarifariaRepository;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Propaga entre instâncias as trocas de tabela ativa. Cada criação ou desativação envia um
+ * {@code NOTIFY} no canal {@value #CANAL} dentro da própria transação, então o PostgreSQL só o
+ * entrega depois do commit e o descarta em caso de rollback. Cada instância mantém uma conexão
+ * dedicada em {@code LISTEN} e, ao receber uma notificação de outra instância, recarrega a
+ * {@link TarifaAtivaHolder}, descarta o {@link TarifaHistoricaHolder} e regrava o snapshot local.
+ * <p>
+ * Notificações perdidas (conexão caída, instância reiniciando) são cobertas por uma verificação
+ * periódica do id da tabela ativa, em intervalo longo, e por uma recarga a cada reconexão.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "tarifa.sincronizacao.habilitada", havingValue = "true", matchIfMissing = true)
+public class SincronizacaoTabelaAtiva implements SmartLifecycle {
+
+    static final String CANAL = "tabela_tarifaria_ativa";
+
+    /** Quanto cada espera por notificações bloqueia antes de conferir se a escuta foi parada. */
+    private static final int ESPERA_NOTIFICACAO_MS = 500;
+
+    private final TarifaAtivaHolder tarifaAtiva;
+    private final TarifaHistoricaHolder tarifaHistorica;
+    private final TabelaTarifariaRepository tabelaRepo;
+    private final SnapshotTarifaService snapshot;
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSourceProperties dataSourceProperties;
+    private final EntityManagerFactory entityManagerFactory;
+    private final Duration esperaReconexao;
+
+    /** Identifica esta instância no payload, para ignorar as próprias notificações. */
+    private final String instancia = UUID.randomUUID().toString();
+
+    private volatile boolean executando;
+    private volatile boolean escutando;
+    private Thread escuta;
+
+    /**
+     * @param esperaReconexao intervalo entre tentativas de reabrir a conexão de escuta
+     */
+    public SincronizacaoTabelaAtiva(TarifaAtivaHolder tarifaAtiva,
+                                    TarifaHistoricaHolder tarifaHistorica,
+                                    TabelaTarifariaRepository tabelaRepo,
+                                    SnapshotTarifaService snapshot,
+                                    JdbcTemplate jdbcTemplate,
+                                    DataSourceProperties dataSourceProperties,
+                                    EntityManagerFactory entityManagerFactory,
+                                    @Value("${tarifa.sincronizacao.espera-reconexao:5s}") Duration esperaReconexao) {
+        this.tarifaAtiva = tarifaAtiva;
+        this.tarifaHistorica = tarifaHistorica;
+        this.tabelaRepo = tabelaRepo;
+        this.snapshot = snapshot;
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSourceProperties = dataSourceProperties;
+        this.entityManagerFactory = entityManagerFactory;
+        this.esperaReconexao = esperaReconexao;
+    }
+
+    /**
+     * Roda antes do commit, na conexão da transação que alterou a tabela. O payload é
+     * {@code instancia:tabelaId}, com {@code -} quando a tabela foi desativada.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void notificar(TabelaAtivaAlteradaEvent event) {
+        String tabela = event.tabelaAtiva() == null ? "-" : String.valueOf(event.tabelaAtiva().getId());
+        jdbcTemplate.query("SELECT pg_notify(?, ?)", (ResultSetExtractor<Void>) rs -> null,
+                CANAL, instancia + ":" + tabela);
+    }
+
+    /**
+     * Rede de segurança para notificações perdidas: compara o id da tabela ativa em memória com o
+     * do banco e recarrega se divergirem. Uma única consulta por id, independente do volume de
+     * cálculos. Se coincidirem, o snapshot local continua atual e tem a idade renovada.
+     */
+    @Scheduled(fixedDelayString = "${tarifa.sincronizacao.verificacao:30s}",
+            initialDelayString = "${tarifa.sincronizacao.verificacao:30s}")
+    public void verificar() {
+        TarifaAtivaHolder.Versao versao = tarifaAtiva.versaoPublicada();
+        if (versao == null) {
+            return;
+        }
+        Long emMemoria = versao.tarifa() == null ? null : versao.tarifa().getTabelaId();
+        Long noBanco = tabelaRepo.findIdAtiva().orElse(null);
+        if (!Objects.equals(emMemoria, noBanco)) {
+            log.warn("Tabela ativa em memória ({}) difere do banco ({}); recarregando", emMemoria, noBanco);
+            recarregar();
+        } else {
+            snapshot.confirmarArquivo(noBanco);
+        }
+    }
+
+    /** Se a conexão de escuta está aberta e em {@code LISTEN}. */
+    public boolean isEscutando() {
+        return escutando;
+    }
+
+    @Override
+    public void start() {
+        executando = true;
+        escuta = new Thread(this::escutar, "tabela-ativa-listen");
+        escuta.setDaemon(true);
+        escuta.start();
+    }
+
+    @Override
+    public void stop() {
+        executando = false;
+        if (escuta != null) {
+            escuta.interrupt();
+            try {
+                escuta.join(ESPERA_NOTIFICACAO_MS * 2L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return executando;
+    }
+
+    private void escutar() {
+        while (executando) {
+            try (Connection conexao = abrirConexao()) {
+                try (Statement statement = conexao.createStatement()) {
+                    statement.execute("LISTEN " + CANAL);
+                }
+                escutando = true;
+                log.info("Escutando trocas de tabela ativa no canal {} (instância {})", CANAL, instancia);
+                // Trocas feitas enquanto a conexão estava fechada não geraram notificação para esta instância
+                recarregar();
+
+                PGConnection pgConexao = conexao.unwrap(PGConnection.class);
+                while (executando) {
+                    PGNotification[] notificacoes = pgConexao.getNotifications(ESPERA_NOTIFICACAO_MS);
+                    if (notificacoes != null && deOutraInstancia(notificacoes)) {
+                        recarregar();
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (executando) {
+                    log.warn("Conexão de escuta do canal {} perdida; nova tentativa em {}", CANAL, esperaReconexao, e);
+                }
+            } finally {
+                escutando = false;
+            }
+            aguardarReconexao();
+        }
+    }
+
+    /** Várias notificações recebidas juntas resultam em uma única recarga. */
+    private boolean deOutraInstancia(PGNotification[] notificacoes) {
+        for (PGNotification notificacao : notificacoes) {
+            if (!notificacao.getParameter().startsWith(instancia + ":")) {
+                log.info("Troca de tabela ativa notificada por outra instância: {}", notificacao.getParameter());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A escrita feita por outra instância não passou pelo Hibernate daqui, então o cache de segundo
+     * nível e o de consultas podem estar desatualizados e são descartados antes da releitura. O
+     * snapshot local só é regravado em trocas desta instância, então é regravado aqui também.
+     */
+    private void recarregar() {
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+        tarifaAtiva.recarregar();
+        tarifaHistorica.invalidar();
+        snapshot.atualizarArquivo();
+    }
+
+    /** Conexão própria, fora do pool: fica aberta enquanto a aplicação roda. */
+    private Connection abrirConexao() throws SQLException {
+        return DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword());
+    }
+
+    private void aguardarReconexao() {
+        if (!executando) {
+            return;
+        }
+        try {
+            Thread.sleep(esperaReconexao.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.dto.TabelaTarifariaCriadaResponse;
+import com.desafio_tecnico.tarifa_agua.entity.TabelaTarifaria;
+import com.desafio_tecnico.tarifa_agua.exception.BusinessException;
+import com.desafio_tecnico.tarifa_agua.exception.TipoErroNegocio;
+import com.desafio_tecnico.tarifa_agua.repository.TabelaTarifariaRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Exportação e importação da tabela ativa no formato de {@link SnapshotTarifa}, e o arquivo de
+ * snapshot local usado na inicialização quando o banco demora a responder. Com
+ * {@code tarifa.snapshot.arquivo} configurado, o arquivo é regravado a cada troca de tabela ativa
+ * confirmada nesta instância, a cada recarga vinda de outra instância pela
+ * {@link SincronizacaoTabelaAtiva} e depois de cada carga inicial pelo banco.
+ * <p>
+ * A idade do arquivo é a da última vez em que seu conteúdo foi confirmado contra o banco: a gravação
+ * ou a verificação periódica que encontrou a mesma tabela ativa. Um arquivo mais velho que
+ * {@code tarifa.snapshot.idade-maxima} não é usado, porque pode ter perdido trocas feitas enquanto
+ * a instância esteve parada.
+ */
+@Slf4j
+@Service
+public class SnapshotTarifaService {
+
+    private final TabelaTarifariaRepository tabelaRepo;
+    private final TabelaTarifariaService tabelaService;
+    private final Path arquivo;
+    private final Duration idadeMaxima;
+
+    /** Id da tabela gravada no arquivo por esta instância; {@code null} antes da primeira gravação. */
+    private volatile Long tabelaGravada;
+
+    /**
+     * @param arquivo     caminho do snapshot local; vazio desliga o arquivo
+     * @param idadeMaxima idade a partir da qual o arquivo é ignorado; zero aceita qualquer idade
+     */
+    public SnapshotTarifaService(TabelaTarifariaRepository tabelaRepo,
+                                 TabelaTarifariaService tabelaService,
+                                 @Value("${tarifa.snapshot.arquivo:}") String arquivo,
+                                 @Value("${tarifa.snapshot.idade-maxima:1d}") Duration idadeMaxima) {
+        this.tabelaRepo = tabelaRepo;
+        this.tabelaService = tabelaService;
+        this.arquivo = arquivo.isBlank() ? null : Path.of(arquivo);
+        this.idadeMaxima = idadeMaxima;
+    }
+
+    @Transactional(readOnly = true)
+    public byte[] exportarAtiva() {
+        TabelaTarifaria ativa = tabelaRepo.findAtivaComRelacionamentos()
+                .orElseThrow(() -> new BusinessException(TipoErroNegocio.SEM_TABELA_VIGENTE,
+                        "Não existe tabela ativa."));
+        return SnapshotTarifa.escrever(ativa);
+    }
+
+    /**
+     * Cria uma nova tabela ativa com o nome, as categorias e as faixas do snapshot, com as mesmas
+     * validações e restrições da criação pela API.
+     */
+    public TabelaTarifariaCriadaResponse importar(byte[] dados) {
+        return tabelaService.criarTabela(SnapshotTarifa.ler(dados).tabela());
+    }
+
+    boolean arquivoConfigurado() {
+        return arquivo != null;
+    }
+
+    /**
+     * Tabela do arquivo local, validada como na criação e com o id e a data de vigência originais.
+     * Vazio quando o arquivo não está configurado, não existe, passou da idade máxima ou não passa
+     * na validação.
+     */
+    Optional<TabelaTarifaria> lerArquivo() {
+        if (arquivo == null || !Files.isRegularFile(arquivo)) {
+            return Optional.empty();
+        }
+        try {
+            Duration idade = Duration.between(Files.getLastModifiedTime(arquivo).toInstant(), Instant.now());
+            if (!idadeMaxima.isZero() && idade.compareTo(idadeMaxima) > 0) {
+                log.warn("Snapshot {} ignorado: confirmado há {}, acima de {}", arquivo, idade, idadeMaxima);
+                return Optional.empty();
+            }
+            SnapshotTarifa.Conteudo conteudo = SnapshotTarifa.ler(Files.readAllBytes(arquivo));
+            TabelaTarifaria tabela = tabelaService.montarTabela(conteudo.tabela());
+            tabela.setId(conteudo.tabelaId());
+            tabela.setDataVigencia(conteudo.dataVigencia());
+            return Optional.of(tabela);
+        } catch (IOException | BusinessException e) {
+            log.warn("Snapshot {} ignorado: {}", arquivo, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /** Regrava o arquivo local com a tabela ativa do banco; não faz nada sem arquivo configurado. */
+    @Transactional(readOnly = true)
+    public void atualizarArquivo() {
+        if (arquivo != null) {
+            gravarArquivo(tabelaRepo.findAtivaComRelacionamentos().orElse(null));
+        }
+    }
+
+    /**
+     * Renova a idade do arquivo quando a tabela ativa do banco é a mesma que esta instância gravou
+     * nele; um arquivo gravado por outra execução, ou cuja última gravação falhou, não é renovado.
+     */
+    public void confirmarArquivo(Long tabelaAtivaId) {
+        if (arquivo == null || tabelaAtivaId == null || !Objects.equals(tabelaAtivaId, tabelaGravada)) {
+            return;
+        }
+        try {
+            Files.setLastModifiedTime(arquivo, FileTime.from(Instant.now()));
+        } catch (IOException e) {
+            log.warn("Não foi possível renovar o snapshot em {}: {}", arquivo, e.getMessage());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onTabelaAtivaAlterada(TabelaAtivaAlteradaEvent event) {
+        if (arquivo != null) {
+            gravarArquivo(event.tabelaAtiva());
+        }
+    }
+
+    /**
+     * Grava em um arquivo temporário e move por cima do anterior, para que uma leitura nunca veja
+     * o snapshot pela metade. Sem tabela ativa, o arquivo é removido. Falhas só são registradas:
+     * a alteração já foi confirmada no banco, e o arquivo é regravado na próxima troca ou recarga.
+     */
+    private void gravarArquivo(TabelaTarifaria tabela) {
+        try {
+            tabelaGravada = null;
+            if (tabela == null) {
+                Files.deleteIfExists(arquivo);
+                return;
+            }
+            Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+            Files.write(temporario, SnapshotTarifa.escrever(tabela));
+            Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tabelaGravada = tabela.getId();
+            log.info("Snapshot da tabela {} gravado em {}", tabela.getId(), arquivo);
+        } catch (IOException e) {
+            log.error("Não foi possível gravar o snapshot em {}", arquivo, e);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.entity.TabelaTarifaria;
+
+/**
+ * Publicado quando a tabela ativa muda. {@code tabelaAtiva} é nula quando a tabela foi desativada
+ * e nenhuma outra ficou no lugar.
+ */
+public record TabelaAtivaAlteradaEvent(
+        TabelaTarifaria tabelaAtiva
+) {}
@@ -5,6 +5,7 @@ import com.desafio_tecnico.tarifa_agua.dto.CategoriaResponse;
 import com.desafio_tecnico.tarifa_agua.dto.FaixaDTO;
 import com.desafio_tecnico.tarifa_agua.dto.FaixaResponse;
 import com.desafio_tecnico.tarifa_agua.dto.TabelaTarifariaCriadaResponse;
+import com.desafio_tecnico.tarifa_agua.dto.TabelaTarifariaCursorResponse;
 import com.desafio_tecnico.tarifa_agua.dto.TabelaTarifariaExclusaoResponse;
 import com.desafio_tecnico.tarifa_agua.dto.TabelaTarifariaRequest;
 import com.desafio_tecnico.tarifa_agua.dto.TabelaTarifariaResponse;
@@ -13,9 +14,9 @@ import com.desafio_tecnico.tarifa_agua.entity.FaixaConsumo;
 import com.desafio_tecnico.tarifa_agua.entity.TabelaTarifaria;
 import com.desafio_tecnico.tarifa_agua.entity.TarifaCategoria;
 import com.desafio_tecnico.tarifa_agua.exception.BusinessException;
-import com.desafio_tecnico.tarifa_agua.repository.FaixaConsumoRepository;
+import com.desafio_tecnico.tarifa_agua.exception.TipoErroNegocio;
 import com.desafio_tecnico.tarifa_agua.repository.TabelaTarifariaRepository;
-import com.desafio_tecnico.tarifa_agua.repository.TarifaCategoriaRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.transaction.annotation.Transactional;
@@ -24,7 +25,13 @@ import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,68 +42,81 @@ import java.util.Set;
 @RequiredArgsConstructor
 public class TabelaTarifariaService {
 
+    static final int TAMANHO_MAXIMO_HISTORICO = 100;
+
     private final TabelaTarifariaRepository tabelaRepo;
-    private final TarifaCategoriaRepository tarifaCatRepo;
-    private final FaixaConsumoRepository faixaRepo;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Clock relogio;
 
     @Transactional
     public TabelaTarifariaCriadaResponse criarTabela(TabelaTarifariaRequest request) {
         Optional<TabelaTarifaria> tabelaAtiva = tabelaRepo.findFirstByAtivaTrue();
 
         if (tabelaAtiva.isPresent()) {
-            throw new BusinessException(
+            throw new BusinessException(TipoErroNegocio.TABELA,
                     "Já existe uma tabela ativa com id: " +
                             tabelaAtiva.get().getId() +
                             ". Desative-a antes de criar uma nova."
             );
         }
 
-        Map<CategoriaConsumidor, CategoriaDTO> categoriaMap = validarCategoriasObrigatorias(request);
-
-        for (CategoriaDTO cat : categoriaMap.values()) {
-            validarFaixas(cat.faixas());
-        }
+        TabelaTarifaria tabela = montarTabela(request);
 
-        TabelaTarifaria tabela = new TabelaTarifaria();
-        tabela.setNome(request.nome());
+        // Categorias e faixas são persistidas em cascata. Com ids por sequence, o Hibernate
+        // agrupa os INSERTs em lotes (hibernate.jdbc.batch_size) no flush.
         try {
             tabelaRepo.save(tabela);
             tabelaRepo.flush();
         } catch (DataIntegrityViolationException e) {
-            throw new BusinessException(
+            throw new BusinessException(TipoErroNegocio.TABELA,
                     "Não foi possível criar a tabela: já existe uma tabela ativa."
             );
         }
 
-        for (Map.Entry<CategoriaConsumidor, CategoriaDTO> entry : categoriaMap.entrySet()) {
-            CategoriaConsumidor categoriaEnum = entry.getKey();
-            CategoriaDTO cat = entry.getValue();
+        eventPublisher.publishEvent(new TabelaAtivaAlteradaEvent(tabela));
+
+        return new TabelaTarifariaCriadaResponse(
+                tabela.getId(),
+                tabela.getDataVigencia(),
+                "Tabela criada com sucesso"
+        );
+    }
+
+    /**
+     * Valida a requisição e monta a tabela com categorias e faixas, ainda sem id nem data de
+     * vigência. Também usada para validar tabelas lidas de snapshot.
+     */
+    TabelaTarifaria montarTabela(TabelaTarifariaRequest request) {
+        Map<CategoriaConsumidor, CategoriaDTO> categoriaMap = validarCategoriasObrigatorias(request);
+
+        for (CategoriaDTO cat : categoriaMap.values()) {
+            validarFaixas(cat.faixas());
+        }
 
+        TabelaTarifaria tabela = new TabelaTarifaria();
+        tabela.setNome(request.nome());
+
+        for (Map.Entry<CategoriaConsumidor, CategoriaDTO> entry : categoriaMap.entrySet()) {
             TarifaCategoria tarifaCat = new TarifaCategoria();
             tarifaCat.setTabelaTarifaria(tabela);
-            tarifaCat.setCategoria(categoriaEnum);
-            tarifaCatRepo.save(tarifaCat);
+            tarifaCat.setCategoria(entry.getKey());
+            tabela.getCategorias().add(tarifaCat);
 
-            for (FaixaDTO faixa : cat.faixas()) {
+            for (FaixaDTO faixa : entry.getValue().faixas()) {
                 FaixaConsumo fc = new FaixaConsumo();
                 fc.setTarifaCategoria(tarifaCat);
                 fc.setInicio(faixa.inicio());
                 fc.setFim(faixa.fim());
                 fc.setValorUnitario(faixa.valorUnitario());
-                faixaRepo.save(fc);
+                tarifaCat.getFaixas().add(fc);
             }
         }
-
-        return new TabelaTarifariaCriadaResponse(
-                tabela.getId(),
-                tabela.getDataVigencia(),
-                "Tabela criada com sucesso"
-        );
+        return tabela;
     }
 
-    private void validarFaixas(List<FaixaDTO> faixas) {
+    void validarFaixas(List<FaixaDTO> faixas) {
         if (faixas == null || faixas.isEmpty()) {
-            throw new BusinessException("Categoria deve possuir ao menos uma faixa.");
+            throw new BusinessException(TipoErroNegocio.FAIXA_INVALIDA, "Categoria deve possuir ao menos uma faixa.");
         }
 
         List<FaixaDTO> ordenadas = faixas.stream()
@@ -106,11 +126,11 @@ public class TabelaTarifariaService {
         FaixaDTO primeira = ordenadas.get(0);
 
         if (primeira.inicio() == null) {
-            throw new BusinessException("Faixa inicial não pode ser nula.");
+            throw new BusinessException(TipoErroNegocio.FAIXA_INVALIDA, "Faixa inicial não pode ser nula.");
         }
 
         if (primeira.inicio() != 0) {
-            throw new BusinessException("As faixas devem iniciar em 0.");
+            throw new BusinessException(TipoErroNegocio.FAIXA_INVALIDA, "As faixas devem iniciar em 0.");
         }
 
         for (int i = 0; i < ordenadas.size(); i++) {
@@ -118,39 +138,42 @@ public class TabelaTarifariaService {
             FaixaDTO atual = ordenadas.get(i);
 
             if (atual.inicio() == null)
-                throw new BusinessException("Início da faixa não pode ser nulo.");
+                throw new BusinessException(TipoErroNegocio.FAIXA_INVALIDA, "Início da faixa não pode ser nulo.");
 
             if (atual.valorUnitario() == null)
-                throw new BusinessException("Valor unitário não pode ser nulo.");
+                throw new BusinessException(TipoErroNegocio.FAIXA_INVALIDA, "Valor unitário não pode ser nulo.");
 
             if (atual.valorUnitario().compareTo(BigDecimal.ZERO) < 0)
-                throw new BusinessException("Valor unitário não pode ser negativo.");
+                throw new BusinessException(TipoErroNegocio.FAIXA_INVALIDA, "Valor unitário não pode ser negativo.");
 
             if (atual.fim() != null && atual.fim() < atual.inicio())
-                throw new BusinessException("Fim da faixa não pode ser menor que o início.");
+                throw new BusinessException(TipoErroNegocio.FAIXA_INVALIDA,
+                        "Fim da faixa não pode ser menor que o início.");
 
             if (i < ordenadas.size() - 1) {
 
                 FaixaDTO proxima = ordenadas.get(i + 1);
 
                 if (atual.fim() == null)
-                    throw new BusinessException("Somente a última faixa pode ter fim nulo.");
+                    throw new BusinessException(TipoErroNegocio.FAIXA_INVALIDA,
+                            "Somente a última faixa pode ter fim nulo.");
 
                 if (proxima.inicio() == null)
-                    throw new BusinessException("Início da próxima faixa não pode ser nulo.");
+                    throw new BusinessException(TipoErroNegocio.FAIXA_INVALIDA,
+                            "Início da próxima faixa não pode ser nulo.");
 
                 if (atual.fim() >= proxima.inicio())
-                    throw new BusinessException("Faixas possuem sobreposição.");
+                    throw new BusinessException(TipoErroNegocio.FAIXA_INVALIDA, "Faixas possuem sobreposição.");
 
                 if (atual.fim() + 1 != proxima.inicio())
-                    throw new BusinessException("Existem lacunas entre as faixas.");
+                    throw new BusinessException(TipoErroNegocio.FAIXA_INVALIDA, "Existem lacunas entre as faixas.");
             }
         }
 
         FaixaDTO ultima = ordenadas.get(ordenadas.size() - 1);
 
         if (ultima.fim() != null) {
-            throw new BusinessException(
+            throw new BusinessException(TipoErroNegocio.FAIXA_INVALIDA,
                     "A última faixa deve ter fim nulo para cobrir consumo ilimitado."
             );
         }
@@ -171,24 +194,26 @@ public class TabelaTarifariaService {
             try {
                 categoriaEnum = CategoriaConsumidor.valueOf(catDTO.categoria().toUpperCase());
             } catch (IllegalArgumentException e) {
-                throw new BusinessException("Categoria inválida: " + catDTO.categoria());
+                throw new BusinessException(TipoErroNegocio.CATEGORIA_INVALIDA,
+                        "Categoria inválida: " + catDTO.categoria());
             }
 
             if (categoriaMap.containsKey(categoriaEnum)) {
-                throw new BusinessException("Não é permitido duplicar categorias na tabela.");
+                throw new BusinessException(TipoErroNegocio.CATEGORIA_INVALIDA,
+                        "Não é permitido duplicar categorias na tabela.");
             }
 
             categoriaMap.put(categoriaEnum, catDTO);
         }
 
         if (!categoriaMap.keySet().containsAll(obrigatorias)) {
-            throw new BusinessException(
+            throw new BusinessException(TipoErroNegocio.CATEGORIA_INVALIDA,
                     "Tabela deve conter todas as categorias obrigatórias: " + obrigatorias
             );
         }
 
         if (categoriaMap.size() != obrigatorias.size()) {
-            throw new BusinessException(
+            throw new BusinessException(TipoErroNegocio.CATEGORIA_INVALIDA,
                     "Tabela deve conter apenas as categorias obrigatórias: " + obrigatorias
             );
         }
@@ -213,6 +238,7 @@ public class TabelaTarifariaService {
                 tabela.getNome(),
                 tabela.getDataVigencia(),
                 tabela.isAtiva(),
+                tabela.getDataDesativacao(),
                 categorias
         );
     }
@@ -220,13 +246,15 @@ public class TabelaTarifariaService {
     @Transactional
     public TabelaTarifariaExclusaoResponse excluir(Long id) {
         TabelaTarifaria tabela = tabelaRepo.findById(id)
-                .orElseThrow(() -> new BusinessException("Tabela não encontrada"));
+                .orElseThrow(() -> new BusinessException(TipoErroNegocio.TABELA, "Tabela não encontrada"));
 
         if (!tabela.isAtiva()) {
-            throw new BusinessException("Tabela já está inativa.");
+            throw new BusinessException(TipoErroNegocio.TABELA, "Tabela já está inativa.");
         }
         tabela.setAtiva(false);
+        tabela.setDataDesativacao(LocalDateTime.now(relogio));
         tabelaRepo.save(tabela);
+        eventPublisher.publishEvent(new TabelaAtivaAlteradaEvent(null));
         return new TabelaTarifariaExclusaoResponse(
                 tabela.getId(),
                 tabela.isAtiva(),
@@ -236,6 +264,81 @@ public class TabelaTarifariaService {
 
     @Transactional(readOnly = true)
     public Page<TabelaTarifariaResponse> listar(Pageable pageable) {
-        return tabelaRepo.findAll(pageable).map(this::toResponse);
+        // Paginar com fetch join de coleções obriga o Hibernate a paginar em memória. Primeiro
+        // pagina só os ids no banco; depois carrega categorias e faixas apenas dessa página.
+        Page<Long> ids = tabelaRepo.findIds(pageable);
+
+        Map<Long, TabelaTarifaria> tabelas = new HashMap<>();
+        if (ids.hasContent()) {
+            for (TabelaTarifaria tabela : tabelaRepo.findComRelacionamentosByIdIn(ids.getContent())) {
+                tabelas.put(tabela.getId(), tabela);
+            }
+        }
+
+        return ids.map(id -> toResponse(tabelas.get(id)));
     }
+
+    @Transactional(readOnly = true)
+    public TabelaTarifariaCursorResponse listarHistorico(String cursor, int tamanho) {
+        if (tamanho < 1 || tamanho > TAMANHO_MAXIMO_HISTORICO) {
+            throw new BusinessException(TipoErroNegocio.ENTRADA_INVALIDA,
+                    "size deve estar entre 1 e " + TAMANHO_MAXIMO_HISTORICO + ".");
+        }
+
+        // Busca um id a mais que o pedido só para saber se existe próxima página, sem COUNT.
+        List<Long> ids;
+        if (cursor == null || cursor.isBlank()) {
+            ids = tabelaRepo.findPrimeirosIdsPorVigencia(tamanho + 1);
+        } else {
+            CursorHistorico posicao = decodificarCursor(cursor);
+            ids = tabelaRepo.findIdsPorVigenciaApos(posicao.dataVigencia(), posicao.id(), tamanho + 1);
+        }
+
+        boolean temProxima = ids.size() > tamanho;
+        List<Long> pagina = temProxima ? ids.subList(0, tamanho) : ids;
+        if (pagina.isEmpty()) {
+            return new TabelaTarifariaCursorResponse(List.of(), null);
+        }
+
+        Map<Long, TabelaTarifaria> tabelas = new HashMap<>();
+        for (TabelaTarifaria tabela : tabelaRepo.findComRelacionamentosByIdIn(pagina)) {
+            tabelas.put(tabela.getId(), tabela);
+        }
+
+        List<TabelaTarifariaResponse> conteudo = pagina.stream()
+                .map(id -> toResponse(tabelas.get(id)))
+                .toList();
+
+        String proximoCursor = null;
+        if (temProxima) {
+            TabelaTarifariaResponse ultima = conteudo.get(conteudo.size() - 1);
+            proximoCursor = codificarCursor(new CursorHistorico(ultima.dataVigencia(), ultima.id()));
+        }
+
+        return new TabelaTarifariaCursorResponse(conteudo, proximoCursor);
+    }
+
+    private String codificarCursor(CursorHistorico posicao) {
+        String valor = posicao.dataVigencia() + "|" + posicao.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(valor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private CursorHistorico decodificarCursor(String cursor) {
+        try {
+            String valor = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separador = valor.indexOf('|');
+            if (separador < 0) {
+                throw new BusinessException(TipoErroNegocio.ENTRADA_INVALIDA, "Cursor inválido.");
+            }
+            return new CursorHistorico(
+                    LocalDateTime.parse(valor.substring(0, separador)),
+                    Long.valueOf(valor.substring(separador + 1))
+            );
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new BusinessException(TipoErroNegocio.ENTRADA_INVALIDA, "Cursor inválido.");
+        }
+    }
+
+    /** Posição da última tabela entregue, na ordem (dataVigencia, id) do histórico. */
+    private record CursorHistorico(LocalDateTime dataVigencia, Long id) {}
 }
\ No newline at end of file
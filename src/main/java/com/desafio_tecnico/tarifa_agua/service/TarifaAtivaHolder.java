@@ -0,0 +1,160 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.entity.TabelaTarifaria;
+import com.desafio_tecnico.tarifa_agua.exception.BusinessException;
+import com.desafio_tecnico.tarifa_agua.exception.TipoErroNegocio;
+import com.desafio_tecnico.tarifa_agua.repository.TabelaTarifariaRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Mantém em memória a {@link TarifaCompilada} da tabela ativa, publicada como uma {@link Versao}
+ * imutável em um {@link AtomicReference}. Leituras nunca bloqueiam: quem obtém uma versão calcula
+ * com ela até o fim, mesmo que outra seja publicada no meio do caminho, e nunca enxerga uma tabela
+ * compilada pela metade, porque a compilação termina antes da troca da referência.
+ * <p>
+ * O banco é consultado apenas na primeira leitura; depois disso cada {@link TabelaAtivaAlteradaEvent}
+ * confirmado publica a versão seguinte, e trocas feitas por outras instâncias chegam por
+ * {@link #recarregar()}, chamado pela {@link SincronizacaoTabelaAtiva}.
+ */
+@Slf4j
+@Component
+public class TarifaAtivaHolder {
+
+    /** Estado antes da primeira leitura do banco. */
+    private static final Versao NAO_CARREGADA = new Versao(0, null);
+
+    private final TabelaTarifariaRepository tabelaRepo;
+    private final int limitePrecalculo;
+    private final AtomicReference<Versao> atual = new AtomicReference<>(NAO_CARREGADA);
+
+    /**
+     * @param limitePrecalculo maior consumo (m³) com resultado pré-calculado por categoria;
+     *                         negativo desliga o pré-cálculo
+     */
+    public TarifaAtivaHolder(TabelaTarifariaRepository tabelaRepo,
+                             @Value("${tarifa.calculo.precalculo.limite:200}") int limitePrecalculo) {
+        this.tabelaRepo = tabelaRepo;
+        this.limitePrecalculo = limitePrecalculo;
+    }
+
+    public TarifaCompilada obter() {
+        TarifaCompilada tarifa = versaoAtual().tarifa();
+        if (tarifa == null) {
+            throw new BusinessException(TipoErroNegocio.SEM_TABELA_VIGENTE, "Não existe tabela ativa.");
+        }
+        return tarifa;
+    }
+
+    /** Versão publicada no momento, carregando do banco na primeira chamada. */
+    public Versao versaoAtual() {
+        Versao versao = atual.get();
+        return versao == NAO_CARREGADA ? carregar() : versao;
+    }
+
+    /**
+     * Eventos de transações diferentes rodam nas threads de cada uma, sem ordem garantida entre si:
+     * o de uma troca pode chegar depois do da troca seguinte. Antes de publicar, o id da tabela ativa
+     * é relido do banco, depois de observada a versão que será substituída; se não for o do evento,
+     * houve outra troca depois desta, e a tabela é recarregada do banco em vez de publicada.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onTabelaAtivaAlterada(TabelaAtivaAlteradaEvent event) {
+        TabelaTarifaria tabela = event.tabelaAtiva();
+        Long tabelaId = tabela == null ? null : tabela.getId();
+        TarifaCompilada nova = tabela == null ? null : compilar(tabela);
+
+        while (true) {
+            Versao anterior = atual.get();
+            Long noBanco = tabelaRepo.findIdAtiva().orElse(null);
+            if (!Objects.equals(tabelaId, noBanco)) {
+                log.info("Troca para a tabela {} superada pela tabela {}; recarregando do banco", tabelaId, noBanco);
+                recarregar();
+                return;
+            }
+            Versao publicada = new Versao(anterior.numero() + 1, nova);
+            if (atual.compareAndSet(anterior, publicada)) {
+                log.info("Tabela ativa versão {}: {}", publicada.numero(),
+                        nova == null ? "nenhuma" : "tabela " + nova.getTabelaId());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Relê a tabela ativa do banco e publica como nova versão, para alterações feitas por outra
+     * instância. Não faz nada se a tabela ainda não foi carregada, já que a primeira leitura vai
+     * buscá-la de qualquer forma. Se outra versão for publicada durante a leitura, lê de novo: a
+     * versão publicada no final sempre reflete o banco depois da última troca.
+     */
+    public void recarregar() {
+        while (true) {
+            Versao vista = atual.get();
+            if (vista == NAO_CARREGADA) {
+                return;
+            }
+            TarifaCompilada tarifa = tabelaRepo.findAtivaComRelacionamentos().map(this::compilar).orElse(null);
+            Versao recarregada = new Versao(vista.numero() + 1, tarifa);
+            if (atual.compareAndSet(vista, recarregada)) {
+                log.info("Tabela ativa versão {} recarregada do banco: {}", recarregada.numero(),
+                        tarifa == null ? "nenhuma" : "tabela " + tarifa.getTabelaId());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Publica como versão 1 uma tabela lida de snapshot, para atender antes de o banco responder.
+     * Só tem efeito se nada foi carregado ainda; quem publica deve chamar {@link #recarregar()}
+     * quando o banco estiver disponível.
+     *
+     * @return {@code false} se outra versão já havia sido publicada
+     */
+    public boolean publicarSnapshot(TabelaTarifaria tabela) {
+        Versao snapshot = new Versao(1, compilar(tabela));
+        boolean publicada = atual.compareAndSet(NAO_CARREGADA, snapshot);
+        if (publicada) {
+            log.info("Tabela ativa versão 1 carregada de snapshot: tabela {}", tabela.getId());
+        }
+        return publicada;
+    }
+
+    /** Versão já publicada, sem consultar o banco; {@code null} antes da primeira carga. */
+    public Versao versaoPublicada() {
+        Versao versao = atual.get();
+        return versao == NAO_CARREGADA ? null : versao;
+    }
+
+    /**
+     * Leituras simultâneas antes da primeira carga podem consultar o banco em paralelo; só a
+     * primeira a terminar é publicada. Se um evento publicou uma versão enquanto o banco era lido,
+     * a carga é descartada para não sobrescrever a versão mais nova.
+     */
+    private Versao carregar() {
+        TarifaCompilada tarifa = tabelaRepo.findAtivaComRelacionamentos().map(this::compilar).orElse(null);
+        Versao carregada = new Versao(1, tarifa);
+        return atual.compareAndSet(NAO_CARREGADA, carregada) ? carregada : atual.get();
+    }
+
+    private TarifaCompilada compilar(TabelaTarifaria tabela) {
+        TarifaCompilada tarifa = TarifaCompilada.compilar(tabela, limitePrecalculo);
+        if (limitePrecalculo >= 0) {
+            log.info("Tabela {} compilada com pré-cálculo até {} m³ (~{} KiB)",
+                    tarifa.getTabelaId(), limitePrecalculo, tarifa.bytesPrecalculados() / 1024);
+        }
+        return tarifa;
+    }
+
+    /**
+     * Tabela ativa publicada com um número de versão que só cresce.
+     *
+     * @param tarifa {@code null} quando não há tabela ativa nesta versão
+     */
+    public record Versao(long numero, TarifaCompilada tarifa) {}
+}
@@ -0,0 +1,33 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import java.util.function.Supplier;
+
+/**
+ * Tabela ativa de um lote lido aos poucos, resolvida na primeira linha sem data de referência e
+ * reaproveitada nas seguintes; uma falha é tentada de novo na próxima linha. Pode ser lida por
+ * várias threads.
+ */
+final class TarifaAtivaSobDemanda implements Supplier<TarifaCompilada> {
+
+    private final CalculoService calculoService;
+    private volatile TarifaCompilada tarifa;
+
+    TarifaAtivaSobDemanda(CalculoService calculoService) {
+        this.calculoService = calculoService;
+    }
+
+    @Override
+    public TarifaCompilada get() {
+        TarifaCompilada resolvida = tarifa;
+        if (resolvida == null) {
+            synchronized (this) {
+                resolvida = tarifa;
+                if (resolvida == null) {
+                    resolvida = calculoService.tarifaAtiva();
+                    tarifa = resolvida;
+                }
+            }
+        }
+        return resolvida;
+    }
+}
@@ -0,0 +1,63 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import com.desafio_tecnico.tarifa_agua.entity.TabelaTarifaria;
+import com.desafio_tecnico.tarifa_agua.entity.TarifaCategoria;
+import com.desafio_tecnico.tarifa_agua.exception.BusinessException;
+import com.desafio_tecnico.tarifa_agua.exception.TipoErroNegocio;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Representação imutável de uma {@link TabelaTarifaria}, montada uma única vez quando a tabela
+ * se torna ativa. O cálculo usa apenas esta estrutura e não depende de entidades JPA nem do banco.
+ */
+@Getter
+public final class TarifaCompilada {
+
+    private final Long tabelaId;
+    private final LocalDateTime dataVigencia;
+    private final Map<CategoriaConsumidor, CategoriaCompilada> categorias;
+
+    private TarifaCompilada(Long tabelaId, LocalDateTime dataVigencia,
+                            Map<CategoriaConsumidor, CategoriaCompilada> categorias) {
+        this.tabelaId = tabelaId;
+        this.dataVigencia = dataVigencia;
+        this.categorias = Collections.unmodifiableMap(categorias);
+    }
+
+    public static TarifaCompilada compilar(TabelaTarifaria tabela) {
+        return compilar(tabela, -1);
+    }
+
+    /**
+     * @param limitePrecalculo maior consumo com resultado pré-calculado em cada categoria;
+     *                         negativo desliga o pré-cálculo
+     */
+    public static TarifaCompilada compilar(TabelaTarifaria tabela, int limitePrecalculo) {
+        Map<CategoriaConsumidor, CategoriaCompilada> categorias = new EnumMap<>(CategoriaConsumidor.class);
+        for (TarifaCategoria tarifaCategoria : tabela.getCategorias()) {
+            categorias.put(tarifaCategoria.getCategoria(),
+                    CategoriaCompilada.compilar(tarifaCategoria, limitePrecalculo));
+        }
+        return new TarifaCompilada(tabela.getId(), tabela.getDataVigencia(), categorias);
+    }
+
+    /** Estimativa, em bytes, da memória ocupada pelo pré-cálculo de todas as categorias. */
+    public long bytesPrecalculados() {
+        return categorias.values().stream().mapToLong(CategoriaCompilada::bytesPrecalculados).sum();
+    }
+
+    public CategoriaCompilada categoria(CategoriaConsumidor categoria) {
+        CategoriaCompilada compilada = categorias.get(categoria);
+        if (compilada == null) {
+            throw new BusinessException(TipoErroNegocio.CATEGORIA_INVALIDA,
+                    "Categoria não encontrada na tabela ativa.");
+        }
+        return compilada;
+    }
+}
@@ -0,0 +1,29 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Indicador {@code tarifa}, incluído no grupo de readiness: fora de serviço enquanto nenhuma versão
+ * da tabela ativa foi publicada. Só lê a referência em memória, sem consultar o banco.
+ */
+@Component("tarifa")
+@RequiredArgsConstructor
+public class TarifaHealthIndicator implements HealthIndicator {
+
+    private final TarifaAtivaHolder tarifaAtiva;
+
+    @Override
+    public Health health() {
+        TarifaAtivaHolder.Versao versao = tarifaAtiva.versaoPublicada();
+        if (versao == null) {
+            return Health.outOfService().withDetail("motivo", "Tabela ativa ainda não carregada").build();
+        }
+        return Health.up()
+                .withDetail("versao", versao.numero())
+                .withDetail("tabela", versao.tarifa() == null ? "nenhuma" : versao.tarifa().getTabelaId())
+                .build();
+    }
+}
@@ -0,0 +1,87 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.entity.TabelaTarifaria;
+import com.desafio_tecnico.tarifa_agua.repository.TabelaTarifariaRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mantém em memória o {@link HistoricoTarifas} usado para calcular com data de referência. Todas
+ * as tabelas são carregadas em uma única consulta na primeira leitura; depois de qualquer
+ * {@link TabelaAtivaAlteradaEvent} confirmado, o histórico é descartado e recarregado no próximo uso.
+ */
+@Slf4j
+@Component
+public class TarifaHistoricaHolder {
+
+    private final TabelaTarifariaRepository tabelaRepo;
+    private final TarifaAtivaHolder tarifaAtiva;
+
+    /** {@code null} enquanto o histórico não foi carregado ou depois de uma alteração. */
+    private volatile HistoricoTarifas historico;
+
+    public TarifaHistoricaHolder(TabelaTarifariaRepository tabelaRepo, TarifaAtivaHolder tarifaAtiva) {
+        this.tabelaRepo = tabelaRepo;
+        this.tarifaAtiva = tarifaAtiva;
+    }
+
+    public TarifaCompilada vigenteEm(LocalDateTime data) {
+        HistoricoTarifas atual = historico;
+        if (atual == null) {
+            atual = carregar();
+        }
+        return atual.vigenteEm(data);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onTabelaAtivaAlterada(TabelaAtivaAlteradaEvent event) {
+        invalidar();
+    }
+
+    /** Descarta o histórico; o próximo cálculo com data de referência recarrega do banco. */
+    public synchronized void invalidar() {
+        historico = null;
+    }
+
+    private synchronized HistoricoTarifas carregar() {
+        if (historico == null) {
+            historico = montar(tabelaRepo.findTodasComRelacionamentos());
+            log.info("Histórico tarifário carregado com {} períodos de vigência", historico.quantidadePeriodos());
+        }
+        return historico;
+    }
+
+    /**
+     * @param tabelas em ordem de {@code dataVigencia}
+     */
+    private HistoricoTarifas montar(List<TabelaTarifaria> tabelas) {
+        List<HistoricoTarifas.Periodo> periodos = new ArrayList<>(tabelas.size());
+        for (TabelaTarifaria tabela : tabelas) {
+            if (tabela.isAtiva()) {
+                periodos.add(new HistoricoTarifas.Periodo(tabela.getDataVigencia(), null, compilarAtiva(tabela)));
+            } else if (tabela.getDataDesativacao() != null) {
+                periodos.add(new HistoricoTarifas.Periodo(tabela.getDataVigencia(), tabela.getDataDesativacao(),
+                        TarifaCompilada.compilar(tabela)));
+            } else {
+                // Desativada sem data conhecida e sem tabela posterior para delimitar a vigência
+                log.warn("Tabela {} inativa sem data de desativação fora do histórico tarifário", tabela.getId());
+            }
+        }
+        return new HistoricoTarifas(periodos);
+    }
+
+    /**
+     * Reaproveita a compilação da tabela ativa, que já tem o pré-cálculo. A memória pode estar sem
+     * tabela ou com outra enquanto a troca não chegou a esta instância; nesse caso compila a do banco.
+     */
+    private TarifaCompilada compilarAtiva(TabelaTarifaria tabela) {
+        TarifaCompilada ativa = tarifaAtiva.versaoAtual().tarifa();
+        return ativa != null && ativa.getTabelaId().equals(tabela.getId()) ? ativa : TarifaCompilada.compilar(tabela);
+    }
+}
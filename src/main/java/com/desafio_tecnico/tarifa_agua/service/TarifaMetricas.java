@@ -0,0 +1,119 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import com.desafio_tecnico.tarifa_agua.exception.TipoErroNegocio;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Métricas dos caminhos quentes do cálculo, expostas em {@code /actuator/prometheus}. Todos os
+ * medidores são registrados na construção e guardados em {@link EnumMap}s; o registro de uma
+ * medição é só um acesso por ordinal e uma atualização de contador, sem alocação por requisição.
+ * <p>
+ * A contagem de cálculos por categoria é o {@code _count} do timer {@value #CALCULO}.
+ */
+@Component
+public class TarifaMetricas {
+
+    static final String CALCULO = "tarifa.calculo";
+    static final String FAIXAS = "tarifa.calculo.faixas";
+    static final String PRECALCULO = "tarifa.calculo.precalculo";
+    static final String RESOLUCAO = "tarifa.tabela.resolucao";
+    static final String ERROS = "tarifa.erros.negocio";
+
+    private final Map<CategoriaConsumidor, Timer> calculos = new EnumMap<>(CategoriaConsumidor.class);
+    private final Map<CategoriaConsumidor, DistributionSummary> faixas = new EnumMap<>(CategoriaConsumidor.class);
+    private final Counter precalculoAcerto;
+    private final Counter precalculoFalta;
+    private final Timer resolucaoAtiva;
+    private final Timer resolucaoHistorico;
+    private final Map<TipoErroNegocio, Counter> errosRequisicao = new EnumMap<>(TipoErroNegocio.class);
+    private final Map<TipoErroNegocio, Counter> errosLote = new EnumMap<>(TipoErroNegocio.class);
+
+    public TarifaMetricas(MeterRegistry registry) {
+        for (CategoriaConsumidor categoria : CategoriaConsumidor.values()) {
+            calculos.put(categoria, Timer.builder(CALCULO)
+                    .description("Tempo de cálculo de uma leitura, sem a resolução da tabela")
+                    .tag("categoria", categoria.name())
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(100))
+                    .maximumExpectedValue(Duration.ofMillis(100))
+                    .register(registry));
+            faixas.put(categoria, DistributionSummary.builder(FAIXAS)
+                    .description("Faixas percorridas por cálculo")
+                    .tag("categoria", categoria.name())
+                    .register(registry));
+        }
+        precalculoAcerto = Counter.builder(PRECALCULO)
+                .description("Cálculos atendidos pelo pré-cálculo da tabela compilada")
+                .tag("resultado", "acerto")
+                .register(registry);
+        precalculoFalta = Counter.builder(PRECALCULO)
+                .description("Cálculos atendidos pelo pré-cálculo da tabela compilada")
+                .tag("resultado", "falta")
+                .register(registry);
+        resolucaoAtiva = timerResolucao(registry, "ativa");
+        resolucaoHistorico = timerResolucao(registry, "historico");
+        for (TipoErroNegocio tipo : TipoErroNegocio.values()) {
+            errosRequisicao.put(tipo, contadorErro(registry, tipo, "requisicao"));
+            errosLote.put(tipo, contadorErro(registry, tipo, "lote"));
+        }
+    }
+
+    /**
+     * @param nanos duração de {@link CategoriaCompilada#calcular(int, boolean)}
+     */
+    void registrarCalculo(CategoriaCompilada categoria, int consumo, long nanos) {
+        calculos.get(categoria.getCategoria()).record(nanos, TimeUnit.NANOSECONDS);
+        faixas.get(categoria.getCategoria()).record(categoria.faixasPercorridas(consumo));
+        if (consumo >= 0 && consumo <= categoria.limitePrecalculo()) {
+            precalculoAcerto.increment();
+        } else {
+            precalculoFalta.increment();
+        }
+    }
+
+    /**
+     * @param historico {@code true} quando a tabela foi buscada por data de referência
+     * @param nanos     duração da resolução, incluindo a carga do banco quando o holder estava vazio
+     */
+    void registrarResolucao(boolean historico, long nanos) {
+        (historico ? resolucaoHistorico : resolucaoAtiva).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Erro de negócio que virou resposta 400. */
+    public void registrarErroRequisicao(TipoErroNegocio tipo) {
+        errosRequisicao.get(tipo).increment();
+    }
+
+    /** Erro de negócio devolvido em um item de lote, sem interromper os demais. */
+    void registrarErroLote(TipoErroNegocio tipo) {
+        errosLote.get(tipo).increment();
+    }
+
+    private static Timer timerResolucao(MeterRegistry registry, String origem) {
+        return Timer.builder(RESOLUCAO)
+                .description("Tempo para obter a tabela compilada de um cálculo")
+                .tag("origem", origem)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .register(registry);
+    }
+
+    private static Counter contadorErro(MeterRegistry registry, TipoErroNegocio tipo, String origem) {
+        return Counter.builder(ERROS)
+                .description("Erros de negócio por tipo")
+                .tag("tipo", tipo.tag())
+                .tag("origem", origem)
+                .register(registry);
+    }
+}
@@ -1,3 +1,53 @@
 CREATE UNIQUE INDEX IF NOT EXISTS idx_unique_tabela_ativa
     ON tabela_tarifaria ((1))
-    WHERE ativa = true;
\ No newline at end of file
+    WHERE ativa = true;
+
+-- Listagem do histórico por cursor: ORDER BY data_vigencia, id com (data_vigencia, id) > (?, ?)
+CREATE INDEX IF NOT EXISTS idx_tabela_tarifaria_vigencia_id
+    ON tabela_tarifaria (data_vigencia, id);
+
+-- Os ids passaram de IDENTITY para sequences com allocationSize 50 (inserts em lote).
+-- Em bancos que já tinham dados, adianta cada sequence para além do maior id existente.
+SELECT setval('tabela_tarifaria_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM tabela_tarifaria) + 50, (SELECT last_value FROM tabela_tarifaria_seq)));
+SELECT setval('tarifa_categoria_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM tarifa_categoria) + 50, (SELECT last_value FROM tarifa_categoria_seq)));
+SELECT setval('faixa_consumo_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM faixa_consumo) + 50, (SELECT last_value FROM faixa_consumo_seq)));
+
+-- Tabelas desativadas antes da coluna data_desativacao existir: a vigência termina quando a
+-- tabela seguinte entrou em vigor.
+UPDATE tabela_tarifaria t
+SET data_desativacao = (SELECT MIN(n.data_vigencia) FROM tabela_tarifaria n WHERE n.data_vigencia > t.data_vigencia)
+WHERE t.ativa = false AND t.data_desativacao IS NULL;
+
+-- Lançamentos de cálculo, gravados em lote pela aplicação (LancamentosCalculo). Só recebe INSERTs em
+-- ordem de registro, então um índice BRIN em registrado_em basta para consultas por período.
+CREATE TABLE IF NOT EXISTS lancamento_calculo (
+    id            BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY,
+    registrado_em TIMESTAMPTZ    NOT NULL,
+    tabela_id     BIGINT         NOT NULL,
+    categoria     VARCHAR(20)    NOT NULL,
+    consumo       INTEGER        NOT NULL,
+    valor_total   NUMERIC(14, 2) NOT NULL,
+    detalhamento  JSONB          NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_lancamento_calculo_registrado_em
+    ON lancamento_calculo USING BRIN (registrado_em);
+
+-- Chave de idempotência do POST /api/calculos, consultada por IdempotenciaCalculo em reenvios que
+-- não estão mais no cache em memória. Só uma fração dos lançamentos tem chave.
+ALTER TABLE lancamento_calculo ADD COLUMN IF NOT EXISTS chave_idempotencia VARCHAR(100);
+
+CREATE INDEX IF NOT EXISTS idx_lancamento_calculo_chave_idempotencia
+    ON lancamento_calculo (chave_idempotencia, tabela_id)
+    WHERE chave_idempotencia IS NOT NULL;
+
+-- Histograma do consumo calculado (HistogramaConsumo): uma linha por categoria, mês e instância da
+-- aplicação, com uma contagem por m³ até o limite configurado e a última posição para o restante.
+CREATE TABLE IF NOT EXISTS histograma_consumo (
+    categoria     VARCHAR(20) NOT NULL,
+    periodo       DATE        NOT NULL,
+    instancia     VARCHAR(36) NOT NULL,
+    contagens     BIGINT[]    NOT NULL,
+    atualizado_em TIMESTAMPTZ NOT NULL,
+    PRIMARY KEY (categoria, periodo, instancia)
+);
@@ -0,0 +1,83 @@
+package com.desafio_tecnico.tarifa_agua.config;
+
+import com.desafio_tecnico.tarifa_agua.entity.FaixaConsumo;
+import com.desafio_tecnico.tarifa_agua.entity.TabelaTarifaria;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CacheSegundoNivelTest {
+
+    private CacheSegundoNivel cache;
+    private CacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        cache = new CacheSegundoNivel(10, 1_000);
+        Map<String, Object> propriedades = new HashMap<>();
+        cache.customize(propriedades);
+        cacheManager = (CacheManager) propriedades.get(ConfigSettings.CACHE_MANAGER);
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.destroy();
+    }
+
+    @Test
+    @DisplayName("deve limitar o tamanho das regiões de entidades e coleções")
+    void deveLimitarRegioes() {
+        assertThat(maximo(TabelaTarifaria.class.getName())).hasValue(10);
+        assertThat(maximo(TabelaTarifaria.class.getName() + ".categorias")).hasValue(10);
+        assertThat(maximo(FaixaConsumo.class.getName())).hasValue(1_000);
+    }
+
+    @Test
+    @DisplayName("cada instância deve ter as próprias regiões")
+    void cadaInstanciaDeveTerRegioesProprias() {
+        CacheSegundoNivel outro = new CacheSegundoNivel(10, 1_000);
+        try {
+            Map<String, Object> propriedades = new HashMap<>();
+            outro.customize(propriedades);
+
+            assertThat(propriedades.get(ConfigSettings.CACHE_MANAGER)).isNotSameAs(cacheManager);
+        } finally {
+            outro.destroy();
+        }
+    }
+
+    @Test
+    @DisplayName("deve expor acertos e faltas por região")
+    void deveExporAcertosEFaltas() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+        Cache<Object, Object> tabelas = cacheManager.getCache(TabelaTarifaria.class.getName());
+
+        tabelas.get(1L);
+        tabelas.put(1L, "tabela");
+        tabelas.get(1L);
+        tabelas.get(1L);
+
+        assertThat(registry.get("cache.gets").tags("cache", "TabelaTarifaria", "result", "hit")
+                .functionCounter().count()).isEqualTo(2);
+        assertThat(registry.get("cache.gets").tags("cache", "TabelaTarifaria", "result", "miss")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private OptionalLong maximo(String regiao) {
+        return cacheManager.getCache(regiao).getConfiguration(CaffeineConfiguration.class).getMaximumSize();
+    }
+}
@@ -0,0 +1,226 @@
+package com.desafio_tecnico.tarifa_agua.controller;
+
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteItemRequest;
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteItemResponse;
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteParaleloResponse;
+import com.desafio_tecnico.tarifa_agua.dto.CalculoRequest;
+import com.desafio_tecnico.tarifa_agua.dto.CalculoResponse;
+import com.desafio_tecnico.tarifa_agua.dto.DetalhamentoResponse;
+import com.desafio_tecnico.tarifa_agua.dto.FaixaInfo;
+import com.desafio_tecnico.tarifa_agua.dto.TotalCategoriaResponse;
+import com.desafio_tecnico.tarifa_agua.exception.ErrorResponse;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FormatoBinarioCalculoTest {
+
+    private static final MediaType TIPO = MediaType.parseMediaType(FormatoBinarioCalculo.TIPO);
+    private static final Type LOTE_REQUEST = new ParameterizedTypeReference<List<CalculoLoteItemRequest>>() {}.getType();
+    private static final Type LOTE_RESPONSE = new ParameterizedTypeReference<List<CalculoLoteItemResponse>>() {}.getType();
+
+    private final FormatoBinarioCalculo.Conversor conversor = new FormatoBinarioCalculo.Conversor();
+
+    @Test
+    @DisplayName("deve ler a requisição com data de referência e chave de idempotência")
+    void deveLerRequisicao() throws IOException {
+        CalculoRequest request = new CalculoRequest("INDUSTRIAL", 42, LocalDateTime.of(2025, 3, 10, 8, 0, 0, 5), "leitura-1");
+        byte[] bytes = FormatoBinarioCalculo.Conversor.escreverRequest(request);
+
+        Object lido = conversor.read(CalculoRequest.class, null, new MockHttpInputMessage(bytes));
+
+        assertThat(lido).isEqualTo(request);
+    }
+
+    @Test
+    @DisplayName("deve escrever a resposta detalhada em registros de tamanho fixo")
+    void deveEscreverResposta() throws IOException {
+        CalculoResponse resposta = resposta();
+        MockHttpOutputMessage saida = new MockHttpOutputMessage();
+
+        conversor.write(resposta, CalculoResponse.class, TIPO, saida);
+
+        byte[] bytes = saida.getBodyAsBytes();
+        // categoria, consumo, valor total, quantidade de faixas e 30 bytes por faixa
+        assertThat(bytes).hasSize(1 + 4 + 9 + 4 + 2 * 30);
+        assertThat(FormatoBinarioCalculo.Conversor.lerResposta(ByteBuffer.wrap(bytes))).isEqualTo(resposta);
+        assertThat(saida.getHeaders().getContentType()).isEqualTo(TIPO);
+        assertThat(saida.getHeaders().getContentLength()).isEqualTo(bytes.length);
+    }
+
+    @Test
+    @DisplayName("deve ler o lote com campos ausentes e escrever itens com erro e com resultado")
+    void deveLerEEscreverLote() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream entrada = new DataOutputStream(bytes);
+        entrada.writeInt(2);
+        escreverItem(entrada, "a", 0, 15);
+        escreverItem(entrada, "b", 0xFF, Integer.MIN_VALUE);
+
+        Object lido = conversor.read(LOTE_REQUEST, null, new MockHttpInputMessage(bytes.toByteArray()));
+
+        assertThat(lido).isEqualTo(List.of(
+                new CalculoLoteItemRequest("a", "COMERCIAL", 15),
+                new CalculoLoteItemRequest("b", null, null)));
+
+        List<CalculoLoteItemResponse> itens = Arrays.asList(
+                new CalculoLoteItemResponse("a", resposta(), null),
+                new CalculoLoteItemResponse("b", null, "Categoria não informada."));
+        MockHttpOutputMessage saida = new MockHttpOutputMessage();
+        conversor.write(itens, LOTE_RESPONSE, TIPO, saida);
+
+        ByteBuffer escrito = ByteBuffer.wrap(saida.getBodyAsBytes());
+        assertThat(escrito.getInt()).isEqualTo(2);
+        assertThat(lerTexto(escrito)).isEqualTo("a");
+        assertThat(Short.toUnsignedInt(escrito.getShort())).isEqualTo(0xFFFF);
+        assertThat(FormatoBinarioCalculo.Conversor.lerResposta(escrito)).isEqualTo(resposta());
+        assertThat(lerTexto(escrito)).isEqualTo("b");
+        assertThat(lerTexto(escrito)).isEqualTo("Categoria não informada.");
+        assertThat(escrito.hasRemaining()).isFalse();
+    }
+
+    @Test
+    @DisplayName("deve escrever lote com respostas maiores que o buffer")
+    void deveEscreverLoteGrande() throws IOException {
+        List<DetalhamentoResponse> faixas = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            faixas.add(new DetalhamentoResponse(new FaixaInfo(i, i), 1, new BigDecimal("1.25"), new BigDecimal("1.25")));
+        }
+        CalculoResponse grande = new CalculoResponse("PUBLICO", 300, new BigDecimal("375.00"), faixas);
+        MockHttpOutputMessage saida = new MockHttpOutputMessage();
+
+        conversor.write(List.of(new CalculoLoteItemResponse("1", grande, null), new CalculoLoteItemResponse("2", grande, null)),
+                LOTE_RESPONSE, TIPO, saida);
+
+        ByteBuffer escrito = ByteBuffer.wrap(saida.getBodyAsBytes());
+        assertThat(escrito.getInt()).isEqualTo(2);
+        for (String id : List.of("1", "2")) {
+            assertThat(lerTexto(escrito)).isEqualTo(id);
+            escrito.getShort();
+            assertThat(FormatoBinarioCalculo.Conversor.lerResposta(escrito)).isEqualTo(grande);
+        }
+        assertThat(escrito.hasRemaining()).isFalse();
+    }
+
+    @Test
+    @DisplayName("deve escrever o lote paralelo com itens, totais e erros")
+    void deveEscreverLoteParalelo() throws IOException {
+        CalculoLoteParaleloResponse paralelo = new CalculoLoteParaleloResponse(
+                List.of(new CalculoLoteItemResponse("a", resposta(), null)),
+                List.of(new TotalCategoriaResponse("COMERCIAL", 1, 15, new BigDecimal("100.00"))),
+                0);
+        MockHttpOutputMessage saida = new MockHttpOutputMessage();
+
+        assertThat(conversor.canWrite(CalculoLoteParaleloResponse.class, TIPO)).isTrue();
+        conversor.write(paralelo, CalculoLoteParaleloResponse.class, TIPO, saida);
+
+        ByteBuffer escrito = ByteBuffer.wrap(saida.getBodyAsBytes());
+        assertThat(escrito.getInt()).isEqualTo(1);
+        assertThat(lerTexto(escrito)).isEqualTo("a");
+        assertThat(Short.toUnsignedInt(escrito.getShort())).isEqualTo(0xFFFF);
+        assertThat(FormatoBinarioCalculo.Conversor.lerResposta(escrito)).isEqualTo(resposta());
+        assertThat(escrito.getInt()).isEqualTo(1);
+        assertThat(escrito.get()).isEqualTo((byte) 0);
+        assertThat(escrito.getLong()).isEqualTo(1);
+        assertThat(escrito.getLong()).isEqualTo(15);
+        assertThat(BigDecimal.valueOf(escrito.getLong(), escrito.get())).isEqualTo(new BigDecimal("100.00"));
+        assertThat(escrito.getLong()).isZero();
+        assertThat(escrito.hasRemaining()).isFalse();
+    }
+
+    @Test
+    @DisplayName("deve recusar lote que anuncia mais itens do que traz, sem reservá-los")
+    void deveRecusarLoteComQuantidadeMaiorQueOCorpo() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream entrada = new DataOutputStream(bytes);
+        entrada.writeInt(Integer.MAX_VALUE);
+        escreverItem(entrada, "a", 0, 15);
+
+        assertThatThrownBy(() -> conversor.read(LOTE_REQUEST, null, new MockHttpInputMessage(bytes.toByteArray())))
+                .isInstanceOf(HttpMessageNotReadableException.class);
+    }
+
+    @Test
+    @DisplayName("deve cortar mensagem longa no limite do campo sem partir caractere")
+    void deveCortarMensagemSemPartirCaractere() throws IOException {
+        // 1 + 2 * 40.000 bytes: o limite de 65.534 cai no meio de um "é"
+        ErrorResponse erro = new ErrorResponse(LocalDateTime.of(2025, 3, 10, 8, 0), 422, "a" + "é".repeat(40_000));
+        MockHttpOutputMessage saida = new MockHttpOutputMessage();
+
+        conversor.write(erro, ErrorResponse.class, TIPO, saida);
+
+        ByteBuffer escrito = ByteBuffer.wrap(saida.getBodyAsBytes());
+        escrito.position(8 + 4 + 4);
+        assertThat(lerTexto(escrito)).isEqualTo("a" + "é".repeat(32_766));
+        assertThat(escrito.hasRemaining()).isFalse();
+    }
+
+    @Test
+    @DisplayName("deve recusar mensagem truncada ou com bytes sobrando")
+    void deveRecusarMensagemInvalida() throws IOException {
+        byte[] completa = FormatoBinarioCalculo.Conversor.escreverRequest(new CalculoRequest("COMERCIAL", 5));
+
+        assertThatThrownBy(() -> conversor.read(CalculoRequest.class, null,
+                new MockHttpInputMessage(Arrays.copyOf(completa, completa.length - 1))))
+                .isInstanceOf(HttpMessageNotReadableException.class);
+        assertThatThrownBy(() -> conversor.read(CalculoRequest.class, null,
+                new MockHttpInputMessage(Arrays.copyOf(completa, completa.length + 1))))
+                .isInstanceOf(HttpMessageNotReadableException.class);
+    }
+
+    @Test
+    @DisplayName("deve entrar depois do JSON e só para os tipos do cálculo")
+    void deveEntrarDepoisDoJson() {
+        List<HttpMessageConverter<?>> converters = new ArrayList<>(List.of(new MappingJackson2HttpMessageConverter()));
+
+        new FormatoBinarioCalculo().extendMessageConverters(converters);
+
+        assertThat(converters.get(1)).isInstanceOf(FormatoBinarioCalculo.Conversor.class);
+        assertThat(conversor.canWrite(LOTE_RESPONSE, List.class, TIPO)).isTrue();
+        assertThat(conversor.canRead(LOTE_REQUEST, null, TIPO)).isTrue();
+        assertThat(conversor.canRead(LOTE_RESPONSE, null, TIPO)).isFalse();
+        assertThat(conversor.canRead(CalculoRequest.class, null, MediaType.APPLICATION_JSON)).isFalse();
+    }
+
+    private CalculoResponse resposta() {
+        return new CalculoResponse("COMERCIAL", 15, new BigDecimal("100.00"), List.of(
+                new DetalhamentoResponse(new FaixaInfo(0, 10), 10, new BigDecimal("5.00"), new BigDecimal("50.00")),
+                new DetalhamentoResponse(new FaixaInfo(11, null), 5, new BigDecimal("10.00"), new BigDecimal("50.00"))));
+    }
+
+    private void escreverItem(DataOutputStream saida, String id, int categoria, int consumo) throws IOException {
+        saida.writeShort(id.length());
+        saida.writeBytes(id);
+        saida.writeByte(categoria);
+        saida.writeInt(consumo);
+        saida.writeLong(Long.MIN_VALUE);
+        saida.writeInt(0);
+    }
+
+    private String lerTexto(ByteBuffer entrada) {
+        byte[] bytes = new byte[Short.toUnsignedInt(entrada.getShort())];
+        entrada.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,192 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteItemRequest;
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteItemResponse;
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteParaleloResponse;
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteTotaisResponse;
+import com.desafio_tecnico.tarifa_agua.dto.TotalCategoriaResponse;
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import com.desafio_tecnico.tarifa_agua.entity.TabelaTarifaria;
+import com.desafio_tecnico.tarifa_agua.exception.BusinessException;
+import com.desafio_tecnico.tarifa_agua.repository.TabelaTarifariaRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CalculoParaleloServiceTest {
+
+    @Mock
+    private TabelaTarifariaRepository tabelaRepo;
+
+    @Mock(stubOnly = true)
+    private LancamentosCalculo lancamentos;
+
+    @Mock(stubOnly = true)
+    private HistogramaConsumo histograma;
+
+    private CalculoService calculoService;
+
+    private CalculoParaleloService paraleloService;
+
+    @BeforeEach
+    void setUp() {
+        TarifaAtivaHolder tarifaAtiva = new TarifaAtivaHolder(tabelaRepo, 50);
+        calculoService = new CalculoService(tarifaAtiva, new TarifaHistoricaHolder(tabelaRepo, tarifaAtiva), new TarifaMetricas(new SimpleMeterRegistry()), lancamentos, histograma);
+        paraleloService = new CalculoParaleloService(calculoService, new ObjectMapper(), 4, 1_000_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        paraleloService.encerrar();
+    }
+
+    @Test
+    @DisplayName("deve devolver os mesmos itens do lote sequencial, na ordem de entrada")
+    void deveManterOrdemEResultados() {
+        when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabela()));
+        List<CalculoLoteItemRequest> itens = gerarItens(5 * CalculoParaleloService.TAMANHO_MINIMO_PARTICAO + 123);
+
+        CalculoLoteParaleloResponse paralelo = paraleloService.calcular(itens, false);
+        List<CalculoLoteItemResponse> sequencial = calculoService.calcularLote(itens, false);
+
+        assertThat(paralelo.itens()).isEqualTo(sequencial);
+    }
+
+    @Test
+    @DisplayName("deve totalizar leituras, consumo e valor por categoria e contar erros")
+    void deveTotalizarPorCategoria() {
+        when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabela()));
+        List<CalculoLoteItemRequest> itens = gerarItens(3 * CalculoParaleloService.TAMANHO_MINIMO_PARTICAO);
+
+        CalculoLoteParaleloResponse paralelo = paraleloService.calcular(itens, false);
+
+        List<CalculoLoteItemResponse> sequencial = calculoService.calcularLote(itens, false);
+        for (TotalCategoriaResponse total : paralelo.totais()) {
+            List<CalculoLoteItemResponse> daCategoria = sequencial.stream()
+                    .filter(r -> r.resultado() != null && r.resultado().categoria().equals(total.categoria()))
+                    .toList();
+            assertThat(total.leituras()).isEqualTo(daCategoria.size());
+            assertThat(total.consumoTotal())
+                    .isEqualTo(daCategoria.stream().mapToLong(r -> r.resultado().consumoTotal()).sum());
+            assertThat(total.valorTotal()).isEqualByComparingTo(daCategoria.stream()
+                    .map(r -> r.resultado().valorTotal())
+                    .reduce(BigDecimal.ZERO, BigDecimal::add));
+        }
+        assertThat(paralelo.totais()).extracting(TotalCategoriaResponse::categoria)
+                .containsExactly("COMERCIAL", "INDUSTRIAL");
+        assertThat(paralelo.erros()).isEqualTo(sequencial.stream().filter(r -> r.erro() != null).count());
+        assertThat(paralelo.erros()).isPositive();
+    }
+
+    @Test
+    @DisplayName("deve aceitar listas sem acesso aleatório e lote vazio")
+    void deveAceitarListasSemAcessoAleatorio() {
+        when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabela()));
+
+        CalculoLoteParaleloResponse encadeado = paraleloService.calcular(new LinkedList<>(List.of(
+                new CalculoLoteItemRequest("a", "COMERCIAL", 5),
+                new CalculoLoteItemRequest("b", "INDUSTRIAL", 5)
+        )), true);
+        CalculoLoteParaleloResponse vazio = paraleloService.calcular(List.of(), true);
+
+        assertThat(encadeado.itens()).extracting(CalculoLoteItemResponse::id).containsExactly("a", "b");
+        assertThat(encadeado.itens().get(0).resultado().detalhamento()).isNotEmpty();
+        assertThat(vazio.itens()).isEmpty();
+        assertThat(vazio.totais()).isEmpty();
+        assertThat(vazio.erros()).isZero();
+    }
+
+    @Test
+    @DisplayName("deve rejeitar listas acima do limite de itens")
+    void deveRejeitarListaAcimaDoLimite() {
+        CalculoParaleloService limitado = new CalculoParaleloService(calculoService, new ObjectMapper(), 1, 10);
+        try {
+            assertThatThrownBy(() -> limitado.calcular(gerarItens(11), false))
+                    .isInstanceOf(BusinessException.class)
+                    .hasMessage("Lote paralelo com mais de 10 itens; envie o lote em NDJSON para calculá-lo em streaming.");
+        } finally {
+            limitado.encerrar();
+        }
+    }
+
+    @Test
+    @DisplayName("deve calcular NDJSON em blocos, na ordem de entrada, com os totais na última linha")
+    void deveCalcularNdjsonEmBlocos() throws IOException {
+        when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabela()));
+        int linhasPorBloco = 2 * CalculoParaleloService.TAMANHO_MINIMO_PARTICAO + 5;
+        List<CalculoLoteItemRequest> itens = gerarItens(2 * linhasPorBloco + 77);
+        ObjectMapper objectMapper = new ObjectMapper();
+        CalculoParaleloService emBlocos = new CalculoParaleloService(calculoService, objectMapper, 4, 1_000_000, linhasPorBloco);
+        StringBuilder entrada = new StringBuilder("{nao e json\n\n");
+        for (CalculoLoteItemRequest item : itens) {
+            entrada.append(objectMapper.writeValueAsString(item)).append('\n');
+        }
+
+        StringWriter saida = new StringWriter();
+        try {
+            emBlocos.processarNdjson(new StringReader(entrada.toString()), saida, false);
+        } finally {
+            emBlocos.encerrar();
+        }
+
+        String[] linhas = saida.toString().split("\n");
+        assertThat(linhas).hasSize(itens.size() + 2);
+        assertThat(objectMapper.readValue(linhas[0], CalculoLoteItemResponse.class).erro()).isEqualTo("Linha JSON inválida.");
+        List<CalculoLoteItemResponse> itensLidos = new ArrayList<>();
+        for (int i = 1; i <= itens.size(); i++) {
+            itensLidos.add(objectMapper.readValue(linhas[i], CalculoLoteItemResponse.class));
+        }
+        assertThat(itensLidos).isEqualTo(calculoService.calcularLote(itens, false));
+        CalculoLoteTotaisResponse totais = objectMapper.readValue(linhas[linhas.length - 1], CalculoLoteTotaisResponse.class);
+        CalculoLoteParaleloResponse lista = paraleloService.calcular(itens, false);
+        assertThat(totais.totais()).isEqualTo(lista.totais());
+        assertThat(totais.erros()).isEqualTo(lista.erros() + 1);
+    }
+
+    /** Leituras aleatórias de COMERCIAL e INDUSTRIAL, com cerca de 2% de itens inválidos. */
+    private List<CalculoLoteItemRequest> gerarItens(int quantidade) {
+        Random random = new Random(7);
+        List<CalculoLoteItemRequest> itens = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            int sorteio = random.nextInt(100);
+            String categoria = sorteio == 0 ? "INVALIDA" : sorteio % 2 == 0 ? "COMERCIAL" : "industrial";
+            int consumo = sorteio == 1 ? -1 : random.nextInt(300);
+            itens.add(new CalculoLoteItemRequest(String.valueOf(i), categoria, consumo));
+        }
+        return itens;
+    }
+
+    /**
+     * COMERCIAL: [0, 10] a R$5,00 e [11, ∞) a R$10,00; INDUSTRIAL: [0, 20] a R$7,25 e [21, ∞) a
+     * R$12,10.
+     */
+    private TabelaTarifaria criarTabela() {
+        return TabelaTarifariaFixture.tabela(1L)
+                .faixa(CategoriaConsumidor.COMERCIAL, 0, 10, "5.00")
+                .faixa(CategoriaConsumidor.COMERCIAL, 11, null, "10.00")
+                .faixa(CategoriaConsumidor.INDUSTRIAL, 0, 20, "7.25")
+                .faixa(CategoriaConsumidor.INDUSTRIAL, 21, null, "12.10")
+                .criar();
+    }
+}
@@ -1,5 +1,7 @@
 package com.desafio_tecnico.tarifa_agua.service;
 
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteItemRequest;
+import com.desafio_tecnico.tarifa_agua.dto.CalculoLoteItemResponse;
 import com.desafio_tecnico.tarifa_agua.dto.CalculoRequest;
 import com.desafio_tecnico.tarifa_agua.dto.CalculoResponse;
 import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
@@ -8,31 +10,72 @@ import com.desafio_tecnico.tarifa_agua.entity.TabelaTarifaria;
 import com.desafio_tecnico.tarifa_agua.entity.TarifaCategoria;
 import com.desafio_tecnico.tarifa_agua.exception.BusinessException;
 import com.desafio_tecnico.tarifa_agua.repository.TabelaTarifariaRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class CalculoServiceTest {
 
+    /** Baixo o bastante para os testes passarem tanto pelo pré-cálculo quanto pelas faixas. */
+    private static final int LIMITE_PRECALCULO = 12;
+
     @Mock
     private TabelaTarifariaRepository tabelaRepo;
 
-    @InjectMocks
+    @Mock
+    private LancamentosCalculo lancamentos;
+
+    @Mock
+    private HistogramaConsumo histograma;
+
+    private TarifaAtivaHolder tarifaAtiva;
+
+    /** Id da tabela ativa no banco simulado, relido antes de cada publicação. */
+    private Long idNoBanco;
+
+    private TarifaHistoricaHolder tarifaHistorica;
+
+    private SimpleMeterRegistry registry;
+
     private CalculoService calculoService;
 
+    @BeforeEach
+    void setUp() {
+        tarifaAtiva = new TarifaAtivaHolder(tabelaRepo, LIMITE_PRECALCULO);
+        tarifaHistorica = new TarifaHistoricaHolder(tabelaRepo, tarifaAtiva);
+        registry = new SimpleMeterRegistry();
+        calculoService = new CalculoService(tarifaAtiva, tarifaHistorica, new TarifaMetricas(registry), lancamentos, histograma);
+        lenient().when(tabelaRepo.findIdAtiva()).thenAnswer(invocation -> Optional.ofNullable(idNoBanco));
+    }
+
     @Nested
     @DisplayName("calcular()")
     class Calcular {
@@ -144,6 +187,484 @@ class CalculoServiceTest {
             assertThat(response.detalhamento().get(1).faixa().fim()).isNull();
             assertThat(response.detalhamento().get(1).valorUnitario()).isEqualByComparingTo(new BigDecimal("10.00"));
         }
+
+        @Test
+        @DisplayName("deve registrar o lançamento com a tabela, a categoria, o consumo e o valor")
+        void deveRegistrarLancamento() {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabelaComFaixas()));
+
+            calculoService.calcular(new CalculoRequest("COMERCIAL", 15), false);
+
+            CategoriaCompilada comercial = tarifaAtiva.obter().categoria(CategoriaConsumidor.COMERCIAL);
+            verify(lancamentos).registrar(1L, comercial, 15, new BigDecimal("100.00"), null);
+        }
+
+        @Test
+        @DisplayName("deve contar o consumo no histograma da categoria")
+        void deveContarNoHistograma() {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabelaComFaixas()));
+
+            calculoService.calcular(new CalculoRequest("COMERCIAL", 15), false);
+
+            verify(histograma).registrar(CategoriaConsumidor.COMERCIAL, 15);
+        }
+    }
+
+    @Nested
+    @DisplayName("calcularLote()")
+    class CalcularLote {
+
+        @Test
+        @DisplayName("deve lançar exceção quando não existe tabela ativa")
+        void deveLancarExcecaoSemTabelaAtiva() {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.empty());
+
+            List<CalculoLoteItemRequest> itens = List.of(new CalculoLoteItemRequest("1", "COMERCIAL", 10));
+
+            assertThatThrownBy(() -> calculoService.calcularLote(itens, true))
+                    .isInstanceOf(BusinessException.class)
+                    .hasMessage("Não existe tabela ativa.");
+        }
+
+        @Test
+        @DisplayName("deve calcular os itens na ordem de entrada")
+        void deveCalcularItensNaOrdem() {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabelaComFaixas()));
+
+            List<CalculoLoteItemResponse> respostas = calculoService.calcularLote(List.of(
+                    new CalculoLoteItemRequest("a", "COMERCIAL", 5),
+                    new CalculoLoteItemRequest("b", "comercial", 15)
+            ), true);
+
+            assertThat(respostas).extracting(CalculoLoteItemResponse::id).containsExactly("a", "b");
+            assertThat(respostas.get(0).resultado().valorTotal()).isEqualByComparingTo(new BigDecimal("25.00"));
+            assertThat(respostas.get(1).resultado().valorTotal()).isEqualByComparingTo(new BigDecimal("100.00"));
+            assertThat(respostas).extracting(CalculoLoteItemResponse::erro).containsOnlyNulls();
+        }
+
+        @Test
+        @DisplayName("deve reportar erros por item sem interromper o lote")
+        void deveReportarErrosPorItem() {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabelaComFaixas()));
+
+            List<CalculoLoteItemResponse> respostas = calculoService.calcularLote(Arrays.asList(
+                    new CalculoLoteItemRequest("1", "INVALIDA", 5),
+                    new CalculoLoteItemRequest("2", "PUBLICO", 5),
+                    new CalculoLoteItemRequest("3", "COMERCIAL", -1),
+                    new CalculoLoteItemRequest("4", " ", 5),
+                    new CalculoLoteItemRequest("5", "COMERCIAL", null),
+                    null,
+                    new CalculoLoteItemRequest("7", "COMERCIAL", 5)
+            ), true);
+
+            assertThat(respostas).extracting(CalculoLoteItemResponse::erro).containsExactly(
+                    "Categoria inválida: INVALIDA",
+                    "Categoria não encontrada na tabela ativa.",
+                    "Consumo não pode ser negativo.",
+                    "Categoria não informada.",
+                    "Consumo não informado.",
+                    "Item do lote não pode ser nulo.",
+                    null
+            );
+            assertThat(respostas.get(6).resultado().valorTotal()).isEqualByComparingTo(new BigDecimal("25.00"));
+        }
+
+        @Test
+        @DisplayName("deve resolver a tabela ativa uma única vez por lote")
+        void deveResolverTabelaUmaVez() {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabelaComFaixas()));
+
+            calculoService.calcularLote(List.of(
+                    new CalculoLoteItemRequest("1", "COMERCIAL", 5),
+                    new CalculoLoteItemRequest("2", "COMERCIAL", 6),
+                    new CalculoLoteItemRequest("3", "COMERCIAL", 7)
+            ), true);
+
+            verify(tabelaRepo, times(1)).findAtivaComRelacionamentos();
+        }
+
+        @Test
+        @DisplayName("deve lançar os itens como itens de lote")
+        void deveLancarComoItensDeLote() {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabelaComFaixas()));
+
+            calculoService.calcularLote(List.of(new CalculoLoteItemRequest("1", "COMERCIAL", 15)), false);
+
+            CategoriaCompilada comercial = tarifaAtiva.obter().categoria(CategoriaConsumidor.COMERCIAL);
+            verify(lancamentos).registrarItemLote(1L, comercial, 15, new BigDecimal("100.00"));
+            verify(lancamentos, never()).registrar(any(), any(), anyInt(), any(), any());
+        }
+
+        @Test
+        @DisplayName("deve rejeitar lotes acima do limite de itens")
+        void deveRejeitarLoteAcimaDoLimite() {
+            List<CalculoLoteItemRequest> itens = List.of(
+                    new CalculoLoteItemRequest("1", "COMERCIAL", 5),
+                    new CalculoLoteItemRequest("2", "COMERCIAL", 6)
+            );
+
+            assertThatThrownBy(() -> calculoService.calcularLote(itens, true, 1))
+                    .isInstanceOf(BusinessException.class)
+                    .hasMessage("Lote com mais de 1 itens; use POST /api/calculos/lote/stream para lotes maiores.");
+        }
+
+        @Test
+        @DisplayName("deve calcular NDJSON à medida que lê e parar no limite de itens")
+        void deveCalcularNdjsonAteOLimite() throws IOException {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabelaComFaixas()));
+            ObjectReader leitor = new ObjectMapper().readerFor(CalculoLoteItemRequest.class);
+            String ndjson = """
+                    {"id":"a","categoria":"COMERCIAL","consumo":5}
+                    {"id":"b","categoria":"COMERCIAL","consumo":15}
+                    """;
+
+            List<CalculoLoteItemResponse> respostas = calculoService.calcularLote(
+                    leitor.<CalculoLoteItemRequest>readValues(ndjson), true, 2);
+
+            assertThat(respostas).extracting(CalculoLoteItemResponse::id).containsExactly("a", "b");
+            assertThatThrownBy(() -> calculoService.calcularLote(leitor.<CalculoLoteItemRequest>readValues(ndjson), true, 1))
+                    .isInstanceOf(BusinessException.class)
+                    .hasMessage("Lote com mais de 1 itens; use POST /api/calculos/lote/stream para lotes maiores.");
+        }
+    }
+
+    @Nested
+    @DisplayName("modo resumo e busca de faixa")
+    class ModoResumo {
+
+        @Test
+        @DisplayName("deve omitir o detalhamento no modo resumo")
+        void deveOmitirDetalhamentoNoResumo() {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabelaComFaixas()));
+
+            CalculoResponse response = calculoService.calcular(new CalculoRequest("COMERCIAL", 15), false);
+
+            assertThat(response.valorTotal()).isEqualByComparingTo(new BigDecimal("100.00"));
+            assertThat(response.detalhamento()).isNull();
+        }
+
+        @Test
+        @DisplayName("deve cobrar o consumo no limite exato da faixa apenas na primeira faixa")
+        void deveCalcularConsumoNoLimiteDaFaixa() {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabelaComFaixas()));
+
+            CalculoResponse response = calculoService.calcular(new CalculoRequest("COMERCIAL", 10));
+
+            assertThat(response.valorTotal()).isEqualByComparingTo(new BigDecimal("50.00"));
+            assertThat(response.detalhamento()).hasSize(1);
+            assertThat(response.detalhamento().get(0).m3Cobrados()).isEqualTo(10);
+        }
+
+        @Test
+        @DisplayName("deve produzir o mesmo resultado que percorrer as faixas uma a uma")
+        void deveEquivalerAoPercursoDasFaixas() {
+            // Faixas: [0-10] @ 1.10, [11-11] @ 2.20 (0 m³), [12-30] @ 3.30, [31-null) @ 4.40
+            TabelaTarifaria tabela = criarTabela(
+                    faixa(0, 10, "1.10"), faixa(11, 11, "2.20"), faixa(12, 30, "3.30"), faixa(31, null, "4.40"));
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(tabela));
+
+            for (int consumo = 0; consumo <= 60; consumo++) {
+                CalculoResponse response = calculoService.calcular(new CalculoRequest("COMERCIAL", consumo));
+
+                BigDecimal somaSubtotais = response.detalhamento().stream()
+                        .map(d -> d.subtotal())
+                        .reduce(BigDecimal.ZERO, BigDecimal::add);
+                int somaM3 = response.detalhamento().stream().mapToInt(d -> d.m3Cobrados()).sum();
+
+                assertThat(response.valorTotal()).isEqualTo(somaSubtotais);
+                assertThat(somaM3).isEqualTo(consumo);
+            }
+
+            CalculoResponse response = calculoService.calcular(new CalculoRequest("COMERCIAL", 35));
+            // 10 × 1.10 + 0 × 2.20 + 18 × 3.30 + 7 × 4.40 = 11.00 + 0.00 + 59.40 + 30.80
+            assertThat(response.valorTotal()).isEqualTo(new BigDecimal("101.20"));
+            assertThat(response.detalhamento()).extracting(d -> d.m3Cobrados()).containsExactly(10, 0, 18, 7);
+        }
+    }
+
+    @Nested
+    @DisplayName("consultar()")
+    class Consultar {
+
+        @Test
+        @DisplayName("deve gerar o mesmo ETag para a mesma tabela e os mesmos parâmetros")
+        void deveGerarEtagEstavel() {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabelaComFaixas()));
+
+            String etag = calculoService.consultar(new CalculoRequest("COMERCIAL", 15), true).etag();
+
+            assertThat(calculoService.consultar(new CalculoRequest("comercial", 15), true).etag()).isEqualTo(etag);
+            assertThat(calculoService.consultar(new CalculoRequest("COMERCIAL", 16), true).etag()).isNotEqualTo(etag);
+            assertThat(calculoService.consultar(new CalculoRequest("COMERCIAL", 15), false).etag()).isNotEqualTo(etag);
+        }
+
+        @Test
+        @DisplayName("deve mudar o ETag quando a tabela ativa muda")
+        void deveMudarEtagComNovaTabela() {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabelaComFaixas()));
+            String etag = calculoService.consultar(new CalculoRequest("COMERCIAL", 15), true).etag();
+
+            TabelaTarifaria nova = criarTabelaComFaixas();
+            nova.setId(2L);
+            publicar(nova);
+
+            assertThat(calculoService.consultar(new CalculoRequest("COMERCIAL", 15), true).etag()).isNotEqualTo(etag);
+        }
+
+        @Test
+        @DisplayName("deve mudar o ETag quando só a data de vigência muda, mesmo com o mesmo hash")
+        void deveMudarEtagComNovaDataVigencia() {
+            TabelaTarifaria tabela = criarTabelaComFaixas();
+            LocalDate dia = LocalDate.of(2025, 1, 1);
+            tabela.setDataVigencia(dia.atStartOfDay());
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(tabela));
+            String etag = calculoService.consultar(new CalculoRequest("COMERCIAL", 15), true).etag();
+
+            TabelaTarifaria mesmoId = criarTabelaComFaixas();
+            // (1 << 32) + 1 nanos: Long.hashCode dá 0, como meia-noite
+            mesmoId.setDataVigencia(dia.atTime(LocalTime.ofNanoOfDay((1L << 32) + 1)));
+            assertThat(mesmoId.getDataVigencia().hashCode()).isEqualTo(tabela.getDataVigencia().hashCode());
+            publicar(mesmoId);
+
+            assertThat(calculoService.consultar(new CalculoRequest("COMERCIAL", 15), true).etag()).isNotEqualTo(etag);
+        }
+
+        @Test
+        @DisplayName("deve calcular com a tabela que gerou o ETag")
+        void deveCalcularComTabelaDoEtag() {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabelaComFaixas()));
+            CalculoConsulta consulta = calculoService.consultar(new CalculoRequest("COMERCIAL", 15), true);
+
+            publicar(null);
+
+            assertThat(consulta.calcular().valorTotal()).isEqualByComparingTo(new BigDecimal("100.00"));
+        }
+
+        @Test
+        @DisplayName("deve lançar exceção para consumo negativo")
+        void deveLancarExcecaoConsumoNegativo() {
+            assertThatThrownBy(() -> calculoService.consultar(new CalculoRequest("COMERCIAL", -1), true))
+                    .isInstanceOf(BusinessException.class)
+                    .hasMessage("Consumo não pode ser negativo.");
+        }
+    }
+
+    @Nested
+    @DisplayName("tarifa compilada")
+    class TarifaCompiladaEmMemoria {
+
+        @Test
+        @DisplayName("deve consultar o banco apenas no primeiro cálculo")
+        void deveConsultarBancoUmaVez() {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabelaComFaixas()));
+
+            calculoService.calcular(new CalculoRequest("COMERCIAL", 5));
+            calculoService.calcular(new CalculoRequest("COMERCIAL", 15));
+
+            verify(tabelaRepo, times(1)).findAtivaComRelacionamentos();
+        }
+
+        @Test
+        @DisplayName("deve usar a nova tabela após evento de alteração sem recarregá-la do banco")
+        void deveTrocarTabelaAposEvento() {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.empty());
+            assertThatThrownBy(() -> calculoService.calcular(new CalculoRequest("COMERCIAL", 5)))
+                    .isInstanceOf(BusinessException.class);
+
+            publicar(criarTabelaComFaixas());
+
+            CalculoResponse response = calculoService.calcular(new CalculoRequest("COMERCIAL", 5));
+
+            assertThat(response.valorTotal()).isEqualByComparingTo(new BigDecimal("25.00"));
+            verify(tabelaRepo, times(1)).findAtivaComRelacionamentos();
+        }
+
+        @Test
+        @DisplayName("deve recusar cálculo após desativação da tabela")
+        void deveRecusarAposDesativacao() {
+            publicar(criarTabelaComFaixas());
+            publicar(null);
+
+            assertThatThrownBy(() -> calculoService.calcular(new CalculoRequest("COMERCIAL", 5)))
+                    .isInstanceOf(BusinessException.class)
+                    .hasMessage("Não existe tabela ativa.");
+        }
+    }
+
+    @Nested
+    @DisplayName("data de referência")
+    class DataReferencia {
+
+        private final LocalDateTime janeiro = LocalDateTime.of(2025, 1, 1, 0, 0);
+        private final LocalDateTime marco = LocalDateTime.of(2025, 3, 1, 0, 0);
+        private final LocalDateTime abril = LocalDateTime.of(2025, 4, 1, 0, 0);
+
+        /** Vigente de janeiro a março, com R$2,00 por m³. */
+        private TabelaTarifaria tabelaAntiga() {
+            TabelaTarifaria tabela = criarTabela(faixa(0, null, "2.00"));
+            tabela.setAtiva(false);
+            tabela.setDataVigencia(janeiro);
+            tabela.setDataDesativacao(marco);
+            return tabela;
+        }
+
+        /** Ativa desde abril; março fica sem tabela vigente. */
+        private TabelaTarifaria tabelaAtual() {
+            TabelaTarifaria tabela = criarTabelaComFaixas();
+            tabela.setDataVigencia(abril);
+            return tabela;
+        }
+
+        @Test
+        @DisplayName("deve calcular com a tabela vigente na data da leitura")
+        void deveUsarTabelaVigenteNaData() {
+            TabelaTarifaria atual = tabelaAtual();
+            when(tabelaRepo.findTodasComRelacionamentos()).thenReturn(List.of(tabelaAntiga(), atual));
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(atual));
+
+            CalculoResponse fevereiro = calculoService.calcular(
+                    new CalculoRequest("COMERCIAL", 5, LocalDateTime.of(2025, 2, 10, 8, 0)));
+            CalculoResponse maio = calculoService.calcular(
+                    new CalculoRequest("COMERCIAL", 5, LocalDateTime.of(2025, 5, 10, 8, 0)));
+            CalculoResponse inicioAbril = calculoService.calcular(new CalculoRequest("COMERCIAL", 5, abril));
+
+            assertThat(fevereiro.valorTotal()).isEqualByComparingTo(new BigDecimal("10.00"));
+            assertThat(maio.valorTotal()).isEqualByComparingTo(new BigDecimal("25.00"));
+            assertThat(inicioAbril.valorTotal()).isEqualByComparingTo(new BigDecimal("25.00"));
+        }
+
+        @Test
+        @DisplayName("deve compilar a tabela ativa do banco quando a troca ainda não chegou à memória")
+        void deveCompilarAtivaAusenteDaMemoria() {
+            when(tabelaRepo.findTodasComRelacionamentos()).thenReturn(List.of(tabelaAntiga(), tabelaAtual()));
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.empty());
+
+            CalculoResponse maio = calculoService.calcular(
+                    new CalculoRequest("COMERCIAL", 5, LocalDateTime.of(2025, 5, 10, 8, 0)));
+
+            assertThat(maio.valorTotal()).isEqualByComparingTo(new BigDecimal("25.00"));
+        }
+
+        @Test
+        @DisplayName("deve lançar exceção para data sem tabela vigente")
+        void deveLancarExcecaoSemTabelaVigente() {
+            when(tabelaRepo.findTodasComRelacionamentos()).thenReturn(List.of(tabelaAntiga()));
+
+            assertThatThrownBy(() -> calculoService.calcular(new CalculoRequest("COMERCIAL", 5, marco)))
+                    .isInstanceOf(BusinessException.class)
+                    .hasMessage("Nenhuma tabela tarifária vigente em 2025-03-01T00:00.");
+            assertThatThrownBy(() -> calculoService.calcular(
+                    new CalculoRequest("COMERCIAL", 5, LocalDateTime.of(2024, 12, 31, 23, 59))))
+                    .isInstanceOf(BusinessException.class)
+                    .hasMessage("Nenhuma tabela tarifária vigente em 2024-12-31T23:59.");
+        }
+
+        @Test
+        @DisplayName("deve calcular lote com datas sem exigir tabela ativa")
+        void deveCalcularLoteSomenteComDatas() {
+            when(tabelaRepo.findTodasComRelacionamentos()).thenReturn(List.of(tabelaAntiga()));
+
+            List<CalculoLoteItemResponse> respostas = calculoService.calcularLote(List.of(
+                    new CalculoLoteItemRequest("a", "COMERCIAL", 5, LocalDateTime.of(2025, 1, 15, 0, 0)),
+                    new CalculoLoteItemRequest("b", "COMERCIAL", 5, marco)
+            ), false);
+
+            assertThat(respostas.get(0).resultado().valorTotal()).isEqualByComparingTo(new BigDecimal("10.00"));
+            assertThat(respostas.get(1).erro()).isEqualTo("Nenhuma tabela tarifária vigente em 2025-03-01T00:00.");
+            verify(tabelaRepo, never()).findAtivaComRelacionamentos();
+        }
+
+        @Test
+        @DisplayName("deve carregar o histórico uma vez e recarregar após alteração de tabela")
+        void deveRecarregarHistoricoAposEvento() {
+            when(tabelaRepo.findTodasComRelacionamentos()).thenReturn(List.of(tabelaAntiga()));
+            LocalDateTime fevereiro = LocalDateTime.of(2025, 2, 1, 0, 0);
+
+            calculoService.calcularLote(List.of(
+                    new CalculoLoteItemRequest("a", "COMERCIAL", 1, fevereiro),
+                    new CalculoLoteItemRequest("b", "COMERCIAL", 2, fevereiro)
+            ), false);
+            calculoService.calcular(new CalculoRequest("COMERCIAL", 3, fevereiro));
+            verify(tabelaRepo, times(1)).findTodasComRelacionamentos();
+
+            tarifaHistorica.onTabelaAtivaAlterada(new TabelaAtivaAlteradaEvent(null));
+            calculoService.calcular(new CalculoRequest("COMERCIAL", 3, fevereiro));
+
+            verify(tabelaRepo, times(2)).findTodasComRelacionamentos();
+        }
+    }
+
+    @Nested
+    @DisplayName("métricas")
+    class Metricas {
+
+        @Test
+        @DisplayName("deve contar cálculos por categoria, faixas percorridas e uso do pré-cálculo")
+        void deveRegistrarCalculos() {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabelaComFaixas()));
+
+            calculoService.calcular(new CalculoRequest("COMERCIAL", 5));
+            calculoService.calcular(new CalculoRequest("comercial", 15));
+            calculoService.consultar(new CalculoRequest("COMERCIAL", 12), false).calcular();
+
+            assertThat(registry.get(TarifaMetricas.CALCULO).tag("categoria", "COMERCIAL").timer().count()).isEqualTo(3);
+            assertThat(registry.get(TarifaMetricas.CALCULO).tag("categoria", "INDUSTRIAL").timer().count()).isZero();
+            assertThat(registry.get(TarifaMetricas.FAIXAS).tag("categoria", "COMERCIAL").summary().totalAmount())
+                    .isEqualTo(5);
+            assertThat(registry.get(TarifaMetricas.PRECALCULO).tag("resultado", "acerto").counter().count()).isEqualTo(2);
+            assertThat(registry.get(TarifaMetricas.PRECALCULO).tag("resultado", "falta").counter().count()).isEqualTo(1);
+            assertThat(registry.get(TarifaMetricas.RESOLUCAO).tag("origem", "ativa").timer().count()).isEqualTo(3);
+        }
+
+        @Test
+        @DisplayName("deve classificar erros de itens do lote pelo tipo da exceção")
+        void deveClassificarErrosDoLote() {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabelaComFaixas()));
+
+            calculoService.calcularLote(List.of(
+                    new CalculoLoteItemRequest("1", "INVALIDA", 10),
+                    new CalculoLoteItemRequest("2", "XPTO", 10),
+                    new CalculoLoteItemRequest("3", "COMERCIAL", -1),
+                    new CalculoLoteItemRequest("4", "COMERCIAL", 10)
+            ), false);
+
+            assertThat(registry.get(TarifaMetricas.ERROS).tags("tipo", "categoria_invalida", "origem", "lote")
+                    .counter().count()).isEqualTo(2);
+            assertThat(registry.get(TarifaMetricas.ERROS).tags("tipo", "consumo_invalido", "origem", "lote")
+                    .counter().count()).isEqualTo(1);
+            assertThat(registry.get(TarifaMetricas.ERROS).tags("tipo", "entrada_invalida", "origem", "lote")
+                    .counter().count()).isZero();
+        }
+    }
+
+    /** Confirma a troca no banco simulado e entrega o evento, como depois do commit. */
+    private void publicar(TabelaTarifaria tabela) {
+        idNoBanco = tabela == null ? null : tabela.getId();
+        tarifaAtiva.onTabelaAtivaAlterada(new TabelaAtivaAlteradaEvent(tabela));
+    }
+
+    private TabelaTarifaria criarTabela(FaixaConsumo... faixas) {
+        TabelaTarifaria tabela = new TabelaTarifaria();
+        tabela.setId(2L);
+
+        TarifaCategoria categoria = new TarifaCategoria();
+        categoria.setTabelaTarifaria(tabela);
+        categoria.setCategoria(CategoriaConsumidor.COMERCIAL);
+        for (FaixaConsumo faixa : faixas) {
+            faixa.setTarifaCategoria(categoria);
+        }
+
+        categoria.setFaixas(Set.of(faixas));
+        tabela.setCategorias(Set.of(categoria));
+        return tabela;
+    }
+
+    private FaixaConsumo faixa(int inicio, Integer fim, String valorUnitario) {
+        FaixaConsumo faixa = new FaixaConsumo();
+        faixa.setInicio(inicio);
+        faixa.setFim(fim);
+        faixa.setValorUnitario(new BigDecimal(valorUnitario));
+        return faixa;
     }
 
     /**
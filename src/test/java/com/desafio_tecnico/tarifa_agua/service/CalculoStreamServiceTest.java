@@ -0,0 +1,305 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import com.desafio_tecnico.tarifa_agua.entity.FaixaConsumo;
+import com.desafio_tecnico.tarifa_agua.entity.TabelaTarifaria;
+import com.desafio_tecnico.tarifa_agua.entity.TarifaCategoria;
+import com.desafio_tecnico.tarifa_agua.exception.BusinessException;
+import com.desafio_tecnico.tarifa_agua.repository.TabelaTarifariaRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CalculoStreamServiceTest {
+
+    private static final int LIMITE_PRECALCULO = 200;
+
+    @Mock
+    private TabelaTarifariaRepository tabelaRepo;
+
+    @Mock
+    private LancamentosCalculo lancamentos;
+
+    @Mock
+    private HistogramaConsumo histograma;
+
+    private CalculoStreamService streamService;
+
+    @BeforeEach
+    void setUp() {
+        TarifaAtivaHolder tarifaAtiva = new TarifaAtivaHolder(tabelaRepo, LIMITE_PRECALCULO);
+        CalculoService calculoService = new CalculoService(tarifaAtiva, new TarifaHistoricaHolder(tabelaRepo, tarifaAtiva), new TarifaMetricas(new SimpleMeterRegistry()), lancamentos, histograma);
+        streamService = new CalculoStreamService(calculoService, new ObjectMapper().findAndRegisterModules());
+    }
+
+    @Nested
+    @DisplayName("processarCsv()")
+    class ProcessarCsv {
+
+        @Test
+        @DisplayName("deve calcular cada linha e manter a ordem de entrada")
+        void deveCalcularLinhas() throws IOException {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabelaComFaixas()));
+
+            String saida = processarCsv("""
+                    id,categoria,consumo
+                    a,COMERCIAL,5
+                    b,comercial,15
+                    """);
+
+            assertThat(saida).isEqualTo("""
+                    id,categoria,consumo,valorTotal,erro
+                    a,COMERCIAL,5,25.00,
+                    b,COMERCIAL,15,100.00,
+                    """);
+        }
+
+        @Test
+        @DisplayName("deve aceitar colunas em qualquer ordem e sem id")
+        void deveAceitarColunasEmOutraOrdem() throws IOException {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabelaComFaixas()));
+
+            String saida = processarCsv("""
+                    consumo,categoria
+                    5,COMERCIAL
+                    """);
+
+            assertThat(saida).endsWith(",COMERCIAL,5,25.00,\n");
+        }
+
+        @Test
+        @DisplayName("deve reportar erros por linha sem interromper o processamento")
+        void deveReportarErrosPorLinha() throws IOException {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabelaComFaixas()));
+
+            String saida = processarCsv("""
+                    id,categoria,consumo
+                    1,INVALIDA,5
+                    2,COMERCIAL,abc
+                    3,COMERCIAL
+                    4,COMERCIAL,5
+                    """);
+
+            assertThat(saida).isEqualTo("""
+                    id,categoria,consumo,valorTotal,erro
+                    1,,,,Categoria inválida: INVALIDA
+                    2,,,,Consumo não numérico: abc
+                    3,,,,Linha com colunas faltando.
+                    4,COMERCIAL,5,25.00,
+                    """);
+        }
+
+        @Test
+        @DisplayName("deve ler campos entre aspas e devolvê-los com as mesmas aspas")
+        void deveLerCamposEntreAspas() throws IOException {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabelaComFaixas()));
+
+            String saida = processarCsv("""
+                    id,categoria,consumo
+                    "cliente, 1",COMERCIAL,5
+                    "cliente ""2\"\"",COMERCIAL,"5"
+                    "cliente
+                    3",COMERCIAL,5
+                    4,"COMERCIAL,5
+                    """);
+
+            assertThat(saida).isEqualTo("""
+                    id,categoria,consumo,valorTotal,erro
+                    "cliente, 1",COMERCIAL,5,25.00,
+                    "cliente ""2\"\"",COMERCIAL,5,25.00,
+                    "cliente
+                    3",COMERCIAL,5,25.00,
+                    ,,,,Aspas não fechadas no fim do arquivo.
+                    """);
+        }
+
+        @Test
+        @DisplayName("deve limitar um campo entre aspas e continuar no registro seguinte")
+        void deveLimitarCampoEntreAspas() throws IOException {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabelaComFaixas()));
+            String longa = "x,\n".repeat(CalculoStreamService.CARACTERES_MAXIMOS_REGISTRO);
+
+            String saida = processarCsv("id,categoria,consumo\n\"a\n" + longa + "\",COMERCIAL,5\nb,COMERCIAL,5\n");
+
+            assertThat(saida).isEqualTo("""
+                    id,categoria,consumo,valorTotal,erro
+                    ,,,,Registro com mais de 65536 caracteres.
+                    b,COMERCIAL,5,25.00,
+                    """);
+        }
+
+        @Test
+        @DisplayName("deve limitar uma linha longa sem aspas e continuar na linha seguinte")
+        void deveLimitarLinhaLonga() throws IOException {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabelaComFaixas()));
+            String longa = "x".repeat(CalculoStreamService.CARACTERES_MAXIMOS_REGISTRO * 4);
+
+            String saida = processarCsv("id,categoria,consumo\r\n" + longa + ",COMERCIAL,5\r\nb,COMERCIAL,5\r\n");
+
+            assertThat(saida).isEqualTo("""
+                    id,categoria,consumo,valorTotal,erro
+                    ,,,,Registro com mais de 65536 caracteres.
+                    b,COMERCIAL,5,25.00,
+                    """);
+        }
+
+        @Test
+        @DisplayName("deve rejeitar um cabeçalho maior que o limite")
+        void deveRejeitarCabecalhoLongo() {
+            String longo = "x".repeat(CalculoStreamService.CARACTERES_MAXIMOS_REGISTRO + 1);
+
+            assertThatThrownBy(() -> processarCsv(longo + ",categoria,consumo\n"))
+                    .isInstanceOf(BusinessException.class)
+                    .hasMessage("Cabeçalho CSV inválido: Registro com mais de 65536 caracteres.");
+        }
+
+        @Test
+        @DisplayName("deve calcular com a tabela vigente na coluna dataReferencia")
+        void deveUsarDataReferencia() throws IOException {
+            TabelaTarifaria tabela = criarTabelaComFaixas();
+            tabela.setAtiva(true);
+            tabela.setDataVigencia(LocalDateTime.of(2025, 1, 1, 0, 0));
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(tabela));
+            when(tabelaRepo.findTodasComRelacionamentos()).thenReturn(List.of(tabela));
+
+            String saida = processarCsv("""
+                    id,categoria,consumo,dataReferencia
+                    a,COMERCIAL,5,2025-02-01T00:00
+                    b,COMERCIAL,5,2024-06-01T00:00
+                    c,COMERCIAL,5,ontem
+                    d,COMERCIAL,5,
+                    """);
+
+            assertThat(saida).isEqualTo("""
+                    id,categoria,consumo,valorTotal,erro
+                    a,COMERCIAL,5,25.00,
+                    b,,,,Nenhuma tabela tarifária vigente em 2024-06-01T00:00.
+                    c,,,,Data de referência inválida: ontem
+                    d,COMERCIAL,5,25.00,
+                    """);
+        }
+
+        @Test
+        @DisplayName("deve dispensar a tabela ativa quando todas as linhas têm data de referência")
+        void deveDispensarTabelaAtivaComDatas() throws IOException {
+            TabelaTarifaria tabela = criarTabelaComFaixas();
+            tabela.setAtiva(false);
+            tabela.setDataVigencia(LocalDateTime.of(2025, 1, 1, 0, 0));
+            tabela.setDataDesativacao(LocalDateTime.of(2026, 1, 1, 0, 0));
+            when(tabelaRepo.findTodasComRelacionamentos()).thenReturn(List.of(tabela));
+
+            String saida = processarCsv("""
+                    id,categoria,consumo,dataReferencia
+                    a,COMERCIAL,5,2025-02-01T00:00
+                    b,COMERCIAL,5,
+                    """);
+
+            assertThat(saida).isEqualTo("""
+                    id,categoria,consumo,valorTotal,erro
+                    a,COMERCIAL,5,25.00,
+                    b,,,,Não existe tabela ativa.
+                    """);
+        }
+
+        @Test
+        @DisplayName("deve lançar exceção quando o cabeçalho não tem as colunas obrigatórias")
+        void deveLancarExcecaoCabecalhoInvalido() {
+            assertThatThrownBy(() -> processarCsv("id,valor\n1,2\n"))
+                    .isInstanceOf(BusinessException.class)
+                    .hasMessage("Cabeçalho CSV deve conter as colunas categoria e consumo.");
+        }
+    }
+
+    @Nested
+    @DisplayName("processarNdjson()")
+    class ProcessarNdjson {
+
+        @Test
+        @DisplayName("deve escrever uma resposta por linha, incluindo linhas inválidas")
+        void deveEscreverUmaRespostaPorLinha() throws IOException {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabelaComFaixas()));
+
+            StringWriter saida = new StringWriter();
+            streamService.processarNdjson(new StringReader("""
+                    {"id":"a","categoria":"COMERCIAL","consumo":5}
+                    {não é json
+                    {"id":"c","categoria":"PUBLICO","consumo":5}
+                    """), saida, true);
+
+            String[] linhas = saida.toString().split("\n");
+            assertThat(linhas).hasSize(3);
+            assertThat(linhas[0]).contains("\"id\":\"a\"").contains("\"valorTotal\":25.00");
+            assertThat(linhas[1]).contains("\"erro\":\"Linha JSON inválida.\"");
+            assertThat(linhas[2]).contains("\"erro\":\"Categoria não encontrada na tabela ativa.\"");
+        }
+
+        @Test
+        @DisplayName("deve limitar uma linha longa e continuar na linha seguinte")
+        void deveLimitarLinhaLonga() throws IOException {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabelaComFaixas()));
+            String longa = "{\"id\":\"" + "x".repeat(CalculoStreamService.CARACTERES_MAXIMOS_REGISTRO * 4) + "\"}";
+
+            StringWriter saida = new StringWriter();
+            streamService.processarNdjson(new StringReader(longa + "\n"
+                    + "{\"id\":\"b\",\"categoria\":\"COMERCIAL\",\"consumo\":5}\n"), saida, false);
+
+            String[] linhas = saida.toString().split("\n");
+            assertThat(linhas).hasSize(2);
+            assertThat(linhas[0]).contains("\"erro\":\"Linha com mais de 65536 caracteres.\"");
+            assertThat(linhas[1]).contains("\"id\":\"b\"").contains("\"valorTotal\":25.00");
+        }
+    }
+
+    private String processarCsv(String entrada) throws IOException {
+        StringWriter saida = new StringWriter();
+        streamService.processarCsv(new StringReader(entrada), saida);
+        return saida.toString();
+    }
+
+    /**
+     * Categoria COMERCIAL com [0, 10] @ R$5.00 e [10, null) @ R$10.00.
+     */
+    private TabelaTarifaria criarTabelaComFaixas() {
+        TabelaTarifaria tabela = new TabelaTarifaria();
+        tabela.setId(1L);
+
+        TarifaCategoria categoria = new TarifaCategoria();
+        categoria.setTabelaTarifaria(tabela);
+        categoria.setCategoria(CategoriaConsumidor.COMERCIAL);
+
+        FaixaConsumo faixa1 = new FaixaConsumo();
+        faixa1.setTarifaCategoria(categoria);
+        faixa1.setInicio(0);
+        faixa1.setFim(10);
+        faixa1.setValorUnitario(new BigDecimal("5.00"));
+
+        FaixaConsumo faixa2 = new FaixaConsumo();
+        faixa2.setTarifaCategoria(categoria);
+        faixa2.setInicio(10);
+        faixa2.setValorUnitario(new BigDecimal("10.00"));
+
+        categoria.setFaixas(Set.of(faixa1, faixa2));
+        tabela.setCategorias(Set.of(categoria));
+        return tabela;
+    }
+}
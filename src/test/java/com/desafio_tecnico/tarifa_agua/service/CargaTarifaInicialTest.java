@@ -0,0 +1,75 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.repository.TabelaTarifariaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CargaTarifaInicialTest {
+
+    @Mock
+    private TabelaTarifariaRepository tabelaRepo;
+
+    @Mock
+    private SnapshotTarifaService snapshot;
+
+    private TarifaAtivaHolder holder;
+    private CargaTarifaInicial carga;
+
+    @BeforeEach
+    void setUp() {
+        holder = new TarifaAtivaHolder(tabelaRepo, -1);
+        carga = new CargaTarifaInicial(holder, snapshot, Duration.ofMillis(100));
+    }
+
+    @Test
+    @DisplayName("deve carregar do banco sem ler o snapshot quando o banco responde a tempo")
+    void deveCarregarDoBanco() throws Exception {
+        when(snapshot.arquivoConfigurado()).thenReturn(true);
+        when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(TabelaTarifariaFixture.comercial(2L)));
+
+        carga.run(null);
+
+        assertThat(holder.versaoPublicada().tarifa().getTabelaId()).isEqualTo(2L);
+        verify(snapshot, never()).lerArquivo();
+        verify(snapshot, timeout(1_000)).atualizarArquivo();
+    }
+
+    @Test
+    @DisplayName("deve publicar o snapshot com o banco lento e substituí-lo quando o banco responder")
+    void devePublicarSnapshotComBancoLento() throws Exception {
+        CountDownLatch bancoLiberado = new CountDownLatch(1);
+        when(snapshot.arquivoConfigurado()).thenReturn(true);
+        when(snapshot.lerArquivo()).thenReturn(Optional.of(TabelaTarifariaFixture.comercial(1L)));
+        when(tabelaRepo.findAtivaComRelacionamentos()).thenAnswer(invocation -> {
+            assertThat(bancoLiberado.await(5, TimeUnit.SECONDS)).isTrue();
+            return Optional.of(TabelaTarifariaFixture.comercial(2L));
+        });
+
+        carga.run(null);
+
+        assertThat(holder.versaoPublicada().numero()).isEqualTo(1);
+        assertThat(holder.versaoPublicada().tarifa().getTabelaId()).isEqualTo(1L);
+
+        bancoLiberado.countDown();
+        verify(snapshot, timeout(5_000)).atualizarArquivo();
+
+        assertThat(holder.versaoPublicada().numero()).isEqualTo(2);
+        assertThat(holder.versaoPublicada().tarifa().getTabelaId()).isEqualTo(2L);
+    }
+}
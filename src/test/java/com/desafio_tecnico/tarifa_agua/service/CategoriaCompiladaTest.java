@@ -0,0 +1,189 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.dto.DetalhamentoResponse;
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import com.desafio_tecnico.tarifa_agua.entity.FaixaConsumo;
+import com.desafio_tecnico.tarifa_agua.entity.TarifaCategoria;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CategoriaCompiladaTest {
+
+    @Nested
+    @DisplayName("cálculo em centavos")
+    class CalculoEmCentavos {
+
+        @Test
+        @DisplayName("deve dar resultado idêntico ao BigDecimal em tabelas aleatórias")
+        void deveSerIdenticoAoBigDecimal() {
+            Random random = new Random(20240601L);
+
+            for (int tabela = 0; tabela < 500; tabela++) {
+                TarifaCategoria tarifaCategoria = criarCategoriaAleatoria(random);
+                CategoriaCompilada compilada = CategoriaCompilada.compilar(tarifaCategoria);
+
+                for (int leitura = 0; leitura < 200; leitura++) {
+                    int consumo = consumoAleatorio(random);
+
+                    BigDecimal esperado = percorrerFaixas(tarifaCategoria, consumo);
+
+                    assertThat(compilada.valorTotal(consumo)).isEqualTo(esperado);
+                    assertThat(compilada.valorTotalDecimal(consumo)).isEqualTo(esperado);
+                    assertThat(compilada.detalhar(consumo).stream()
+                            .map(DetalhamentoResponse::subtotal)
+                            .reduce(BigDecimal.ZERO, BigDecimal::add))
+                            .isEqualByComparingTo(esperado);
+                }
+            }
+        }
+
+        @Test
+        @DisplayName("deve cair para BigDecimal quando o resultado não cabe em long")
+        void deveCairParaBigDecimalNoEstouro() {
+            TarifaCategoria tarifaCategoria = criarCategoria(
+                    faixa(0, 10, "1.00"),
+                    faixa(11, null, "99999999.99")
+            );
+            CategoriaCompilada compilada = CategoriaCompilada.compilar(tarifaCategoria);
+
+            // 10 × 1.00 + (MAX - 10) × 99999999.99 passa de Long.MAX_VALUE centavos
+            assertThatThrownBy(() -> compilada.valorTotalCentavos(Integer.MAX_VALUE))
+                    .isInstanceOf(ArithmeticException.class);
+            assertThat(compilada.valorTotal(Integer.MAX_VALUE))
+                    .isEqualTo(percorrerFaixas(tarifaCategoria, Integer.MAX_VALUE));
+        }
+
+        @Test
+        @DisplayName("deve devolver zero sem escala para consumo zero, como o cálculo original")
+        void deveDevolverZeroParaConsumoZero() {
+            CategoriaCompilada compilada = CategoriaCompilada.compilar(criarCategoria(faixa(0, null, "5.00")));
+
+            assertThat(compilada.valorTotal(0)).isSameAs(BigDecimal.ZERO);
+            assertThat(compilada.valorTotalCentavos(0)).isZero();
+        }
+    }
+
+    @Nested
+    @DisplayName("pré-cálculo")
+    class Precalculo {
+
+        @Test
+        @DisplayName("deve devolver os mesmos resultados com e sem pré-cálculo")
+        void deveSerIgualAoCalculoPorFaixas() {
+            Random random = new Random(7L);
+
+            for (int tabela = 0; tabela < 50; tabela++) {
+                TarifaCategoria tarifaCategoria = criarCategoriaAleatoria(random);
+                CategoriaCompilada semPrecalculo = CategoriaCompilada.compilar(tarifaCategoria);
+                CategoriaCompilada comPrecalculo = CategoriaCompilada.compilar(tarifaCategoria, 200);
+
+                for (int consumo = 0; consumo <= 260; consumo++) {
+                    assertThat(comPrecalculo.calcular(consumo, true))
+                            .isEqualTo(semPrecalculo.calcular(consumo, true));
+                }
+            }
+        }
+
+        @Test
+        @DisplayName("deve reutilizar o mesmo resultado dentro do limite")
+        void deveReutilizarResultadoPrecalculado() {
+            CategoriaCompilada compilada = CategoriaCompilada.compilar(
+                    criarCategoria(faixa(0, 10, "5.00"), faixa(11, null, "10.00")), 100);
+
+            assertThat(compilada.calcular(50, true).detalhamento())
+                    .isSameAs(compilada.calcular(50, true).detalhamento());
+            assertThat(compilada.calcular(101, true).detalhamento())
+                    .isNotSameAs(compilada.calcular(101, true).detalhamento());
+        }
+
+        @Test
+        @DisplayName("deve informar limite e memória ocupada")
+        void deveInformarLimiteEMemoria() {
+            TarifaCategoria tarifaCategoria = criarCategoria(faixa(0, 10, "5.00"), faixa(11, null, "10.00"));
+
+            CategoriaCompilada desligado = CategoriaCompilada.compilar(tarifaCategoria);
+            CategoriaCompilada ligado = CategoriaCompilada.compilar(tarifaCategoria, 200);
+
+            assertThat(desligado.limitePrecalculo()).isEqualTo(-1);
+            assertThat(ligado.limitePrecalculo()).isEqualTo(200);
+            assertThat(ligado.bytesPrecalculados()).isGreaterThan(desligado.bytesPrecalculados());
+        }
+    }
+
+    /**
+     * Implementação de referência: percorre as faixas em ordem como o cálculo fazia antes da
+     * compilação, com valores na escala do banco.
+     */
+    private BigDecimal percorrerFaixas(TarifaCategoria tarifaCategoria, int consumo) {
+        List<FaixaConsumo> ordenadas = tarifaCategoria.getFaixas().stream()
+                .sorted(Comparator.comparing(FaixaConsumo::getInicio))
+                .toList();
+
+        int consumoRestante = consumo;
+        BigDecimal valorTotal = BigDecimal.ZERO;
+        for (FaixaConsumo faixa : ordenadas) {
+            if (consumoRestante <= 0) break;
+
+            Integer fim = faixa.getFim();
+            int limiteFaixa = (fim != null) ? (fim - faixa.getInicio()) : consumoRestante;
+            int m3NaFaixa = Math.min(consumoRestante, limiteFaixa);
+
+            valorTotal = valorTotal.add(faixa.getValorUnitario().multiply(BigDecimal.valueOf(m3NaFaixa)));
+            consumoRestante -= m3NaFaixa;
+        }
+        return valorTotal;
+    }
+
+    private int consumoAleatorio(Random random) {
+        return switch (random.nextInt(4)) {
+            case 0 -> random.nextInt(30);
+            case 1 -> random.nextInt(1_000);
+            case 2 -> random.nextInt(100_000);
+            default -> random.nextInt(Integer.MAX_VALUE);
+        };
+    }
+
+    /**
+     * Faixas contíguas a partir de 0 com larguras entre 0 e 100 m³ e valores entre 0.00 e 9999.99,
+     * como a validação de criação permite.
+     */
+    private TarifaCategoria criarCategoriaAleatoria(Random random) {
+        int quantidade = 1 + random.nextInt(50);
+        List<FaixaConsumo> faixas = new ArrayList<>();
+        int inicio = 0;
+        for (int i = 0; i < quantidade; i++) {
+            boolean ultima = i == quantidade - 1;
+            Integer fim = ultima ? null : inicio + random.nextInt(101);
+            BigDecimal valor = BigDecimal.valueOf(random.nextInt(1_000_000), 2);
+            faixas.add(faixa(inicio, fim, valor.toPlainString()));
+            if (!ultima) inicio = fim + 1;
+        }
+        return criarCategoria(faixas.toArray(FaixaConsumo[]::new));
+    }
+
+    private TarifaCategoria criarCategoria(FaixaConsumo... faixas) {
+        TarifaCategoria categoria = new TarifaCategoria();
+        categoria.setCategoria(CategoriaConsumidor.COMERCIAL);
+        categoria.setFaixas(new HashSet<>(List.of(faixas)));
+        return categoria;
+    }
+
+    private FaixaConsumo faixa(int inicio, Integer fim, String valorUnitario) {
+        FaixaConsumo faixa = new FaixaConsumo();
+        faixa.setInicio(inicio);
+        faixa.setFim(fim);
+        faixa.setValorUnitario(new BigDecimal(valorUnitario));
+        return faixa;
+    }
+}
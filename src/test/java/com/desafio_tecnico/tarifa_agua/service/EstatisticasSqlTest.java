@@ -0,0 +1,126 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.dto.EstatisticasEndpointResponse;
+import com.desafio_tecnico.tarifa_agua.dto.EstatisticasSqlResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EstatisticasSqlTest {
+
+    private EstatisticasSql estatisticas;
+
+    @BeforeEach
+    void setUp() {
+        estatisticas = new EstatisticasSql(Duration.ofMillis(200), false);
+    }
+
+    @Test
+    @DisplayName("deve atribuir statements, cargas e fetches ao endpoint da thread")
+    void deveAtribuirAoEndpoint() {
+        estatisticas.iniciar();
+
+        estatisticas.entrarEndpoint("GET /api/tabelas-tarifarias");
+        estatisticas.registrarStatement();
+        estatisticas.registrarConsulta();
+        estatisticas.registrarEntidade(false);
+        estatisticas.registrarColecao(true);
+        estatisticas.registrarColecao(true);
+        estatisticas.registrarStatement();
+        estatisticas.registrarStatement();
+        estatisticas.sairEndpoint();
+        estatisticas.entrarEndpoint("GET /api/tabelas-tarifarias");
+        estatisticas.registrarStatement();
+        estatisticas.sairEndpoint();
+
+        EstatisticasEndpointResponse endpoint = endpoint(estatisticas.relatorio(), "GET /api/tabelas-tarifarias");
+        assertThat(endpoint.requisicoes()).isEqualTo(2);
+        assertThat(endpoint.statements()).isEqualTo(4);
+        assertThat(endpoint.statementsPorRequisicao()).isEqualTo(2.0);
+        assertThat(endpoint.consultas()).isEqualTo(1);
+        assertThat(endpoint.entidadesCarregadas()).isEqualTo(1);
+        assertThat(endpoint.colecoesBuscadas()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("deve registrar fora de requisição o que roda sem endpoint associado")
+    void deveRegistrarForaDeRequisicao() {
+        estatisticas.iniciar();
+
+        estatisticas.registrarStatement();
+
+        assertThat(endpoint(estatisticas.relatorio(), EstatisticasSql.FORA_DE_REQUISICAO).statements()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("não deve contar requisições com a coleta desligada")
+    void naoDeveContarDesligada() {
+        estatisticas.entrarEndpoint("GET /api/calculos");
+        estatisticas.sairEndpoint();
+
+        EstatisticasSqlResponse relatorio = estatisticas.relatorio();
+
+        assertThat(relatorio.ativa()).isFalse();
+        assertThat(relatorio.endpoints()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("deve guardar o tempo máximo por consulta lenta, com número limitado de consultas distintas")
+    void deveLimitarConsultasLentas() {
+        estatisticas.iniciar();
+        estatisticas.entrarEndpoint("GET /api/calculos");
+
+        estatisticas.registrarConsultaLenta("select 1", 250);
+        estatisticas.registrarConsultaLenta("select 1", 900);
+        for (int i = 0; i < EstatisticasSql.MAXIMO_CONSULTAS_LENTAS + 5; i++) {
+            estatisticas.registrarConsultaLenta("select " + (i + 2), 300);
+        }
+        estatisticas.sairEndpoint();
+
+        EstatisticasEndpointResponse endpoint = endpoint(estatisticas.relatorio(), "GET /api/calculos");
+        assertThat(endpoint.consultasLentas()).hasSize(EstatisticasSql.MAXIMO_CONSULTAS_LENTAS);
+        assertThat(endpoint.consultasLentas().get(0).sql()).isEqualTo("select 1");
+        assertThat(endpoint.consultasLentas().get(0).execucoes()).isEqualTo(2);
+        assertThat(endpoint.consultasLentas().get(0).tempoMaximoMs()).isEqualTo(900);
+    }
+
+    @Test
+    @DisplayName("iniciar deve descartar a coleta anterior")
+    void iniciarDeveDescartarColetaAnterior() {
+        estatisticas.iniciar();
+        estatisticas.entrarEndpoint("GET /api/calculos");
+        estatisticas.sairEndpoint();
+        estatisticas.parar();
+
+        assertThat(estatisticas.relatorio().endpoints()).hasSize(1);
+
+        estatisticas.iniciar();
+
+        assertThat(estatisticas.relatorio().endpoints()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("deve coletar desde a inicialização quando configurado")
+    void deveColetarDesdeInicio() {
+        EstatisticasSql desdeInicio = new EstatisticasSql(Duration.ofMillis(200), true);
+
+        desdeInicio.entrarEndpoint("GET /api/calculos");
+        desdeInicio.sairEndpoint();
+
+        EstatisticasSqlResponse relatorio = desdeInicio.relatorio();
+        assertThat(relatorio.ativa()).isTrue();
+        assertThat(relatorio.desde()).isNotNull();
+        assertThat(endpoint(relatorio, "GET /api/calculos").requisicoes()).isEqualTo(1);
+    }
+
+    private EstatisticasEndpointResponse endpoint(EstatisticasSqlResponse relatorio, String nome) {
+        return relatorio.endpoints().stream()
+                .filter(endpoint -> endpoint.endpoint().equals(nome))
+                .findFirst()
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,294 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.dto.FaixaHistogramaResponse;
+import com.desafio_tecnico.tarifa_agua.dto.HistogramaConsumoResponse;
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import com.desafio_tecnico.tarifa_agua.entity.TabelaTarifaria;
+import com.desafio_tecnico.tarifa_agua.exception.BusinessException;
+import com.desafio_tecnico.tarifa_agua.repository.TabelaTarifariaRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Date;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class HistogramaConsumoTest {
+
+    private static final YearMonth JANEIRO = YearMonth.of(2026, 1);
+    private static final YearMonth FEVEREIRO = YearMonth.of(2026, 2);
+    private static final ZoneId RECIFE = ZoneId.of("America/Recife");
+
+    @Mock
+    private TabelaTarifariaRepository tabelaRepo;
+
+    private final RelogioAjustavel relogio = new RelogioAjustavel();
+    private JdbcTemplateFalso jdbcTemplate;
+    private SimpleMeterRegistry registry;
+    private HistogramaConsumo histograma;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplateFalso();
+        registry = new SimpleMeterRegistry();
+        histograma = novaInstancia(100);
+        relogio.ajustar(meioDoMes(JANEIRO));
+    }
+
+    @Nested
+    @DisplayName("consultar()")
+    class Consultar {
+
+        @Test
+        @DisplayName("deve contar as leituras em cada faixa da tabela ativa")
+        void deveContarPorFaixaDaTabelaAtiva() {
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(criarTabela()));
+            for (int consumo : new int[]{0, 5, 10, 10, 11, 20, 21, 99, 100, 5_000}) {
+                histograma.registrar(CategoriaConsumidor.COMERCIAL, consumo);
+            }
+            histograma.registrar(CategoriaConsumidor.PUBLICO, 7);
+
+            HistogramaConsumoResponse resposta = histograma.consultar("comercial", JANEIRO, JANEIRO, null);
+
+            assertThat(resposta.leituras()).isEqualTo(10);
+            assertThat(resposta.acimaDoLimite()).isEqualTo(2);
+            assertThat(resposta.faixas()).extracting(FaixaHistogramaResponse::leituras).containsExactly(4L, 2L, 4L);
+            assertThat(resposta.faixas()).allMatch(FaixaHistogramaResponse::exata);
+        }
+
+        @Test
+        @DisplayName("deve usar os limites informados e marcar faixas que passam do limite de consumo")
+        void deveUsarLimitesInformados() {
+            for (int consumo : new int[]{3, 50, 95, 150, 250}) {
+                histograma.registrar(CategoriaConsumidor.PARTICULAR, consumo);
+            }
+
+            HistogramaConsumoResponse resposta = histograma.consultar("PARTICULAR", JANEIRO, JANEIRO, List.of(0, 90, 200));
+
+            assertThat(resposta.faixas()).extracting(FaixaHistogramaResponse::leituras).containsExactly(2L, 1L, 2L);
+            assertThat(resposta.faixas()).extracting(FaixaHistogramaResponse::exata).containsExactly(true, false, true);
+        }
+
+        @Test
+        @DisplayName("deve somar apenas os meses do período")
+        void deveSomarApenasMesesDoPeriodo() {
+            histograma.registrar(CategoriaConsumidor.PARTICULAR, 1);
+            relogio.ajustar(meioDoMes(FEVEREIRO));
+            histograma.registrar(CategoriaConsumidor.PARTICULAR, 1);
+            relogio.ajustar(meioDoMes(FEVEREIRO.plusMonths(1)));
+            histograma.registrar(CategoriaConsumidor.PARTICULAR, 1);
+
+            assertThat(histograma.consultar("PARTICULAR", JANEIRO, FEVEREIRO, List.of(0)).leituras()).isEqualTo(2);
+        }
+
+        @Test
+        @DisplayName("deve somar as outras instâncias e ajustar linhas gravadas com outro limite")
+        void deveSomarOutrasInstancias() {
+            histograma.registrar(CategoriaConsumidor.INDUSTRIAL, 10);
+            histograma.gravar();
+            histograma.registrar(CategoriaConsumidor.INDUSTRIAL, 10);
+
+            HistogramaConsumo outra = novaInstancia(20);
+            outra.registrar(CategoriaConsumidor.INDUSTRIAL, 10);
+            outra.registrar(CategoriaConsumidor.INDUSTRIAL, 15);
+            outra.registrar(CategoriaConsumidor.INDUSTRIAL, 60);
+            outra.gravar();
+
+            HistogramaConsumoResponse resposta = histograma.consultar("INDUSTRIAL", JANEIRO, JANEIRO, List.of(0, 11, 21));
+
+            // As duas leituras desta instância vêm da memória, não da linha gravada com uma só
+            assertThat(resposta.leituras()).isEqualTo(5);
+            assertThat(resposta.faixas()).extracting(FaixaHistogramaResponse::leituras).containsExactly(3L, 1L, 1L);
+        }
+
+        @Test
+        @DisplayName("deve rejeitar período invertido e limites fora de ordem")
+        void deveRejeitarEntradaInvalida() {
+            assertThatThrownBy(() -> histograma.consultar("PARTICULAR", FEVEREIRO, JANEIRO, List.of(0)))
+                    .isInstanceOf(BusinessException.class)
+                    .hasMessageStartingWith("Período do histograma inválido");
+            assertThatThrownBy(() -> histograma.consultar("PARTICULAR", JANEIRO, JANEIRO, List.of(0, 10, 10)))
+                    .isInstanceOf(BusinessException.class)
+                    .hasMessageStartingWith("Limites do histograma inválidos");
+            assertThatThrownBy(() -> histograma.consultar("RURAL", JANEIRO, JANEIRO, List.of(0)))
+                    .hasMessage("Categoria inválida: RURAL");
+        }
+    }
+
+    @Nested
+    @DisplayName("registrar() e gravar()")
+    class RegistrarEGravar {
+
+        @Test
+        @DisplayName("não deve perder contagens com várias threads no mesmo consumo")
+        void naoDevePerderContagensConcorrentes() throws Exception {
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            for (int thread = 0; thread < 8; thread++) {
+                executor.execute(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        histograma.registrar(CategoriaConsumidor.PARTICULAR, 12);
+                    }
+                });
+            }
+            executor.shutdown();
+            assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+            assertThat(histograma.contagens(CategoriaConsumidor.PARTICULAR, JANEIRO, JANEIRO)[12]).isEqualTo(80_000);
+        }
+
+        @Test
+        @DisplayName("deve contar a leitura no mês de America/Recife, não no mês UTC")
+        void deveContarNoMesDeRecife() {
+            // 01/02 02:30 UTC ainda é 31/01 23:30 em Recife
+            relogio.ajustar(Instant.parse("2026-02-01T02:30:00Z"));
+
+            histograma.registrar(CategoriaConsumidor.COMERCIAL, 4);
+
+            assertThat(histograma.contagens(CategoriaConsumidor.COMERCIAL, JANEIRO, JANEIRO)[4]).isEqualTo(1);
+            assertThat(histograma.contagens(CategoriaConsumidor.COMERCIAL, FEVEREIRO, FEVEREIRO)[4]).isZero();
+        }
+
+        @Test
+        @DisplayName("deve regravar o total depois de uma falha sem contar nada duas vezes")
+        void deveRegravarTotalDepoisDeFalha() {
+            histograma.registrar(CategoriaConsumidor.COMERCIAL, 4);
+            histograma.gravar();
+            jdbcTemplate.falhasRestantes = 1;
+            histograma.registrar(CategoriaConsumidor.COMERCIAL, 4);
+            histograma.gravar();
+            histograma.gravar();
+
+            assertThat(jdbcTemplate.linhas).hasSize(1);
+            assertThat(jdbcTemplate.linhas.values().iterator().next().contagens()[4]).isEqualTo(2);
+            assertThat(registry.get("tarifa.histograma.falhas").counter().count()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("deve tirar da memória o mês encerrado na segunda gravação depois do fim")
+        void deveTirarMesEncerradoDaMemoria() {
+            histograma.registrar(CategoriaConsumidor.COMERCIAL, 4);
+            relogio.ajustar(meioDoMes(FEVEREIRO));
+
+            histograma.gravar();
+            assertThat(registry.get("tarifa.histograma.periodos").gauge().value()).isEqualTo(1);
+            histograma.gravar();
+            assertThat(registry.get("tarifa.histograma.periodos").gauge().value()).isZero();
+
+            // Continua disponível pela linha gravada
+            assertThat(histograma.contagens(CategoriaConsumidor.COMERCIAL, JANEIRO, JANEIRO)[4]).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("desligado, não deve contar nem gravar")
+        void desligadoNaoDeveContar() {
+            HistogramaConsumo desligado = new HistogramaConsumo(jdbcTemplate, null, new SimpleMeterRegistry(), false, 100, 0);
+
+            desligado.registrar(CategoriaConsumidor.COMERCIAL, 4);
+            desligado.gravar();
+
+            assertThat(jdbcTemplate.linhas).isEmpty();
+        }
+    }
+
+    private HistogramaConsumo novaInstancia(int limiteConsumo) {
+        return new HistogramaConsumo(jdbcTemplate, new TarifaAtivaHolder(tabelaRepo, -1), registry, true, limiteConsumo, 0,
+                relogio);
+    }
+
+    private static Instant meioDoMes(YearMonth mes) {
+        return LocalDateTime.of(mes.getYear(), mes.getMonth(), 15, 12, 0).atZone(RECIFE).toInstant();
+    }
+
+    /** Relógio em Recife parado no instante ajustado. Só avança: o mês corrente fica guardado. */
+    private static final class RelogioAjustavel extends Clock {
+
+        private volatile Instant instante;
+
+        void ajustar(Instant instante) {
+            this.instante = instante;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return RECIFE;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zona) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instante;
+        }
+    }
+
+    /** COMERCIAL com [0, 10], [11, 20] e [21, ∞). */
+    private TabelaTarifaria criarTabela() {
+        return TabelaTarifariaFixture.tabela(1L)
+                .faixa(CategoriaConsumidor.COMERCIAL, 0, 10, "1.00")
+                .faixa(CategoriaConsumidor.COMERCIAL, 11, 20, "1.00")
+                .faixa(CategoriaConsumidor.COMERCIAL, 21, null, "1.00")
+                .criar();
+    }
+
+    /** Guarda as linhas como o upsert do banco: uma por categoria, mês e instância. */
+    private static final class JdbcTemplateFalso extends JdbcTemplate {
+
+        final Map<List<Object>, HistogramaConsumo.LinhaHistograma> linhas = new LinkedHashMap<>();
+        int falhasRestantes;
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            if (falhasRestantes-- > 0) {
+                throw new DataAccessResourceFailureException("banco fora do ar");
+            }
+            for (Object[] args : batchArgs) {
+                YearMonth mes = YearMonth.from(((Date) args[1]).toLocalDate());
+                linhas.put(List.of(args[0], mes, args[2]),
+                        new HistogramaConsumo.LinhaHistograma(mes, (String) args[2], ((long[]) args[3]).clone()));
+            }
+            return new int[batchArgs.size()];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            YearMonth inicio = YearMonth.from(((Date) args[1]).toLocalDate());
+            YearMonth fim = YearMonth.from(((Date) args[2]).toLocalDate());
+            List<T> resultado = new ArrayList<>();
+            linhas.forEach((chave, linha) -> {
+                if (chave.get(0).equals(args[0]) && !linha.mes().isBefore(inicio) && !linha.mes().isAfter(fim)) {
+                    resultado.add((T) linha);
+                }
+            });
+            return resultado;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.dto.CalculoRequest;
+import com.desafio_tecnico.tarifa_agua.dto.CalculoResponse;
+import com.desafio_tecnico.tarifa_agua.dto.DetalhamentoResponse;
+import com.desafio_tecnico.tarifa_agua.dto.FaixaInfo;
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import com.desafio_tecnico.tarifa_agua.entity.TabelaTarifaria;
+import com.desafio_tecnico.tarifa_agua.exception.BusinessException;
+import com.desafio_tecnico.tarifa_agua.repository.TabelaTarifariaRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotenciaCalculoTest {
+
+    @Mock
+    private TabelaTarifariaRepository tabelaRepo;
+
+    @Mock
+    private LancamentosCalculo lancamentos;
+
+    @Mock
+    private HistogramaConsumo histograma;
+
+    private TarifaAtivaHolder tarifaAtiva;
+
+    /** Id da tabela ativa no banco simulado, relido antes de cada publicação. */
+    private Long idNoBanco;
+
+    private CalculoService calculoService;
+
+    @BeforeEach
+    void setUp() {
+        tarifaAtiva = new TarifaAtivaHolder(tabelaRepo, -1);
+        lenient().when(tabelaRepo.findIdAtiva()).thenAnswer(invocation -> Optional.ofNullable(idNoBanco));
+        publicar(criarTabela(1L, "5.00"));
+        calculoService = new CalculoService(tarifaAtiva, new TarifaHistoricaHolder(tabelaRepo, tarifaAtiva),
+                new TarifaMetricas(new SimpleMeterRegistry()), lancamentos, histograma);
+    }
+
+    @Test
+    @DisplayName("deve devolver a resposta guardada para a mesma chave sem calcular de novo")
+    void deveDevolverRespostaGuardada() {
+        IdempotenciaCalculo idempotencia = idempotencia(false);
+
+        CalculoResponse primeira = idempotencia.calcular(new CalculoRequest("COMERCIAL", 15, null, "leitura-1"), true);
+        CalculoResponse reenvio = idempotencia.calcular(new CalculoRequest("COMERCIAL", 15, null, "leitura-1"), true);
+
+        assertThat(reenvio).isSameAs(primeira);
+        verify(lancamentos, times(1)).registrar(eq(1L), any(), eq(15), any(), eq("leitura-1"));
+    }
+
+    @Test
+    @DisplayName("deve calcular sempre quando não há chave")
+    void deveCalcularSemChave() {
+        IdempotenciaCalculo idempotencia = idempotencia(false);
+
+        idempotencia.calcular(new CalculoRequest("COMERCIAL", 15), true);
+        idempotencia.calcular(new CalculoRequest("COMERCIAL", 15), true);
+
+        verify(lancamentos, times(2)).registrar(eq(1L), any(), eq(15), any(), eq(null));
+    }
+
+    @Test
+    @DisplayName("deve calcular de novo com a nova tabela após troca da tabela ativa")
+    void deveSepararPorTabela() {
+        IdempotenciaCalculo idempotencia = idempotencia(false);
+        CalculoRequest request = new CalculoRequest("COMERCIAL", 5, null, "leitura-1");
+
+        CalculoResponse antes = idempotencia.calcular(request, false);
+        publicar(criarTabela(2L, "7.00"));
+        CalculoResponse depois = idempotencia.calcular(request, false);
+
+        assertThat(antes.valorTotal()).isEqualByComparingTo("25.00");
+        assertThat(depois.valorTotal()).isEqualByComparingTo("35.00");
+    }
+
+    @Test
+    @DisplayName("deve recusar a mesma chave com outra leitura")
+    void deveRecusarChaveEmOutraLeitura() {
+        IdempotenciaCalculo idempotencia = idempotencia(false);
+        idempotencia.calcular(new CalculoRequest("COMERCIAL", 15, null, "leitura-1"), true);
+
+        assertThatThrownBy(() -> idempotencia.calcular(new CalculoRequest("COMERCIAL", 16, null, "leitura-1"), true))
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Chave de idempotência já usada em outra requisição: leitura-1");
+    }
+
+    @Test
+    @DisplayName("deve recuperar dos lançamentos a chave fora do cache, sem calcular")
+    void deveRecuperarDosLancamentos() {
+        CalculoResponse gravada = new CalculoResponse("COMERCIAL", 5, new BigDecimal("25.00"), List.of(
+                new DetalhamentoResponse(new FaixaInfo(0, 10), 5, new BigDecimal("5.00"), new BigDecimal("25.00"))));
+        when(lancamentos.buscarPorChave(eq(1L), eq("leitura-1"), any())).thenReturn(Optional.of(gravada));
+
+        CalculoResponse resposta = idempotencia(true).calcular(new CalculoRequest("COMERCIAL", 5, null, "leitura-1"), false);
+
+        assertThat(resposta.valorTotal()).isEqualByComparingTo("25.00");
+        assertThat(resposta.detalhamento()).isNull();
+        verify(lancamentos, never()).registrar(any(), any(), anyInt(), any(), any());
+    }
+
+    @Test
+    @DisplayName("deve calcular de novo depois de uma falha na primeira tentativa")
+    void deveCalcularDeNovoAposFalha() {
+        when(lancamentos.buscarPorChave(eq(1L), eq("leitura-1"), any()))
+                .thenThrow(new IllegalStateException("banco fora do ar"))
+                .thenReturn(Optional.empty());
+        IdempotenciaCalculo idempotencia = idempotencia(true);
+        CalculoRequest request = new CalculoRequest("COMERCIAL", 15, null, "leitura-1");
+
+        assertThatThrownBy(() -> idempotencia.calcular(request, true))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("banco fora do ar");
+        CalculoResponse resposta = idempotencia.calcular(request, true);
+
+        assertThat(resposta.valorTotal()).isEqualByComparingTo("100.00");
+        verify(lancamentos, times(1)).registrar(eq(1L), any(), eq(15), any(), eq("leitura-1"));
+    }
+
+    private IdempotenciaCalculo idempotencia(boolean consultarLancamentos) {
+        return new IdempotenciaCalculo(calculoService, lancamentos, new SimpleMeterRegistry(),
+                Duration.ofMinutes(10), 1_000, consultarLancamentos);
+    }
+
+    /** Confirma a troca no banco simulado e entrega o evento, como depois do commit. */
+    private void publicar(TabelaTarifaria tabela) {
+        idNoBanco = tabela == null ? null : tabela.getId();
+        tarifaAtiva.onTabelaAtivaAlterada(new TabelaAtivaAlteradaEvent(tabela));
+    }
+
+    /** COMERCIAL com [0, 10) a {@code valorInicial} e [10, ∞) a R$10,00. */
+    private TabelaTarifaria criarTabela(Long id, String valorInicial) {
+        return TabelaTarifariaFixture.tabela(id)
+                .faixa(CategoriaConsumidor.COMERCIAL, 0, 10, valorInicial)
+                .faixa(CategoriaConsumidor.COMERCIAL, 10, null, "10.00")
+                .criar();
+    }
+}
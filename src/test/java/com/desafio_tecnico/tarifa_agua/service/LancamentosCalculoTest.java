@@ -0,0 +1,212 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class LancamentosCalculoTest {
+
+    private final CategoriaCompilada comercial = TarifaCompilada.compilar(TabelaTarifariaFixture.comercial(1L), -1)
+            .categoria(CategoriaConsumidor.COMERCIAL);
+    private final JdbcTemplateFalso jdbcTemplate = new JdbcTemplateFalso();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private LancamentosCalculo lancamentos;
+
+    @AfterEach
+    void tearDown() {
+        if (lancamentos != null) {
+            lancamentos.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("deve gravar em lotes com o detalhamento por faixa em JSON e a chave de idempotência")
+    void deveGravarEmLotes() throws Exception {
+        lancamentos = criar(100, 3, Duration.ofSeconds(5), LancamentosCalculo.PoliticaFilaCheia.BLOQUEAR, true);
+        lancamentos.start();
+
+        for (int i = 0; i < 6; i++) {
+            lancamentos.registrar(1L, comercial, 15, new BigDecimal("100.00"), "leitura-" + i);
+        }
+
+        assertThat(jdbcTemplate.lotesGravados.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(jdbcTemplate.lotes).extracting(List::size).containsExactly(3, 3);
+        PreparedStatement statement = mock(PreparedStatement.class);
+        jdbcTemplate.setter.setValues(statement, jdbcTemplate.lotes.get(0).get(0));
+        verify(statement).setLong(2, 1L);
+        verify(statement).setString(3, "COMERCIAL");
+        verify(statement).setInt(4, 15);
+        verify(statement).setBigDecimal(5, new BigDecimal("100.00"));
+        verify(statement).setString(6, "[{\"faixa\":{\"inicio\":0,\"fim\":10},\"m3Cobrados\":10,"
+                + "\"valorUnitario\":5.00,\"subtotal\":50.00},{\"faixa\":{\"inicio\":10,\"fim\":null},"
+                + "\"m3Cobrados\":5,\"valorUnitario\":10.00,\"subtotal\":50.00}]");
+        verify(statement).setString(7, "leitura-0");
+        assertThat(registry.get("tarifa.lancamentos.gravados").counter().count()).isEqualTo(6);
+    }
+
+    @Test
+    @DisplayName("deve gravar a fila inteira no encerramento")
+    void deveDrenarNoEncerramento() {
+        lancamentos = criar(100, 1_000, Duration.ofSeconds(5), LancamentosCalculo.PoliticaFilaCheia.BLOQUEAR, true);
+        lancamentos.start();
+        for (int i = 0; i < 10; i++) {
+            lancamentos.registrar(1L, comercial, i, BigDecimal.TEN, null);
+        }
+
+        lancamentos.stop();
+
+        assertThat(jdbcTemplate.lotes.stream().mapToInt(List::size).sum()).isEqualTo(10);
+        assertThat(lancamentos.pendentes()).isZero();
+    }
+
+    @Test
+    @DisplayName("deve tentar de novo o lote que falhou sem perder linhas")
+    void deveRepetirLoteComFalha() {
+        jdbcTemplate.falhasRestantes.set(1);
+        lancamentos = criar(100, 10, Duration.ofMillis(10), LancamentosCalculo.PoliticaFilaCheia.BLOQUEAR, true);
+        lancamentos.start();
+
+        lancamentos.registrar(1L, comercial, 5, BigDecimal.TEN, null);
+        lancamentos.stop();
+
+        assertThat(jdbcTemplate.lotes).extracting(List::size).containsExactly(1);
+        assertThat(registry.get("tarifa.lancamentos.falhas").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("deve gravar linha a linha e descartar só a linha recusada por erro permanente")
+    void deveDescartarLinhaRecusada() {
+        jdbcTemplate.consumoRecusado = 7;
+        lancamentos = criar(100, 10, Duration.ofSeconds(5), LancamentosCalculo.PoliticaFilaCheia.BLOQUEAR, true);
+        lancamentos.start();
+
+        lancamentos.registrar(1L, comercial, 5, BigDecimal.TEN, null);
+        lancamentos.registrar(1L, comercial, 7, BigDecimal.TEN, null);
+        lancamentos.registrar(1L, comercial, 9, BigDecimal.TEN, null);
+        lancamentos.stop();
+
+        assertThat(jdbcTemplate.lotes).flatExtracting(lote -> lote).extracting(LancamentosCalculo.Lancamento::consumo)
+                .containsExactly(5, 9);
+        assertThat(registry.get("tarifa.lancamentos.rejeitados").counter().count()).isEqualTo(1);
+        assertThat(registry.get("tarifa.lancamentos.gravados").counter().count()).isEqualTo(2);
+        assertThat(registry.get("tarifa.lancamentos.falhas").counter().count()).isZero();
+        assertThat(lancamentos.pendentes()).isZero();
+    }
+
+    @Test
+    @DisplayName("deve descartar e contar lançamentos com a fila cheia na política DESCARTAR")
+    void deveDescartarComFilaCheia() {
+        lancamentos = criar(2, 10, Duration.ofSeconds(5), LancamentosCalculo.PoliticaFilaCheia.DESCARTAR, true);
+
+        for (int i = 0; i < 5; i++) {
+            lancamentos.registrar(1L, comercial, 5, BigDecimal.TEN, null);
+        }
+
+        assertThat(lancamentos.pendentes()).isEqualTo(2);
+        assertThat(registry.get("tarifa.lancamentos.descartados").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("deve registrar itens de lote só com registrar-lotes ligado")
+    void deveRegistrarItensDeLoteSoQuandoLigado() {
+        lancamentos = criar(100, 10, Duration.ofSeconds(5), LancamentosCalculo.PoliticaFilaCheia.DESCARTAR, true);
+        lancamentos.registrarItemLote(1L, comercial, 5, BigDecimal.TEN);
+        assertThat(lancamentos.pendentes()).isZero();
+
+        lancamentos = criar(true, 100, 10, Duration.ofSeconds(5), LancamentosCalculo.PoliticaFilaCheia.DESCARTAR, true);
+        lancamentos.registrarItemLote(1L, comercial, 5, BigDecimal.TEN);
+        assertThat(lancamentos.pendentes()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("deve segurar a requisição com a fila cheia na política BLOQUEAR até haver espaço")
+    void deveBloquearAteHaverEspaco() throws Exception {
+        jdbcTemplate.falhasRestantes.set(1);
+        lancamentos = criar(1, 1, Duration.ofMillis(10), LancamentosCalculo.PoliticaFilaCheia.BLOQUEAR, true);
+        lancamentos.start();
+
+        for (int i = 0; i < 3; i++) {
+            lancamentos.registrar(1L, comercial, i, BigDecimal.TEN, null);
+        }
+        lancamentos.stop();
+
+        assertThat(jdbcTemplate.lotes.stream().mapToInt(List::size).sum()).isEqualTo(3);
+        assertThat(registry.get("tarifa.lancamentos.descartados").counter().count()).isZero();
+    }
+
+    @Test
+    @DisplayName("não deve enfileirar nada quando desligado")
+    void naoDeveEnfileirarDesligado() {
+        lancamentos = new LancamentosCalculo(jdbcTemplate, new ObjectMapper(), registry, false, true, 10, 10,
+                Duration.ofMillis(10), LancamentosCalculo.PoliticaFilaCheia.BLOQUEAR, true, Duration.ofSeconds(1));
+        lancamentos.start();
+
+        lancamentos.registrar(1L, comercial, 5, BigDecimal.TEN, null);
+
+        assertThat(lancamentos.pendentes()).isZero();
+        assertThat(lancamentos.isRunning()).isFalse();
+    }
+
+    private LancamentosCalculo criar(int capacidade, int tamanhoLote, Duration intervalo,
+                                     LancamentosCalculo.PoliticaFilaCheia politica, boolean drenar) {
+        return criar(false, capacidade, tamanhoLote, intervalo, politica, drenar);
+    }
+
+    private LancamentosCalculo criar(boolean registrarLotes, int capacidade, int tamanhoLote, Duration intervalo,
+                                     LancamentosCalculo.PoliticaFilaCheia politica, boolean drenar) {
+        return new LancamentosCalculo(jdbcTemplate, new ObjectMapper(), registry, true, registrarLotes, capacidade,
+                tamanhoLote, intervalo, politica, drenar, Duration.ofSeconds(5));
+    }
+
+    /**
+     * Guarda os lotes em vez de ir ao banco; falha as primeiras {@code falhasRestantes} chamadas e
+     * recusa todo lote com um lançamento de consumo {@code consumoRecusado}.
+     */
+    private static final class JdbcTemplateFalso extends JdbcTemplate {
+
+        final List<List<LancamentosCalculo.Lancamento>> lotes = new CopyOnWriteArrayList<>();
+        final CountDownLatch lotesGravados = new CountDownLatch(2);
+        final AtomicInteger falhasRestantes = new AtomicInteger();
+        volatile ParameterizedPreparedStatementSetter<LancamentosCalculo.Lancamento> setter;
+        volatile int consumoRecusado = -1;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+                                       ParameterizedPreparedStatementSetter<T> pss) {
+            if (falhasRestantes.getAndDecrement() > 0) {
+                throw new DataAccessResourceFailureException("banco fora do ar");
+            }
+            Collection<LancamentosCalculo.Lancamento> lote = (Collection<LancamentosCalculo.Lancamento>) batchArgs;
+            if (lote.stream().anyMatch(lancamento -> lancamento.consumo() == consumoRecusado)) {
+                throw new DataIntegrityViolationException("numeric field overflow");
+            }
+            lotes.add(new ArrayList<>(lote));
+            setter = (ParameterizedPreparedStatementSetter<LancamentosCalculo.Lancamento>) pss;
+            lotesGravados.countDown();
+            return new int[0][];
+        }
+    }
+}
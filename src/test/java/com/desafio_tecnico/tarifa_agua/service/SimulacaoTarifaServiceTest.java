@@ -0,0 +1,286 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.dto.CategoriaDTO;
+import com.desafio_tecnico.tarifa_agua.dto.FaixaDTO;
+import com.desafio_tecnico.tarifa_agua.dto.LeiturasConsumoDTO;
+import com.desafio_tecnico.tarifa_agua.dto.SimulacaoCategoriaResponse;
+import com.desafio_tecnico.tarifa_agua.dto.SimulacaoTarifaRequest;
+import com.desafio_tecnico.tarifa_agua.dto.SimulacaoTarifaResponse;
+import com.desafio_tecnico.tarifa_agua.dto.TabelaTarifariaRequest;
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import com.desafio_tecnico.tarifa_agua.entity.TabelaTarifaria;
+import com.desafio_tecnico.tarifa_agua.exception.BusinessException;
+import com.desafio_tecnico.tarifa_agua.repository.TabelaTarifariaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SimulacaoTarifaServiceTest {
+
+    @Mock
+    private TabelaTarifariaRepository tabelaRepo;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private HistogramaConsumo histogramaConsumo;
+
+    private TabelaTarifariaService tabelaService;
+
+    private SimulacaoTarifaService service;
+
+    @BeforeEach
+    void setUp() {
+        tabelaService = new TabelaTarifariaService(tabelaRepo, eventPublisher, null);
+        service = new SimulacaoTarifaService(tabelaService, new TarifaAtivaHolder(tabelaRepo, 50), histogramaConsumo);
+    }
+
+    // ======================= histograma informado =======================
+
+    @Nested
+    @DisplayName("com histograma informado")
+    class ComHistograma {
+
+        @Test
+        @DisplayName("deve calcular a receita de cada categoria nas duas tabelas")
+        void deveCalcularReceitaPorCategoria() {
+            ativar(tabelaUnica("2.00", "2.00"));
+
+            SimulacaoTarifaResponse resposta = service.simular(new SimulacaoTarifaRequest(
+                    tabelaUnica("3.00", "2.00"),
+                    List.of(
+                            new LeiturasConsumoDTO("COMERCIAL", 10, 1_000L),
+                            new LeiturasConsumoDTO("COMERCIAL", 0, 5L),
+                            new LeiturasConsumoDTO("particular", 20, 3L)
+                    ),
+                    null, null
+            ));
+
+            assertThat(resposta.tabelaAtualId()).isEqualTo(7L);
+            assertThat(resposta.leituras()).isEqualTo(1_008);
+            assertThat(resposta.receitaAtual()).isEqualByComparingTo("20120.00");
+            assertThat(resposta.receitaProposta()).isEqualByComparingTo("30120.00");
+            assertThat(resposta.diferenca()).isEqualByComparingTo("10000.00");
+            assertThat(resposta.variacaoPercentual()).isEqualByComparingTo("49.70");
+
+            Map<String, SimulacaoCategoriaResponse> categorias = porCategoria(resposta);
+            assertThat(categorias).containsOnlyKeys("COMERCIAL", "INDUSTRIAL", "PARTICULAR", "PUBLICO");
+
+            SimulacaoCategoriaResponse comercial = categorias.get("COMERCIAL");
+            assertThat(comercial.leituras()).isEqualTo(1_005);
+            assertThat(comercial.consumoTotal()).isEqualTo(10_000);
+            assertThat(comercial.receitaAtual()).isEqualByComparingTo("20000.00");
+            assertThat(comercial.receitaProposta()).isEqualByComparingTo("30000.00");
+            assertThat(comercial.variacaoPercentual()).isEqualByComparingTo("50.00");
+
+            assertThat(categorias.get("PARTICULAR").diferenca()).isEqualByComparingTo("0");
+            assertThat(categorias.get("INDUSTRIAL").leituras()).isZero();
+            assertThat(categorias.get("INDUSTRIAL").variacaoPercentual()).isNull();
+        }
+
+        @Test
+        @DisplayName("deve somar o mesmo que calcular leitura por leitura")
+        void deveSomarIgualAoCalculoPorLeitura() {
+            TabelaTarifariaRequest atualRequest = tabelaEmFaixas("1.50", "3.25", "7.10");
+            TabelaTarifariaRequest propostaRequest = tabelaEmFaixas("1.75", "3.10", "8.45");
+            ativar(atualRequest);
+
+            Random random = new Random(42);
+            List<LeiturasConsumoDTO> histograma = new ArrayList<>();
+            BigDecimal esperadoAtual = BigDecimal.ZERO;
+            BigDecimal esperadoProposta = BigDecimal.ZERO;
+            TarifaCompilada atual = compilar(atualRequest);
+            TarifaCompilada proposta = compilar(propostaRequest);
+            for (int i = 0; i < 200; i++) {
+                CategoriaConsumidor categoria = CategoriaConsumidor.values()[random.nextInt(4)];
+                int consumo = random.nextInt(120);
+                long leituras = random.nextInt(50);
+                histograma.add(new LeiturasConsumoDTO(categoria.name(), consumo, leituras));
+                for (long leitura = 0; leitura < leituras; leitura++) {
+                    esperadoAtual = esperadoAtual.add(atual.categoria(categoria).calcular(consumo, false).valorTotal());
+                    esperadoProposta = esperadoProposta.add(proposta.categoria(categoria).calcular(consumo, false).valorTotal());
+                }
+            }
+
+            SimulacaoTarifaResponse resposta = service.simular(
+                    new SimulacaoTarifaRequest(propostaRequest, histograma, null, null));
+
+            assertThat(resposta.receitaAtual()).isEqualByComparingTo(esperadoAtual);
+            assertThat(resposta.receitaProposta()).isEqualByComparingTo(esperadoProposta);
+        }
+
+        @Test
+        @DisplayName("deve manter o valor exato quando a receita não cabe em centavos long")
+        void deveManterValorExatoSemEstouro() {
+            ativar(tabelaUnica("2.00", "2.00"));
+            long leituras = Long.MAX_VALUE / 100;
+
+            SimulacaoTarifaResponse resposta = service.simular(new SimulacaoTarifaRequest(
+                    tabelaUnica("2.00", "2.00"),
+                    List.of(new LeiturasConsumoDTO("COMERCIAL", 10, leituras)),
+                    null, null
+            ));
+
+            assertThat(resposta.receitaAtual())
+                    .isEqualByComparingTo(new BigDecimal("20.00").multiply(BigDecimal.valueOf(leituras)));
+            assertThat(resposta.diferenca()).isEqualByComparingTo("0");
+        }
+
+        @Test
+        @DisplayName("deve rejeitar categoria inválida no histograma")
+        void deveRejeitarCategoriaInvalida() {
+            ativar(tabelaUnica("2.00", "2.00"));
+
+            assertThatThrownBy(() -> service.simular(new SimulacaoTarifaRequest(
+                    tabelaUnica("3.00", "2.00"),
+                    List.of(new LeiturasConsumoDTO("RURAL", 10, 1L)),
+                    null, null
+            )))
+                    .isInstanceOf(BusinessException.class)
+                    .hasMessage("Categoria inválida: RURAL");
+        }
+    }
+
+    // ======================= lançamentos de um período =======================
+
+    @Nested
+    @DisplayName("com período do histograma de consumo")
+    class ComPeriodo {
+
+        @Test
+        @DisplayName("deve usar as contagens dos meses do período, valorando as acima do limite no limite")
+        void deveUsarHistogramaDoPeriodo() {
+            ativar(tabelaUnica("2.00", "2.00"));
+            YearMonth inicio = YearMonth.of(2025, 1);
+            YearMonth fim = YearMonth.of(2025, 12);
+            long[] publico = new long[11];
+            publico[5] = 4;
+            publico[10] = 2;
+            when(histogramaConsumo.contagens(any(), eq(inicio), eq(fim))).thenReturn(new long[11]);
+            when(histogramaConsumo.contagens(CategoriaConsumidor.PUBLICO, inicio, fim)).thenReturn(publico);
+
+            SimulacaoTarifaResponse resposta = service.simular(
+                    new SimulacaoTarifaRequest(tabelaUnica("2.00", "2.50"), null, inicio, fim));
+
+            SimulacaoCategoriaResponse categoria = porCategoria(resposta).get("PUBLICO");
+            assertThat(categoria.leituras()).isEqualTo(6);
+            assertThat(categoria.acimaDoLimite()).isEqualTo(2);
+            assertThat(categoria.receitaAtual()).isEqualByComparingTo("80.00");
+            assertThat(categoria.receitaProposta()).isEqualByComparingTo("100.00");
+            assertThat(categoria.variacaoPercentual()).isEqualByComparingTo("25.00");
+            assertThat(resposta.leituras()).isEqualTo(6);
+            assertThat(resposta.acimaDoLimite()).isEqualTo(2);
+        }
+
+        @Test
+        @DisplayName("deve rejeitar histograma e período juntos")
+        void deveRejeitarHistogramaEPeriodo() {
+            SimulacaoTarifaRequest request = new SimulacaoTarifaRequest(tabelaUnica("2.00", "2.00"),
+                    List.of(), YearMonth.of(2025, 1), YearMonth.of(2025, 12));
+
+            assertThatThrownBy(() -> service.simular(request))
+                    .isInstanceOf(BusinessException.class)
+                    .hasMessageStartingWith("Simulação aceita o histograma");
+            verifyNoInteractions(histogramaConsumo);
+        }
+
+        @Test
+        @DisplayName("deve rejeitar requisição sem histograma nem período, e período sem fim, invertido ou longo demais")
+        void deveRejeitarPeriodoIncompleto() {
+            YearMonth mes = YearMonth.of(2025, 1);
+
+            assertThatThrownBy(() -> service.simular(
+                    new SimulacaoTarifaRequest(tabelaUnica("2.00", "2.00"), null, null, null)))
+                    .hasMessageStartingWith("Simulação exige o histograma");
+            assertThatThrownBy(() -> service.simular(
+                    new SimulacaoTarifaRequest(tabelaUnica("2.00", "2.00"), null, mes, null)))
+                    .hasMessageStartingWith("Simulação exige início e fim");
+            assertThatThrownBy(() -> service.simular(
+                    new SimulacaoTarifaRequest(tabelaUnica("2.00", "2.00"), null, mes, mes.minusMonths(1))))
+                    .hasMessageStartingWith("Simulação exige início e fim");
+            assertThatThrownBy(() -> service.simular(
+                    new SimulacaoTarifaRequest(tabelaUnica("2.00", "2.00"), null, mes, mes.plusMonths(121))))
+                    .hasMessageStartingWith("Simulação exige início e fim");
+            verifyNoInteractions(histogramaConsumo);
+        }
+    }
+
+    @Test
+    @DisplayName("deve validar a tabela proposta como na criação, sem gravar nada")
+    void deveValidarTabelaPropostaSemGravar() {
+        TabelaTarifariaRequest incompleta = new TabelaTarifariaRequest("Proposta", List.of(
+                new CategoriaDTO("COMERCIAL", List.of(new FaixaDTO(0, null, new BigDecimal("2.00"))))
+        ));
+
+        assertThatThrownBy(() -> service.simular(new SimulacaoTarifaRequest(incompleta, List.of(), null, null)))
+                .isInstanceOf(BusinessException.class)
+                .hasMessageStartingWith("Tabela deve conter todas as categorias obrigatórias");
+        verifyNoInteractions(tabelaRepo, eventPublisher, histogramaConsumo);
+    }
+
+    private void ativar(TabelaTarifariaRequest request) {
+        TabelaTarifaria tabela = tabelaService.montarTabela(request);
+        tabela.setId(7L);
+        tabela.setAtiva(true);
+        when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(tabela));
+    }
+
+    private TarifaCompilada compilar(TabelaTarifariaRequest request) {
+        return TarifaCompilada.compilar(tabelaService.montarTabela(request));
+    }
+
+    private static Map<String, SimulacaoCategoriaResponse> porCategoria(SimulacaoTarifaResponse resposta) {
+        return resposta.categorias().stream()
+                .collect(Collectors.toMap(SimulacaoCategoriaResponse::categoria, Function.identity()));
+    }
+
+    /** COMERCIAL e PUBLICO com os valores informados e as demais a R$2,00, em faixa única. */
+    private static TabelaTarifariaRequest tabelaUnica(String comercial, String publico) {
+        List<FaixaDTO> padrao = List.of(new FaixaDTO(0, null, new BigDecimal("2.00")));
+        return new TabelaTarifariaRequest("Tabela", List.of(
+                new CategoriaDTO("COMERCIAL", List.of(new FaixaDTO(0, null, new BigDecimal(comercial)))),
+                new CategoriaDTO("INDUSTRIAL", padrao),
+                new CategoriaDTO("PARTICULAR", padrao),
+                new CategoriaDTO("PUBLICO", List.of(new FaixaDTO(0, null, new BigDecimal(publico))))
+        ));
+    }
+
+    /** Todas as categorias com [0, 10], [11, 20] e [21, ∞). */
+    private static TabelaTarifariaRequest tabelaEmFaixas(String primeira, String segunda, String terceira) {
+        List<FaixaDTO> faixas = List.of(
+                new FaixaDTO(0, 10, new BigDecimal(primeira)),
+                new FaixaDTO(11, 20, new BigDecimal(segunda)),
+                new FaixaDTO(21, null, new BigDecimal(terceira))
+        );
+        return new TabelaTarifariaRequest("Tabela", List.of(
+                new CategoriaDTO("COMERCIAL", faixas),
+                new CategoriaDTO("INDUSTRIAL", faixas),
+                new CategoriaDTO("PARTICULAR", faixas),
+                new CategoriaDTO("PUBLICO", faixas)
+        ));
+    }
+}
@@ -0,0 +1,177 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.TarifaAguaApplication;
+import com.desafio_tecnico.tarifa_agua.dto.CategoriaDTO;
+import com.desafio_tecnico.tarifa_agua.dto.FaixaDTO;
+import com.desafio_tecnico.tarifa_agua.dto.TabelaTarifariaRequest;
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Duas instâncias da aplicação sobre o mesmo PostgreSQL (embarcado): o contexto do teste e uma
+ * segunda instância sem servidor web. A verificação periódica fica desligada na prática (1h) para
+ * que a propagação observada venha só do LISTEN/NOTIFY.
+ * <p>
+ * O contexto do teste usa um banco que só existe durante a classe: a conexão em LISTEN e a gravação
+ * de lançamentos param antes de o banco fechar, para não ficarem tentando reconectar, e o contexto
+ * não volta ao cache de contextos.
+ */
+@SpringBootTest(properties = {
+        "tarifa.sincronizacao.verificacao=1h",
+        "tarifa.sincronizacao.espera-reconexao=200ms"
+})
+@DirtiesContext
+class SincronizacaoTabelaAtivaIntegracaoTest {
+
+    private static final EmbeddedPostgres POSTGRES = iniciarPostgres();
+
+    private static ConfigurableApplicationContext outraInstancia;
+
+    @Autowired
+    private TarifaAtivaHolder tarifaAtiva;
+
+    @Autowired
+    private TabelaTarifariaService tabelaService;
+
+    @Autowired
+    private SincronizacaoTabelaAtiva sincronizacao;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ConfigurableApplicationContext contexto;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", SincronizacaoTabelaAtivaIntegracaoTest::url);
+    }
+
+    @BeforeAll
+    static void iniciarOutraInstancia() {
+        outraInstancia = new SpringApplicationBuilder(TarifaAguaApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + url(),
+                        "--tarifa.sincronizacao.verificacao=1h",
+                        "--tarifa.sincronizacao.espera-reconexao=200ms");
+    }
+
+    @AfterAll
+    static void encerrar(@Autowired ConfigurableApplicationContext contexto) throws IOException {
+        outraInstancia.close();
+        contexto.stop();
+        POSTGRES.close();
+    }
+
+    @BeforeEach
+    void semTabelaAtiva() {
+        jdbcTemplate.update("UPDATE tabela_tarifaria SET ativa = false, data_desativacao = now() WHERE ativa");
+        // O UPDATE acima não passa pelo Hibernate, então nenhuma instância invalida o próprio cache
+        for (ConfigurableApplicationContext instancia : List.of(contexto, outraInstancia)) {
+            instancia.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getCache().evictAllRegions();
+        }
+        for (TarifaAtivaHolder holder : List.of(tarifaAtiva, outraInstancia.getBean(TarifaAtivaHolder.class))) {
+            holder.versaoAtual();
+            holder.recarregar();
+        }
+        await().atMost(Duration.ofSeconds(10)).until(() -> sincronizacao.isEscutando()
+                && outraInstancia.getBean(SincronizacaoTabelaAtiva.class).isEscutando());
+    }
+
+    @Test
+    @DisplayName("tabela criada em outra instância deve chegar a esta sem consulta a cada cálculo")
+    void devePropagarCriacaoDeOutraInstancia() {
+        long criada = outraInstancia.getBean(TabelaTarifariaService.class).criarTabela(requisicao()).id();
+
+        await().atMost(Duration.ofSeconds(2)).until(() -> idEmMemoria(tarifaAtiva) != null);
+
+        assertThat(idEmMemoria(tarifaAtiva)).isEqualTo(criada);
+    }
+
+    @Test
+    @DisplayName("desativação local deve chegar à outra instância")
+    void devePropagarDesativacao() {
+        TarifaAtivaHolder outroHolder = outraInstancia.getBean(TarifaAtivaHolder.class);
+        long criada = tabelaService.criarTabela(requisicao()).id();
+        await().atMost(Duration.ofSeconds(2)).until(() -> idEmMemoria(outroHolder) != null);
+
+        tabelaService.excluir(criada);
+
+        await().atMost(Duration.ofSeconds(2)).until(() -> idEmMemoria(outroHolder) == null);
+    }
+
+    @Test
+    @DisplayName("não deve recarregar ao receber a própria notificação")
+    void deveIgnorarPropriaNotificacao() throws InterruptedException {
+        long versaoAntes = tarifaAtiva.versaoAtual().numero();
+
+        tabelaService.criarTabela(requisicao());
+        Thread.sleep(500);
+
+        assertThat(tarifaAtiva.versaoAtual().numero()).isEqualTo(versaoAntes + 1);
+    }
+
+    @Test
+    @DisplayName("verificação periódica deve corrigir alteração feita sem notificação")
+    void verificacaoDeveCorrigirNotificacaoPerdida() {
+        long criada = tabelaService.criarTabela(requisicao()).id();
+        jdbcTemplate.update("UPDATE tabela_tarifaria SET ativa = false, data_desativacao = now() WHERE id = ?", criada);
+        assertThat(idEmMemoria(tarifaAtiva)).isEqualTo(criada);
+
+        sincronizacao.verificar();
+
+        assertThat(idEmMemoria(tarifaAtiva)).isNull();
+    }
+
+    private static Long idEmMemoria(TarifaAtivaHolder holder) {
+        TarifaCompilada tarifa = holder.versaoAtual().tarifa();
+        return tarifa == null ? null : tarifa.getTabelaId();
+    }
+
+    private static TabelaTarifariaRequest requisicao() {
+        List<CategoriaDTO> categorias = new ArrayList<>();
+        for (CategoriaConsumidor categoria : CategoriaConsumidor.values()) {
+            categorias.add(new CategoriaDTO(categoria.name(), List.of(
+                    new FaixaDTO(0, 10, new BigDecimal("5.00")),
+                    new FaixaDTO(11, null, new BigDecimal("10.00")))));
+        }
+        return new TabelaTarifariaRequest("Tabela Integração", categorias);
+    }
+
+    private static String url() {
+        return POSTGRES.getJdbcUrl("postgres", "postgres") + "&reWriteBatchedInserts=true";
+    }
+
+    private static EmbeddedPostgres iniciarPostgres() {
+        try {
+            return EmbeddedPostgres.builder().start();
+        } catch (IOException e) {
+            throw new IllegalStateException("Não foi possível iniciar o PostgreSQL embarcado", e);
+        }
+    }
+}
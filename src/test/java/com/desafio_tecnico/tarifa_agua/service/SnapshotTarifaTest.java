@@ -0,0 +1,210 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.dto.CategoriaDTO;
+import com.desafio_tecnico.tarifa_agua.dto.FaixaDTO;
+import com.desafio_tecnico.tarifa_agua.dto.TabelaTarifariaRequest;
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import com.desafio_tecnico.tarifa_agua.entity.TabelaTarifaria;
+import com.desafio_tecnico.tarifa_agua.exception.BusinessException;
+import com.desafio_tecnico.tarifa_agua.repository.TabelaTarifariaRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SnapshotTarifaTest {
+
+    private static final LocalDateTime VIGENCIA = LocalDateTime.of(2026, 3, 1, 8, 30, 15, 123_456_789);
+
+    @Mock
+    private TabelaTarifariaRepository tabelaRepo;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private TabelaTarifariaService tabelaService;
+
+    // ======================= formato =======================
+
+    @Nested
+    @DisplayName("escrever() e ler()")
+    class Formato {
+
+        @Test
+        @DisplayName("deve preservar id, vigência, nome, categorias e faixas")
+        void devePreservarTabela() {
+            SnapshotTarifa.Conteudo conteudo = SnapshotTarifa.ler(SnapshotTarifa.escrever(tabela()));
+
+            assertThat(conteudo.tabelaId()).isEqualTo(7L);
+            assertThat(conteudo.dataVigencia()).isEqualTo(VIGENCIA);
+            assertThat(conteudo.tabela()).isEqualTo(requestValida());
+        }
+
+        @Test
+        @DisplayName("deve recusar snapshot com checksum divergente")
+        void deveRecusarChecksumDivergente() {
+            byte[] dados = SnapshotTarifa.escrever(tabela());
+            dados[20] ^= 1;
+
+            assertThatThrownBy(() -> SnapshotTarifa.ler(dados))
+                    .isInstanceOf(BusinessException.class)
+                    .hasMessage("Snapshot inválido: checksum não confere.");
+        }
+
+        @Test
+        @DisplayName("deve recusar snapshot de outro formato mesmo com checksum válido")
+        void deveRecusarOutroFormato() {
+            byte[] corpo = SnapshotTarifa.escrever(tabela());
+            corpo[4] = 99;
+
+            assertThatThrownBy(() -> SnapshotTarifa.ler(comChecksum(corpo, corpo.length - 4)))
+                    .isInstanceOf(BusinessException.class)
+                    .hasMessage("Snapshot inválido: formato não reconhecido.");
+        }
+
+        @Test
+        @DisplayName("deve recusar snapshot truncado mesmo com checksum válido")
+        void deveRecusarTruncado() {
+            byte[] corpo = SnapshotTarifa.escrever(tabela());
+
+            assertThatThrownBy(() -> SnapshotTarifa.ler(comChecksum(corpo, corpo.length - 20)))
+                    .isInstanceOf(BusinessException.class)
+                    .hasMessage("Snapshot inválido: conteúdo truncado ou corrompido.");
+        }
+    }
+
+    // ======================= arquivo =======================
+
+    @Nested
+    @DisplayName("arquivo local")
+    class Arquivo {
+
+        @TempDir
+        Path diretorio;
+
+        @Test
+        @DisplayName("deve gravar a tabela ativa e lê-la de volta validada, com id e vigência")
+        void deveGravarELer() {
+            SnapshotTarifaService snapshot = service(diretorio.resolve("tabela.snapshot"));
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(tabela()));
+
+            snapshot.atualizarArquivo();
+            TabelaTarifaria lida = snapshot.lerArquivo().orElseThrow();
+
+            assertThat(lida.getId()).isEqualTo(7L);
+            assertThat(lida.getDataVigencia()).isEqualTo(VIGENCIA);
+            assertThat(lida.getCategorias()).hasSize(4);
+            assertThat(TarifaCompilada.compilar(lida, -1).categoria(CategoriaConsumidor.COMERCIAL)
+                    .calcular(15, false).valorTotal()).isEqualByComparingTo("100.00");
+        }
+
+        @Test
+        @DisplayName("deve remover o arquivo quando não há tabela ativa")
+        void deveRemoverSemTabelaAtiva() throws Exception {
+            Path arquivo = diretorio.resolve("tabela.snapshot");
+            Files.write(arquivo, SnapshotTarifa.escrever(tabela()));
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.empty());
+
+            service(arquivo).atualizarArquivo();
+
+            assertThat(arquivo).doesNotExist();
+        }
+
+        @Test
+        @DisplayName("deve ignorar arquivo confirmado há mais que a idade máxima")
+        void deveIgnorarArquivoAntigo() throws Exception {
+            Path arquivo = diretorio.resolve("tabela.snapshot");
+            Files.write(arquivo, SnapshotTarifa.escrever(tabela()));
+            Files.setLastModifiedTime(arquivo, FileTime.from(Instant.now().minus(Duration.ofHours(2))));
+
+            assertThat(service(arquivo).lerArquivo()).isEmpty();
+        }
+
+        @Test
+        @DisplayName("deve renovar a idade só do arquivo gravado com a mesma tabela ativa")
+        void deveRenovarArquivoDaMesmaTabela() throws Exception {
+            Path arquivo = diretorio.resolve("tabela.snapshot");
+            SnapshotTarifaService snapshot = service(arquivo);
+            when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(tabela()));
+            snapshot.atualizarArquivo();
+            FileTime antigo = FileTime.from(Instant.now().minus(Duration.ofHours(2)));
+            Files.setLastModifiedTime(arquivo, antigo);
+
+            snapshot.confirmarArquivo(8L);
+            assertThat(Files.getLastModifiedTime(arquivo)).isEqualTo(antigo);
+
+            snapshot.confirmarArquivo(7L);
+            assertThat(snapshot.lerArquivo()).isPresent();
+        }
+
+        @Test
+        @DisplayName("deve ignorar arquivo com tabela que não passa na validação")
+        void deveIgnorarTabelaInvalida() throws Exception {
+            Path arquivo = diretorio.resolve("tabela.snapshot");
+            TabelaTarifaria incompleta = tabela();
+            incompleta.getCategorias().removeIf(categoria -> categoria.getCategoria() == CategoriaConsumidor.PUBLICO);
+            Files.write(arquivo, SnapshotTarifa.escrever(incompleta));
+
+            assertThat(service(arquivo).lerArquivo()).isEmpty();
+        }
+
+        private SnapshotTarifaService service(Path arquivo) {
+            return new SnapshotTarifaService(tabelaRepo, tabelaService, arquivo.toString(), Duration.ofHours(1));
+        }
+    }
+
+    // ======================= Helpers =======================
+
+    private TabelaTarifaria tabela() {
+        TabelaTarifaria tabela = tabelaService.montarTabela(requestValida());
+        tabela.setId(7L);
+        tabela.setDataVigencia(VIGENCIA);
+        return tabela;
+    }
+
+    /** Categorias em ordem alfabética, que é a ordem em que o snapshot as grava. */
+    private TabelaTarifariaRequest requestValida() {
+        List<FaixaDTO> faixas = List.of(
+                new FaixaDTO(0, 10, new BigDecimal("5.00")),
+                new FaixaDTO(11, null, new BigDecimal("10.00"))
+        );
+        return new TabelaTarifariaRequest("Tabela Teste", List.of(
+                new CategoriaDTO("COMERCIAL", faixas),
+                new CategoriaDTO("INDUSTRIAL", faixas),
+                new CategoriaDTO("PARTICULAR", faixas),
+                new CategoriaDTO("PUBLICO", faixas)
+        ));
+    }
+
+    /** Os primeiros {@code tamanho} bytes de {@code dados}, seguidos de um CRC32 válido. */
+    private byte[] comChecksum(byte[] dados, int tamanho) {
+        byte[] corpo = Arrays.copyOf(dados, tamanho);
+        CRC32 crc = new CRC32();
+        crc.update(corpo);
+        return ByteBuffer.allocate(tamanho + 4).put(corpo).putInt((int) crc.getValue()).array();
+    }
+}
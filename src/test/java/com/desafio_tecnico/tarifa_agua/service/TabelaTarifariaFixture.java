@@ -0,0 +1,55 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import com.desafio_tecnico.tarifa_agua.entity.FaixaConsumo;
+import com.desafio_tecnico.tarifa_agua.entity.TabelaTarifaria;
+import com.desafio_tecnico.tarifa_agua.entity.TarifaCategoria;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.Map;
+
+/** Tabela ativa em memória, com categorias e faixas ligadas nos dois sentidos, como o Hibernate carrega. */
+final class TabelaTarifariaFixture {
+
+    private final TabelaTarifaria tabela = new TabelaTarifaria();
+    private final Map<CategoriaConsumidor, TarifaCategoria> categorias = new EnumMap<>(CategoriaConsumidor.class);
+
+    private TabelaTarifariaFixture(Long id) {
+        tabela.setId(id);
+        tabela.setAtiva(true);
+    }
+
+    static TabelaTarifariaFixture tabela(Long id) {
+        return new TabelaTarifariaFixture(id);
+    }
+
+    /** COMERCIAL com [0, 10) a R$5,00 e [10, ∞) a R$10,00. */
+    static TabelaTarifaria comercial(Long id) {
+        return tabela(id)
+                .faixa(CategoriaConsumidor.COMERCIAL, 0, 10, "5.00")
+                .faixa(CategoriaConsumidor.COMERCIAL, 10, null, "10.00")
+                .criar();
+    }
+
+    TabelaTarifariaFixture faixa(CategoriaConsumidor nome, int inicio, Integer fim, String valorUnitario) {
+        TarifaCategoria categoria = categorias.computeIfAbsent(nome, chave -> {
+            TarifaCategoria nova = new TarifaCategoria();
+            nova.setTabelaTarifaria(tabela);
+            nova.setCategoria(chave);
+            tabela.getCategorias().add(nova);
+            return nova;
+        });
+        FaixaConsumo faixa = new FaixaConsumo();
+        faixa.setTarifaCategoria(categoria);
+        faixa.setInicio(inicio);
+        faixa.setFim(fim);
+        faixa.setValorUnitario(new BigDecimal(valorUnitario));
+        categoria.getFaixas().add(faixa);
+        return this;
+    }
+
+    TabelaTarifaria criar() {
+        return tabela;
+    }
+}
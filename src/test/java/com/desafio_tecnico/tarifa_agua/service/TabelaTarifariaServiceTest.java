@@ -1,24 +1,35 @@
 package com.desafio_tecnico.tarifa_agua.service;
 
+import com.desafio_tecnico.tarifa_agua.config.RelogioConfig;
 import com.desafio_tecnico.tarifa_agua.dto.CategoriaDTO;
 import com.desafio_tecnico.tarifa_agua.dto.FaixaDTO;
 import com.desafio_tecnico.tarifa_agua.dto.TabelaTarifariaCriadaResponse;
+import com.desafio_tecnico.tarifa_agua.dto.TabelaTarifariaCursorResponse;
 import com.desafio_tecnico.tarifa_agua.dto.TabelaTarifariaExclusaoResponse;
 import com.desafio_tecnico.tarifa_agua.dto.TabelaTarifariaRequest;
+import com.desafio_tecnico.tarifa_agua.dto.TabelaTarifariaResponse;
 import com.desafio_tecnico.tarifa_agua.entity.TabelaTarifaria;
 import com.desafio_tecnico.tarifa_agua.exception.BusinessException;
-import com.desafio_tecnico.tarifa_agua.repository.FaixaConsumoRepository;
 import com.desafio_tecnico.tarifa_agua.repository.TabelaTarifariaRepository;
-import com.desafio_tecnico.tarifa_agua.repository.TarifaCategoriaRepository;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 
 import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -36,10 +47,10 @@ class TabelaTarifariaServiceTest {
     private TabelaTarifariaRepository tabelaRepo;
 
     @Mock
-    private TarifaCategoriaRepository tarifaCatRepo;
+    private ApplicationEventPublisher eventPublisher;
 
-    @Mock
-    private FaixaConsumoRepository faixaRepo;
+    @Spy
+    private Clock relogio = Clock.fixed(Instant.parse("2026-03-01T15:00:00Z"), RelogioConfig.FUSO_HORARIO);
 
     @InjectMocks
     private TabelaTarifariaService service;
@@ -82,6 +93,21 @@ class TabelaTarifariaServiceTest {
             verify(tabelaRepo).save(any(TabelaTarifaria.class));
         }
 
+        @Test
+        @DisplayName("deve publicar a nova tabela ativa com categorias e faixas")
+        void devePublicarTabelaAtiva() {
+            when(tabelaRepo.findFirstByAtivaTrue()).thenReturn(Optional.empty());
+            when(tabelaRepo.save(any(TabelaTarifaria.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+            service.criarTabela(criarRequestValida());
+
+            ArgumentCaptor<TabelaAtivaAlteradaEvent> captor = ArgumentCaptor.forClass(TabelaAtivaAlteradaEvent.class);
+            verify(eventPublisher).publishEvent(captor.capture());
+            TabelaTarifaria publicada = captor.getValue().tabelaAtiva();
+            assertThat(publicada.getCategorias()).hasSize(4);
+            assertThat(publicada.getCategorias()).allSatisfy(c -> assertThat(c.getFaixas()).hasSize(2));
+        }
+
         @Test
         @DisplayName("deve lançar exceção para categoria inválida")
         void deveLancarExcecaoCategoriaInvalida() {
@@ -316,7 +342,9 @@ class TabelaTarifariaServiceTest {
             assertThat(response.id()).isEqualTo(1L);
             assertThat(response.ativa()).isFalse();
             assertThat(response.mensagem()).isEqualTo("Tabela desativada com sucesso");
+            assertThat(tabela.getDataDesativacao()).isEqualTo(LocalDateTime.of(2026, 3, 1, 12, 0));
             verify(tabelaRepo).save(tabela);
+            verify(eventPublisher).publishEvent(new TabelaAtivaAlteradaEvent(null));
         }
 
         @Test
@@ -334,6 +362,115 @@ class TabelaTarifariaServiceTest {
         }
     }
 
+    // ======================= listar() =======================
+
+    @Nested
+    @DisplayName("listar()")
+    class Listar {
+
+        @Test
+        @DisplayName("deve paginar ids e carregar relacionamentos mantendo a ordem da página")
+        void deveManterOrdemDaPagina() {
+            PageRequest pageable = PageRequest.of(1, 2, Sort.by(Sort.Direction.DESC, "dataVigencia"));
+            when(tabelaRepo.findIds(pageable)).thenReturn(new PageImpl<>(List.of(3L, 1L), pageable, 5));
+            when(tabelaRepo.findComRelacionamentosByIdIn(List.of(3L, 1L)))
+                    .thenReturn(List.of(tabela(1L, "Antiga"), tabela(3L, "Recente")));
+
+            Page<TabelaTarifariaResponse> page = service.listar(pageable);
+
+            assertThat(page.getContent()).extracting(TabelaTarifariaResponse::id).containsExactly(3L, 1L);
+            assertThat(page.getContent()).extracting(TabelaTarifariaResponse::nome).containsExactly("Recente", "Antiga");
+            assertThat(page.getTotalElements()).isEqualTo(5);
+            assertThat(page.getNumber()).isEqualTo(1);
+        }
+
+        @Test
+        @DisplayName("não deve buscar relacionamentos quando a página está vazia")
+        void naoDeveBuscarRelacionamentosSemIds() {
+            PageRequest pageable = PageRequest.of(3, 20);
+            when(tabelaRepo.findIds(pageable)).thenReturn(new PageImpl<>(List.of(), pageable, 2));
+
+            Page<TabelaTarifariaResponse> page = service.listar(pageable);
+
+            assertThat(page.getContent()).isEmpty();
+            assertThat(page.getTotalElements()).isEqualTo(2);
+            verify(tabelaRepo, never()).findComRelacionamentosByIdIn(any());
+        }
+
+        private TabelaTarifaria tabela(Long id, String nome) {
+            TabelaTarifaria tabela = new TabelaTarifaria();
+            tabela.setId(id);
+            tabela.setNome(nome);
+            return tabela;
+        }
+    }
+
+    // ======================= listarHistorico() =======================
+
+    @Nested
+    @DisplayName("listarHistorico()")
+    class ListarHistorico {
+
+        @Test
+        @DisplayName("deve devolver cursor da última tabela quando existe próxima página")
+        void deveDevolverCursorComProximaPagina() {
+            LocalDateTime vigencia = LocalDateTime.of(2025, 3, 1, 10, 0, 0, 123_000);
+            when(tabelaRepo.findPrimeirosIdsPorVigencia(3)).thenReturn(List.of(1L, 2L, 3L));
+            when(tabelaRepo.findComRelacionamentosByIdIn(List.of(1L, 2L)))
+                    .thenReturn(List.of(tabela(2L, vigencia), tabela(1L, vigencia.minusDays(1))));
+
+            TabelaTarifariaCursorResponse primeira = service.listarHistorico(null, 2);
+
+            assertThat(primeira.conteudo()).extracting(TabelaTarifariaResponse::id).containsExactly(1L, 2L);
+            assertThat(primeira.proximoCursor()).isNotBlank();
+
+            when(tabelaRepo.findIdsPorVigenciaApos(vigencia, 2L, 3)).thenReturn(List.of(3L));
+            when(tabelaRepo.findComRelacionamentosByIdIn(List.of(3L)))
+                    .thenReturn(List.of(tabela(3L, vigencia.plusDays(1))));
+
+            TabelaTarifariaCursorResponse segunda = service.listarHistorico(primeira.proximoCursor(), 2);
+
+            assertThat(segunda.conteudo()).extracting(TabelaTarifariaResponse::id).containsExactly(3L);
+            assertThat(segunda.proximoCursor()).isNull();
+        }
+
+        @Test
+        @DisplayName("não deve buscar relacionamentos quando o histórico acabou")
+        void deveDevolverPaginaVaziaNoFim() {
+            when(tabelaRepo.findPrimeirosIdsPorVigencia(21)).thenReturn(List.of());
+
+            TabelaTarifariaCursorResponse response = service.listarHistorico("", 20);
+
+            assertThat(response.conteudo()).isEmpty();
+            assertThat(response.proximoCursor()).isNull();
+            verify(tabelaRepo, never()).findComRelacionamentosByIdIn(any());
+        }
+
+        @Test
+        @DisplayName("deve lançar exceção para cursor inválido")
+        void deveLancarExcecaoCursorInvalido() {
+            assertThatThrownBy(() -> service.listarHistorico("nao-e-um-cursor", 20))
+                    .isInstanceOf(BusinessException.class)
+                    .hasMessage("Cursor inválido.");
+        }
+
+        @Test
+        @DisplayName("deve lançar exceção para tamanho fora do limite")
+        void deveLancarExcecaoTamanhoInvalido() {
+            assertThatThrownBy(() -> service.listarHistorico(null, 0))
+                    .isInstanceOf(BusinessException.class)
+                    .hasMessage("size deve estar entre 1 e 100.");
+        }
+
+        private TabelaTarifaria tabela(Long id, LocalDateTime dataVigencia) {
+            TabelaTarifaria tabela = new TabelaTarifaria();
+            tabela.setId(id);
+            tabela.setNome("Tabela " + id);
+            tabela.setDataVigencia(dataVigencia);
+            return tabela;
+        }
+    }
+
     // ======================= Helpers =======================
 
     private TabelaTarifariaRequest criarRequestValida() {
@@ -0,0 +1,171 @@
+package com.desafio_tecnico.tarifa_agua.service;
+
+import com.desafio_tecnico.tarifa_agua.entity.CategoriaConsumidor;
+import com.desafio_tecnico.tarifa_agua.entity.TabelaTarifaria;
+import com.desafio_tecnico.tarifa_agua.exception.BusinessException;
+import com.desafio_tecnico.tarifa_agua.repository.TabelaTarifariaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TarifaAtivaHolderTest {
+
+    @Mock
+    private TabelaTarifariaRepository tabelaRepo;
+
+    private TarifaAtivaHolder holder;
+
+    /** Id da tabela ativa no banco simulado, relido antes de cada publicação. */
+    private Long idNoBanco;
+
+    @BeforeEach
+    void setUp() {
+        holder = new TarifaAtivaHolder(tabelaRepo, -1);
+        lenient().when(tabelaRepo.findIdAtiva()).thenAnswer(invocation -> Optional.ofNullable(idNoBanco));
+    }
+
+    @Test
+    @DisplayName("deve carregar do banco uma vez e publicar a versão 1")
+    void deveCarregarUmaVez() {
+        when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(TabelaTarifariaFixture.comercial(1L)));
+
+        TarifaAtivaHolder.Versao primeira = holder.versaoAtual();
+        TarifaAtivaHolder.Versao segunda = holder.versaoAtual();
+
+        assertThat(primeira.numero()).isEqualTo(1);
+        assertThat(segunda).isSameAs(primeira);
+        verify(tabelaRepo, times(1)).findAtivaComRelacionamentos();
+    }
+
+    @Test
+    @DisplayName("deve incrementar a versão a cada tabela publicada, inclusive na desativação")
+    void deveIncrementarVersao() {
+        publicar(TabelaTarifariaFixture.comercial(1L));
+        publicar(null);
+        publicar(TabelaTarifariaFixture.comercial(2L));
+
+        TarifaAtivaHolder.Versao versao = holder.versaoAtual();
+
+        assertThat(versao.numero()).isEqualTo(3);
+        assertThat(versao.tarifa().getTabelaId()).isEqualTo(2L);
+    }
+
+    @Test
+    @DisplayName("não deve sobrescrever versão publicada enquanto o banco era lido")
+    void naoDeveSobrescreverVersaoMaisNova() {
+        TabelaTarifaria nova = TabelaTarifariaFixture.comercial(2L);
+        when(tabelaRepo.findAtivaComRelacionamentos()).thenAnswer(invocation -> {
+            publicar(nova);
+            return Optional.of(TabelaTarifariaFixture.comercial(1L));
+        });
+
+        TarifaCompilada tarifa = holder.obter();
+
+        assertThat(tarifa.getTabelaId()).isEqualTo(2L);
+        assertThat(holder.versaoAtual().numero()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("deve recarregar do banco em vez de publicar um evento superado por outra troca")
+    void deveRecarregarEventoSuperado() {
+        publicar(TabelaTarifariaFixture.comercial(1L));
+        TabelaTarifaria superada = TabelaTarifariaFixture.comercial(2L);
+        idNoBanco = 3L;
+        when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(TabelaTarifariaFixture.comercial(3L)));
+
+        holder.onTabelaAtivaAlterada(new TabelaAtivaAlteradaEvent(superada));
+
+        assertThat(holder.obter().getTabelaId()).isEqualTo(3L);
+        assertThat(holder.versaoAtual().numero()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("não deve publicar a desativação quando o banco já tem outra tabela ativa")
+    void naoDevePublicarDesativacaoSuperada() {
+        publicar(TabelaTarifariaFixture.comercial(1L));
+        idNoBanco = 2L;
+        when(tabelaRepo.findAtivaComRelacionamentos()).thenReturn(Optional.of(TabelaTarifariaFixture.comercial(2L)));
+
+        holder.onTabelaAtivaAlterada(new TabelaAtivaAlteradaEvent(null));
+
+        assertThat(holder.obter().getTabelaId()).isEqualTo(2L);
+    }
+
+    @Test
+    @DisplayName("deve lançar exceção quando a versão publicada não tem tabela ativa")
+    void deveLancarExcecaoSemTabela() {
+        publicar(null);
+
+        assertThatThrownBy(() -> holder.obter())
+                .isInstanceOf(BusinessException.class)
+                .hasMessage("Não existe tabela ativa.");
+    }
+
+    @Test
+    @DisplayName("leitores concorrentes devem ver versões crescentes e sempre completas")
+    void leitoresDevemVerVersoesCrescentes() throws Exception {
+        publicar(TabelaTarifariaFixture.comercial(1L));
+        int leitores = 4;
+        AtomicBoolean publicando = new AtomicBoolean(true);
+        CountDownLatch inicio = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(leitores);
+        try {
+            List<Future<Long>> leituras = new ArrayList<>();
+            for (int i = 0; i < leitores; i++) {
+                leituras.add(executor.submit(() -> {
+                    inicio.await();
+                    long ultima = 0;
+                    long lidas = 0;
+                    while (publicando.get()) {
+                        TarifaAtivaHolder.Versao versao = holder.versaoAtual();
+                        assertThat(versao.numero()).isGreaterThanOrEqualTo(ultima);
+                        assertThat(versao.tarifa().categoria(CategoriaConsumidor.COMERCIAL)
+                                .calcular(15, false).valorTotal()).isEqualByComparingTo("100.00");
+                        ultima = versao.numero();
+                        lidas++;
+                    }
+                    return lidas;
+                }));
+            }
+
+            inicio.countDown();
+            for (long id = 2; id <= 500; id++) {
+                publicar(TabelaTarifariaFixture.comercial(id));
+            }
+            publicando.set(false);
+
+            for (Future<Long> leitura : leituras) {
+                assertThat(leitura.get()).isPositive();
+            }
+            assertThat(holder.versaoAtual().numero()).isEqualTo(500);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Confirma a troca no banco simulado e entrega o evento, como depois do commit. */
+    private void publicar(TabelaTarifaria tabela) {
+        idNoBanco = tabela == null ? null : tabela.getId();
+        holder.onTabelaAtivaAlterada(new TabelaAtivaAlteradaEvent(tabela));
+    }
+}